@@ -4,12 +4,26 @@ import com.alma.pay2bid.client.Client;
 import com.alma.pay2bid.gui.ClientGui;
 import com.alma.pay2bid.gui.GetClientName;
 import com.alma.pay2bid.server.IServer;
+import com.alma.pay2bid.server.IStandby;
+import com.alma.pay2bid.server.Relay;
 import com.alma.pay2bid.server.Server;
+import com.alma.pay2bid.server.ShardRouter;
+import com.alma.pay2bid.server.Standby;
+import com.alma.pay2bid.server.journal.AuctionArchive;
+import com.alma.pay2bid.server.journal.Journal;
+import com.alma.pay2bid.server.journal.SnapshotStore;
+import com.alma.pay2bid.transport.FailoverServerProxy;
+import com.alma.pay2bid.transport.NioTransport;
+import com.alma.pay2bid.transport.RmiTransport;
+import com.alma.pay2bid.transport.Transport;
 import org.apache.commons.cli.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.rmi.ConnectException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -20,8 +34,10 @@ import java.util.logging.Logger;
  */
 public class Main {
     private static final Logger LOGGER = Logger.getLogger(Server.class.getCanonicalName());
+    private static final long TAKEOVER_TIMEOUT = 3000;
+    private static final long FAILOVER_TIMEOUT = 30000;
 
-    private static void startClient(String host, int port) {
+    private static void startClient(Transport transport, String replica) {
 
         try {
             GetClientName getClientName = new GetClientName();
@@ -29,7 +45,13 @@ public class Main {
 
             if(clientName == null){throw new Exception("Client exit without choosing a name...");}
 
-            IServer server = (IServer) LocateRegistry.getRegistry(host, port).lookup("com.alma.pay2bid.server.Server");
+            IServer server;
+            if (replica != null) {
+                // the client moves to the standby when the server stops
+                server = new FailoverServerProxy(Arrays.asList(transport, rmiTransport(replica)), FAILOVER_TIMEOUT);
+            } else {
+                server = transport.connect();
+            }
             Client client = new Client(server, clientName);
 
             ClientGui c = new ClientGui(client, server);
@@ -44,13 +66,86 @@ public class Main {
         }
     }
 
-    private static void startServer(int port, boolean daemon) {
+    private static Server createServer(String journalDirectory) throws IOException {
+        if (journalDirectory != null) {
+            // the state of the server is rebuilt from its latest snapshot and its journal
+            File directory = new File(journalDirectory);
+            return new Server(new Journal(directory), new SnapshotStore(directory), new AuctionArchive(directory));
+        }
+        return new Server();
+    }
+
+    private static RmiTransport rmiTransport(String address) {
+        String[] hostPort = address.trim().split(":");
+        return new RmiTransport(hostPort[0], Integer.parseInt(hostPort[1]));
+    }
+
+    private static void startServer(Transport transport, int port, boolean daemon, String journalDirectory,
+                                    String replica) {
         try {
-            String name = "com.alma.pay2bid.server.Server";
-            IServer server = new Server();
-            Registry registry = LocateRegistry.createRegistry(port);
-            registry.rebind(name, server);
+            Server server = createServer(journalDirectory);
+            transport.serve(server);
             LOGGER.info("Server up and running at localhost on port " + port + "\n");
+            if (replica != null) {
+                server.replicateTo((IStandby) rmiTransport(replica).lookup(Standby.NAME));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Start the hot standby of a server : it is bound in its registry as a server once it has taken over.
+     * The primary reaches it in the registry, so the standby uses RMI.
+     */
+    private static void startStandby(final int port, String journalDirectory) {
+        try {
+            final RmiTransport transport = new RmiTransport("localhost", port);
+            transport.bind(Standby.NAME, new Standby(createServer(journalDirectory), TAKEOVER_TIMEOUT,
+                    new Standby.TakeoverListener() {
+                        @Override
+                        public void tookOver(Server server) {
+                            try {
+                                transport.serve(server);
+                                LOGGER.info("The standby is now the server on port " + port + "\n");
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                    }));
+            LOGGER.info("Standby waiting for its primary on port " + port + "\n");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Start a router in front of shards already running. The shards call the clients back directly,
+     * so the router, its shards and its clients use RMI.
+     * @param shardAddresses The addresses of the shards, as host:port separated by commas
+     */
+    private static void startRouter(int port, String shardAddresses) {
+        try {
+            Map<String, IServer> shards = new LinkedHashMap<String, IServer>();
+            for (String address : shardAddresses.split(",")) {
+                shards.put(address.trim(), rmiTransport(address).connect());
+            }
+            new RmiTransport("localhost", port).serve(new ShardRouter(shards));
+            LOGGER.info("Router up and running at localhost on port " + port + " for " + shards.size() + " shards\n");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Start a relay in front of a server, or of another relay. The relay calls its clients back,
+     * so the relay, its server and its clients use RMI.
+     * @param upstreamAddress The address of the server behind the relay, as host:port
+     */
+    private static void startRelay(int port, String upstreamAddress) {
+        try {
+            new RmiTransport("localhost", port).serve(new Relay(rmiTransport(upstreamAddress).connect()));
+            LOGGER.info("Relay up and running at localhost on port " + port + " in front of " + upstreamAddress + "\n");
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -64,8 +159,15 @@ public class Main {
 
         options.addOption("l", "listen", false, "server port to listen");
         options.addOption("d", "daemon", false, "run the server as a daemon");
-        options.addOption("h", "host", false, "host");
-        options.addOption("p", "daemon", false, "port");
+        options.addOption("h", "host", true, "host");
+        options.addOption("p", "port", true, "port");
+        options.addOption("j", "journal", true, "directory of the server journal");
+        options.addOption("t", "transport", true, "transport : rmi or nio");
+        options.addOption("s", "shards", true, "run a router in front of the shards host:port,host:port...");
+        options.addOption("u", "upstream", true, "run a relay in front of the server host:port");
+        options.addOption("b", "standby", false, "run the server as the hot standby of a primary");
+        options.addOption("r", "replica", true, "host:port of the standby, which the server feeds and the client "
+                + "moves to");
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = parser.parse(options, args);
@@ -73,6 +175,8 @@ public class Main {
         String host = "localhost";
         int port = 1099;
         boolean daemon = false;
+        String journalDirectory = null;
+        String transportName = "rmi";
 
         if(cmd.hasOption("d")) {
             daemon = true;
@@ -86,12 +190,46 @@ public class Main {
             port = Integer.parseInt(cmd.getOptionValue("p"));
         }
 
-        if(cmd.hasOption("l")) {
+        if(cmd.hasOption("j")) {
+            journalDirectory = cmd.getOptionValue("j");
+        }
+
+        if(cmd.hasOption("t")) {
+            transportName = cmd.getOptionValue("t");
+        }
+
+        boolean rmiOnly = cmd.hasOption("l") && (cmd.hasOption("s") || cmd.hasOption("u") || cmd.hasOption("b"));
+        if (!"rmi".equals(transportName) && !"nio".equals(transportName)) {
+            System.err.println("Unknown transport : " + transportName + " (rmi or nio)");
+            System.exit(1);
+        } else if (rmiOnly && !"rmi".equals(transportName)) {
+            System.err.println("The router, the relay and the standby only use RMI : the transport "
+                    + transportName + " cannot be used with -s, -u or -b");
+            System.exit(1);
+        }
+
+        Transport transport;
+        if ("nio".equals(transportName)) {
+            transport = new NioTransport(host, port);
+        } else {
+            transport = new RmiTransport(host, port);
+        }
+
+        if(cmd.hasOption("l") && cmd.hasOption("s")) {
+            // start a router in front of the shards
+            startRouter(port, cmd.getOptionValue("s"));
+        } else if(cmd.hasOption("l") && cmd.hasOption("u")) {
+            // start a relay in front of a server
+            startRelay(port, cmd.getOptionValue("u"));
+        } else if(cmd.hasOption("l") && cmd.hasOption("b")) {
+            // start the standby of a server
+            startStandby(port, journalDirectory);
+        } else if(cmd.hasOption("l")) {
             // start the server
-            startServer(port, daemon);
+            startServer(transport, port, daemon, journalDirectory, cmd.getOptionValue("r"));
         } else {
         	// start the client
-        	startClient(host, port);
+        	startClient(transport, cmd.getOptionValue("r"));
         }
     }
 }
@@ -1,19 +1,59 @@
 package com.alma.pay2bid.bean;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.UUID;
 
 /**
- * AuctionBean represent an auction, ie an item sold by a client
+ * AuctionBean represent an auction, ie an item sold by a client.
+ * It is sent with a compact hand-written encoding instead of the default serialization.
+ * The encoding is kept until a setter changes the bean : a bean sent to many clients is only encoded once.
  * @author Alexis Giraudet
  * @author Arnaud Grall
  * @author Thomas Minier
  */
-public class AuctionBean implements IBean {
+public class AuctionBean implements IBean, Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_UUID = 1;
+    private static final int HAS_NAME = 2;
+    private static final int HAS_DESCRIPTION = 4;
+    private static final int HAS_SELLER = 8;
+    private static final int HAS_CATEGORY = 16;
+
+    /**
+     * The encoded fields of the bean, valid as long as the bean has not been modified since
+     */
+    private static class Encoding {
+        private final int modifications;
+        private final byte[] bytes;
+
+        Encoding(int modifications, byte[] bytes) {
+            this.modifications = modifications;
+            this.bytes = bytes;
+        }
+    }
+
     private UUID uuid;
     private int price;
     private String name;
     private String description;
     private String seller;
+    private String category; // Category chosen by the seller, or null
+    private transient volatile int modifications;
+    private transient volatile Encoding encoding;
+
+    /**
+     * Constructor used by the deserialization
+     */
+    public AuctionBean() {
+    }
 
     public AuctionBean(int price, String name, String description, String seller) {
     	if (price > 0) this.price = price;
@@ -30,6 +70,7 @@ public class AuctionBean implements IBean {
 
     public void setUuid(UUID uuid) {
         this.uuid = uuid;
+        modifications++;
     }
 
     public int getPrice() {
@@ -38,6 +79,7 @@ public class AuctionBean implements IBean {
 
     public void setPrice(int price) {
         this.price = price;
+        modifications++;
     }
 
     public String getName() {
@@ -46,6 +88,7 @@ public class AuctionBean implements IBean {
 
     public void setName(String name) {
         this.name = name;
+        modifications++;
     }
 
     public String getDescription() {
@@ -54,6 +97,7 @@ public class AuctionBean implements IBean {
 
     public void setDescription(String description) {
         this.description = description;
+        modifications++;
     }
 
 	public String getSeller() {
@@ -62,10 +106,87 @@ public class AuctionBean implements IBean {
 
 	public void setSeller(String seller) {
 		this.seller = seller;
+		modifications++;
 	}
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+        modifications++;
+    }
     
     public String toString(){
         return "uuid : " + uuid + " \n name : " + name + " \n";
     }
 
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * Write the encoding of the bean, outside of a Java serialization stream
+     * @param out The output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        int version = modifications;
+        Encoding current = encoding;
+        if (current == null || current.modifications != version) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream data = new DataOutputStream(bytes);
+            encode(data);
+            data.flush();
+            current = new Encoding(version, bytes.toByteArray());
+            encoding = current;
+        }
+        out.write(current.bytes);
+    }
+
+    private void encode(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(BeanEncoding.flag(uuid, HAS_UUID) | BeanEncoding.flag(name, HAS_NAME)
+                | BeanEncoding.flag(description, HAS_DESCRIPTION) | BeanEncoding.flag(seller, HAS_SELLER)
+                | BeanEncoding.flag(category, HAS_CATEGORY));
+        if (uuid != null) {
+            BeanEncoding.writeUuid(out, uuid);
+        }
+        out.writeInt(price);
+        BeanEncoding.writeString(out, name);
+        BeanEncoding.writeString(out, description);
+        BeanEncoding.writeString(out, seller);
+        BeanEncoding.writeString(out, category);
+    }
+
+    /**
+     * Read a bean written by writeTo
+     * @param in The input
+     * @return The bean
+     * @throws IOException
+     */
+    public static AuctionBean readFrom(DataInput in) throws IOException {
+        AuctionBean auction = new AuctionBean();
+        auction.readFields(in);
+        return auction;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        BeanEncoding.checkVersion(in, FORMAT_VERSION, AuctionBean.class);
+        int flags = in.readByte();
+        uuid = BeanEncoding.hasFlag(flags, HAS_UUID) ? BeanEncoding.readUuid(in) : null;
+        price = in.readInt();
+        name = BeanEncoding.readString(in, flags, HAS_NAME);
+        description = BeanEncoding.readString(in, flags, HAS_DESCRIPTION);
+        seller = BeanEncoding.readString(in, flags, HAS_SELLER);
+        category = BeanEncoding.readString(in, flags, HAS_CATEGORY);
+    }
+
 }
@@ -0,0 +1,118 @@
+package com.alma.pay2bid.bean;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.UUID;
+
+/**
+ * AuctionDetails represent the details of an auction left out of its summary : its category and its description.
+ * A long description is returned in chunks by IServer.getAuctionDetails; each chunk tells where it starts and
+ * the length of the whole description.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionDetails implements IBean, Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_CATEGORY = 1;
+
+    private UUID uuid;
+    private String category;
+    private String description; // The chunk of the description
+    private int offset; // Position of the chunk in the description
+    private int length; // Length of the whole description
+
+    /**
+     * Constructor used by the deserialization
+     */
+    public AuctionDetails() {
+    }
+
+    public AuctionDetails(UUID uuid, String category, String description, int offset, int length) {
+        this.uuid = uuid;
+        this.category = category;
+        this.description = description;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return True if the description goes on after this chunk
+     */
+    public boolean hasMore() {
+        return offset + description.length() < length;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * Write the encoding of the bean, outside of a Java serialization stream
+     * @param out The output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(BeanEncoding.flag(category, HAS_CATEGORY));
+        BeanEncoding.writeUuid(out, uuid);
+        out.writeInt(offset);
+        out.writeInt(length);
+        BeanEncoding.writeString(out, description);
+        BeanEncoding.writeString(out, category);
+    }
+
+    /**
+     * Read a bean written by writeTo
+     * @param in The input
+     * @return The bean
+     * @throws IOException
+     */
+    public static AuctionDetails readFrom(DataInput in) throws IOException {
+        AuctionDetails details = new AuctionDetails();
+        details.readFields(in);
+        return details;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        BeanEncoding.checkVersion(in, FORMAT_VERSION, AuctionDetails.class);
+        int flags = in.readByte();
+        uuid = BeanEncoding.readUuid(in);
+        offset = in.readInt();
+        length = in.readInt();
+        description = BeanEncoding.readString(in);
+        category = BeanEncoding.readString(in, flags, HAS_CATEGORY);
+    }
+}
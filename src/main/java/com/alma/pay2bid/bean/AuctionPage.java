@@ -0,0 +1,58 @@
+package com.alma.pay2bid.bean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * AuctionPage represent a page of the changes of the auction catalogue, returned by IServer.listAuctions
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<AuctionBean> auctions = new ArrayList<AuctionBean>(); // Auctions placed or updated
+    private final List<UUID> removed = new ArrayList<UUID>(); // Auctions which are not running anymore
+    private long version; // Version to give to the next call
+    private boolean more; // True if other changes are waiting after this page
+    private boolean reset; // True if the client must forget its catalogue before applying this page
+
+    public AuctionPage(long version) {
+        this.version = version;
+    }
+
+    public List<AuctionBean> getAuctions() {
+        return auctions;
+    }
+
+    public List<UUID> getRemoved() {
+        return removed;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean hasMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+}
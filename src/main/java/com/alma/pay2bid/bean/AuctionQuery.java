@@ -0,0 +1,76 @@
+package com.alma.pay2bid.bean;
+
+import java.io.Serializable;
+
+/**
+ * AuctionQuery represent a search among the running auctions.
+ * Every criterion left to null is ignored; an auction must match all the others.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionQuery implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String text; // Words which must all appear in the name or the description
+    private String seller; // Identifier of the seller
+    private Integer minPrice;
+    private Integer maxPrice;
+    private int limit; // Maximum number of results, 0 for no limit
+
+    public AuctionQuery() {
+        this(null, null, null, null, 0);
+    }
+
+    public AuctionQuery(String text, String seller, Integer minPrice, Integer maxPrice, int limit) {
+        this.text = text;
+        this.seller = seller;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.limit = limit;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getSeller() {
+        return seller;
+    }
+
+    public void setSeller(String seller) {
+        this.seller = seller;
+    }
+
+    public Integer getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Integer minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Integer getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Integer maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public String toString(){
+        return "text : " + text + " \n seller : " + seller + " \n price : " + minPrice + " - " + maxPrice + " \n";
+    }
+}
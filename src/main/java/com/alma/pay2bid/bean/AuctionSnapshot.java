@@ -0,0 +1,139 @@
+package com.alma.pay2bid.bean;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * AuctionSnapshot represent the running auctions given to a client when he registers : he learns the auctions he
+ * takes part in, with their prices, winners and round deadlines, in the response of a single call.
+ * It is sent with a compact hand-written encoding instead of the default serialization.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionSnapshot implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_WINNER = 1;
+
+    /**
+     * The state of a running auction
+     */
+    public static class Entry implements IBean {
+        private static final long serialVersionUID = 1L;
+
+        private final AuctionSummary summary;
+        private final long sequence; // Sequence number of the last event of the auction
+        private final String winner; // Identifier of the current winner, or null if there is none
+        private final int remainingTime; // Time (in milliseconds) before the end of the current round
+
+        public Entry(AuctionSummary summary, long sequence, String winner, int remainingTime) {
+            this.summary = summary;
+            this.sequence = sequence;
+            this.winner = winner;
+            this.remainingTime = remainingTime;
+        }
+
+        @Override
+        public UUID getUuid() {
+            return summary.getUuid();
+        }
+
+        public AuctionSummary getSummary() {
+            return summary;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getWinner() {
+            return winner;
+        }
+
+        public int getRemainingTime() {
+            return remainingTime;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    public AuctionSnapshot() {
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    /**
+     * Add the entries of another snapshot, taken on another server
+     * @param snapshot The other snapshot
+     */
+    public void addAll(AuctionSnapshot snapshot) {
+        entries.addAll(snapshot.getEntries());
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * Write the encoding of the bean, outside of a Java serialization stream
+     * @param out The output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeByte(BeanEncoding.flag(entry.winner, HAS_WINNER));
+            // The summary is written inline, with the encoding it may already hold
+            entry.summary.writeTo(out);
+            out.writeLong(entry.sequence);
+            out.writeInt(entry.remainingTime);
+            BeanEncoding.writeString(out, entry.winner);
+        }
+    }
+
+    /**
+     * Read a bean written by writeTo
+     * @param in The input
+     * @return The bean
+     * @throws IOException
+     */
+    public static AuctionSnapshot readFrom(DataInput in) throws IOException {
+        AuctionSnapshot snapshot = new AuctionSnapshot();
+        snapshot.readFields(in);
+        return snapshot;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        BeanEncoding.checkVersion(in, FORMAT_VERSION, AuctionSnapshot.class);
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            int flags = in.readByte();
+            AuctionSummary summary = AuctionSummary.readFrom(in);
+            long sequence = in.readLong();
+            int remainingTime = in.readInt();
+            String winner = BeanEncoding.readString(in, flags, HAS_WINNER);
+            entries.add(new Entry(summary, sequence, winner, remainingTime));
+        }
+    }
+}
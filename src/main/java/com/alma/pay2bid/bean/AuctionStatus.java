@@ -0,0 +1,107 @@
+package com.alma.pay2bid.bean;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.UUID;
+
+/**
+ * AuctionStatus represent the state of an auction after one of its events, sent to a client who has missed some events.
+ * It is sent with a compact hand-written encoding instead of the default serialization.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionStatus implements IBean, Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_WINNER = 1;
+    private static final int COMPLETED = 2;
+
+    private AuctionBean auction;
+    private long sequence; // Sequence number of the last event of the auction
+    private String winner; // Identifier of the current winner, or null if there is none
+    private boolean completed;
+
+    /**
+     * Constructor used by the deserialization
+     */
+    public AuctionStatus() {
+    }
+
+    public AuctionStatus(AuctionBean auction, long sequence, String winner, boolean completed) {
+        this.auction = auction;
+        this.sequence = sequence;
+        this.winner = winner;
+        this.completed = completed;
+    }
+
+    @Override
+    public UUID getUuid() {
+        return auction.getUuid();
+    }
+
+    public AuctionBean getAuction() {
+        return auction;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getWinner() {
+        return winner;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * Write the encoding of the bean, outside of a Java serialization stream
+     * @param out The output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(BeanEncoding.flag(winner, HAS_WINNER) | (completed ? COMPLETED : 0));
+        // The auction is written inline, without the class descriptor of a nested object
+        auction.writeTo(out);
+        out.writeLong(sequence);
+        BeanEncoding.writeString(out, winner);
+    }
+
+    /**
+     * Read a bean written by writeTo
+     * @param in The input
+     * @return The bean
+     * @throws IOException
+     */
+    public static AuctionStatus readFrom(DataInput in) throws IOException {
+        AuctionStatus status = new AuctionStatus();
+        status.readFields(in);
+        return status;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        BeanEncoding.checkVersion(in, FORMAT_VERSION, AuctionStatus.class);
+        int flags = in.readByte();
+        completed = BeanEncoding.hasFlag(flags, COMPLETED);
+        auction = AuctionBean.readFrom(in);
+        sequence = in.readLong();
+        winner = BeanEncoding.readString(in, flags, HAS_WINNER);
+    }
+}
@@ -0,0 +1,143 @@
+package com.alma.pay2bid.bean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.UUID;
+
+/**
+ * AuctionSummary represent the few fields of an auction sent to every client when it is launched.
+ * The description and the category are fetched on demand with IServer.getAuctionDetails.
+ * A summary is never modified once built, so it is only encoded once, whatever the number of its recipients.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionSummary implements IBean, Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_NAME = 1;
+    private static final int HAS_SELLER = 2;
+
+    private UUID uuid;
+    private String name;
+    private String seller;
+    private int price;
+    private long version; // Version of the auction in the catalogue of the server
+    private transient volatile byte[] encoding;
+
+    /**
+     * Constructor used by the deserialization
+     */
+    public AuctionSummary() {
+    }
+
+    public AuctionSummary(UUID uuid, String name, String seller, int price, long version) {
+        this.uuid = uuid;
+        this.name = name;
+        this.seller = seller;
+        this.price = price;
+        this.version = version;
+    }
+
+    /**
+     * @param auction An auction
+     * @param version The version of the auction in the catalogue
+     * @return The summary of the auction
+     */
+    public static AuctionSummary of(AuctionBean auction, long version) {
+        return new AuctionSummary(auction.getUuid(), auction.getName(), auction.getSeller(), auction.getPrice(),
+                version);
+    }
+
+    @Override
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSeller() {
+        return seller;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return A new auction holding the fields of the summary, without its description
+     */
+    public AuctionBean toBean() {
+        AuctionBean auction = new AuctionBean(price, name, null, seller);
+        auction.setUuid(uuid);
+        return auction;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * Write the encoding of the bean, outside of a Java serialization stream
+     * @param out The output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        byte[] bytes = encoding;
+        if (bytes == null) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(48);
+            DataOutputStream data = new DataOutputStream(buffer);
+            data.writeByte(FORMAT_VERSION);
+            data.writeByte(BeanEncoding.flag(name, HAS_NAME) | BeanEncoding.flag(seller, HAS_SELLER));
+            BeanEncoding.writeUuid(data, uuid);
+            data.writeInt(price);
+            data.writeLong(version);
+            BeanEncoding.writeString(data, name);
+            BeanEncoding.writeString(data, seller);
+            data.flush();
+            bytes = buffer.toByteArray();
+            encoding = bytes;
+        }
+        out.write(bytes);
+    }
+
+    /**
+     * Read a bean written by writeTo
+     * @param in The input
+     * @return The bean
+     * @throws IOException
+     */
+    public static AuctionSummary readFrom(DataInput in) throws IOException {
+        AuctionSummary summary = new AuctionSummary();
+        summary.readFields(in);
+        return summary;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        BeanEncoding.checkVersion(in, FORMAT_VERSION, AuctionSummary.class);
+        int flags = in.readByte();
+        uuid = BeanEncoding.readUuid(in);
+        price = in.readInt();
+        version = in.readLong();
+        name = BeanEncoding.readString(in, flags, HAS_NAME);
+        seller = BeanEncoding.readString(in, flags, HAS_SELLER);
+    }
+}
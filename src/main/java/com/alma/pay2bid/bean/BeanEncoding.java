@@ -0,0 +1,86 @@
+package com.alma.pay2bid.bean;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * Helpers shared by the hand-written encodings of the beans.
+ * A bean is written as a format version, a byte of flags telling which optional fields are present, then its fields :
+ * a UUID as two longs, and the strings only when they are not null, as their length in bytes followed by their UTF-8
+ * encoding. The strings are written with their length instead of writeUTF, which is limited to 64 KB : a description
+ * can be longer.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+final class BeanEncoding {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private BeanEncoding() {
+    }
+
+    /**
+     * @return The flag if the value is present, 0 otherwise
+     */
+    static int flag(Object value, int flag) {
+        return value != null ? flag : 0;
+    }
+
+    static boolean hasFlag(int flags, int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Check the format version of a bean being read
+     * @throws IOException If the format is not known
+     */
+    static void checkVersion(DataInput in, int version, Class<?> beanClass) throws IOException {
+        int read = in.readByte();
+        if (read != version) {
+            throw new IOException("Unknown format " + read + " of " + beanClass.getSimpleName());
+        }
+    }
+
+    static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Write a string, if it is present
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value != null) {
+            byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Read a string, if its flag is set
+     */
+    static String readString(DataInput in, int flags, int flag) throws IOException {
+        return hasFlag(flags, flag) ? readString(in) : null;
+    }
+
+    /**
+     * Read a string written by writeString
+     */
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length of a string : " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
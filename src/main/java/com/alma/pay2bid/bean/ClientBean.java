@@ -1,19 +1,39 @@
 package com.alma.pay2bid.bean;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.UUID;
 
 /**
- * ClientBean represent the identity of a client
+ * ClientBean represent the identity of a client.
+ * It is sent with a compact hand-written encoding instead of the default serialization.
  * @author Alexis Giraudet
  * @author Arnaud Grall
  * @author Thomas Minier
  */
-public class ClientBean implements IBean {
+public class ClientBean implements IBean, Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_UUID = 1;
+    private static final int HAS_LOGIN = 2;
+    private static final int HAS_PASSWORD = 4;
+    private static final int HAS_IDENTIFIER = 8;
+
     private UUID uuid;
     private String login; // Must be unique (but is not actually)
     private String password; // Hash
     private String identifier; // Unique identifier to find a client
 
+    /**
+     * Constructor used by the deserialization
+     */
+    public ClientBean() {
+    }
+
     public ClientBean(UUID uuid, String login, String password, String identifier) {
         this.uuid = uuid;
         this.login = login;
@@ -51,4 +71,52 @@ public class ClientBean implements IBean {
     public void setIdentifier(String identifier) {
         this.identifier = identifier;
     }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * Write the encoding of the bean, outside of a Java serialization stream
+     * @param out The output
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(BeanEncoding.flag(uuid, HAS_UUID) | BeanEncoding.flag(login, HAS_LOGIN)
+                | BeanEncoding.flag(password, HAS_PASSWORD) | BeanEncoding.flag(identifier, HAS_IDENTIFIER));
+        if (uuid != null) {
+            BeanEncoding.writeUuid(out, uuid);
+        }
+        BeanEncoding.writeString(out, login);
+        BeanEncoding.writeString(out, password);
+        BeanEncoding.writeString(out, identifier);
+    }
+
+    /**
+     * Read a bean written by writeTo
+     * @param in The input
+     * @return The bean
+     * @throws IOException
+     */
+    public static ClientBean readFrom(DataInput in) throws IOException {
+        ClientBean client = new ClientBean();
+        client.readFields(in);
+        return client;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        BeanEncoding.checkVersion(in, FORMAT_VERSION, ClientBean.class);
+        int flags = in.readByte();
+        uuid = BeanEncoding.hasFlag(flags, HAS_UUID) ? BeanEncoding.readUuid(in) : null;
+        login = BeanEncoding.readString(in, flags, HAS_LOGIN);
+        password = BeanEncoding.readString(in, flags, HAS_PASSWORD);
+        identifier = BeanEncoding.readString(in, flags, HAS_IDENTIFIER);
+    }
 }
@@ -0,0 +1,74 @@
+package com.alma.pay2bid.bean;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Topic represent what a client watches : an auction, the auctions of a seller, or the auctions of a category.
+ * A client receives the price events of an auction only if he watches it.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class Topic implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The kinds of topic
+     */
+    public enum Kind {
+        AUCTION,
+        SELLER,
+        CATEGORY
+    }
+
+    private final Kind kind;
+    private final String key; // UUID of the auction, identifier of the seller or name of the category
+
+    public Topic(Kind kind, String key) {
+        this.kind = kind;
+        this.key = key;
+    }
+
+    public static Topic auction(UUID auctionId) {
+        return new Topic(Kind.AUCTION, auctionId.toString());
+    }
+
+    public static Topic seller(String seller) {
+        return new Topic(Kind.SELLER, seller);
+    }
+
+    public static Topic category(String category) {
+        return new Topic(Kind.CATEGORY, category);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Topic)) {
+            return false;
+        }
+        Topic topic = (Topic) o;
+        return kind == topic.kind && key.equals(topic.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kind.hashCode() + key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + key;
+    }
+}
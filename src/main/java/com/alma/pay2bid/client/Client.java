@@ -1,11 +1,18 @@
 package com.alma.pay2bid.client;
 
 import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.AuctionSummary;
 import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.observable.IAuctionLeftObservable;
 import com.alma.pay2bid.client.observable.IBidSoldObservable;
 import com.alma.pay2bid.client.observable.INewAuctionObservable;
 import com.alma.pay2bid.client.observable.INewPriceObservable;
 import com.alma.pay2bid.client.observable.ITimerObservable;
+import com.alma.pay2bid.client.observer.IAuctionLeftObserver;
 import com.alma.pay2bid.client.observer.IBidSoldObserver;
 import com.alma.pay2bid.client.observer.INewAuctionObserver;
 import com.alma.pay2bid.client.observer.INewPriceObserver;
@@ -23,39 +30,35 @@ import java.util.logging.Logger;
  * @author Arnaud Grall
  * @author Thomas Minier
  */
-public class Client extends UnicastRemoteObject implements IClient, IBidSoldObservable, INewAuctionObservable, INewPriceObservable , ITimerObservable{
+public class Client extends UnicastRemoteObject implements IClient, IBidSoldObservable, INewAuctionObservable, INewPriceObservable , ITimerObservable,
+        IAuctionLeftObservable {
 
     /**
-     * A timer used to measure time between rounds
+     * A timer used to display the time left before the end of a round
      */
     private class TimerManager extends TimerTask {
 
         private UUID auctionId;
         private String timeString;
-        private long time = TIME_TO_RAISE_BID;
+        private long time;
 
-        public TimerManager(UUID auctionId, String timeMessage){
+        public TimerManager(UUID auctionId, String timeMessage, long time){
             this.auctionId = auctionId;
             this.timeString = timeMessage;
+            // The countdown is refreshed every second
+            this.time = (time + TIME_TO_REFRESH - 1) / TIME_TO_REFRESH * TIME_TO_REFRESH;
         }
 
         @Override
         public void run() {
-            try {
-                time -=TIME_TO_REFRESH;
-                timeString = Long.toString(time/1000);
-                if(time == 0) {
-                    if (!Client.this.isSellerList.get(auctionId)) {
-                        server.timeElapsed(auctionId,Client.this);
-                    }
-                } else {
-                    if(newTimerObservers.get(auctionId) != null)
-                        newTimerObservers.get(auctionId).updateTimer(timeString);
-                }
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            time -=TIME_TO_REFRESH;
+            timeString = Long.toString(time/1000);
+            if(newTimerObservers.get(auctionId) != null)
+                newTimerObservers.get(auctionId).updateTimer(timeString);
+
+            // The server owns the deadline of the round : the client only displays the countdown
+            if(time <= 0) {
+                cancel();
             }
         }
 
@@ -71,11 +74,25 @@ public class Client extends UnicastRemoteObject implements IClient, IBidSoldObse
     private static final Logger LOGGER = Logger.getLogger(Client.class.getCanonicalName());
     private static final long TIME_TO_RAISE_BID = 30000;
     private static final long TIME_TO_REFRESH = 1000;
+    private static final long LEASE_RENEWAL_DELAY = 2000;
+    private static final int MAX_CACHED_DETAILS = 256;
+
+    // The timers of all the clients of the JVM share a single thread
+    private static final Timer TIMER = new Timer("client-timers", true);
 
     private HashMap<UUID, AuctionBean> auctionList;
     private HashMap<UUID, ClientState> stateList;
     private HashMap<UUID, Boolean> isSellerList;
-    private transient HashMap<UUID, Timer> timerList;
+    private HashMap<UUID, Long> sequenceList;
+    private transient HashMap<UUID, TimerTask> timerList;
+
+    // The details of the latest auctions looked at, fetched from the server on demand
+    private transient Map<UUID, AuctionDetails> detailsCache = new LinkedHashMap<UUID, AuctionDetails>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, AuctionDetails> eldest) {
+            return size() > MAX_CACHED_DETAILS;
+        }
+    };
 
     private ClientBean identity;
     private IServer server;
@@ -86,6 +103,7 @@ public class Client extends UnicastRemoteObject implements IClient, IBidSoldObse
     // collections of observers used to connect the client to the GUI
     private transient HashMap<UUID, ITimerObserver> newTimerObservers = new HashMap<UUID, ITimerObserver>();
     private transient HashMap<UUID, IBidSoldObserver> bidSoldObservers = new HashMap<UUID, IBidSoldObserver>();
+    private transient HashMap<UUID, IAuctionLeftObserver> auctionLeftObservers = new HashMap<UUID, IAuctionLeftObserver>();
     private transient Collection<INewAuctionObserver> newAuctionObservers = new ArrayList<INewAuctionObserver>();
     private transient HashMap<UUID, INewPriceObserver> newPriceObservers = new HashMap<UUID, INewPriceObserver>();
 
@@ -113,35 +131,107 @@ public class Client extends UnicastRemoteObject implements IClient, IBidSoldObse
         auctionList = new HashMap<UUID, AuctionBean>();
         stateList = new HashMap<UUID, ClientState>();
         isSellerList = new HashMap<UUID, Boolean>();
-        timerList = new HashMap<UUID, Timer>();
-
+        sequenceList = new HashMap<UUID, Long>();
+        timerList = new HashMap<UUID, TimerTask>();
+
+        // Keep the lease of the client alive on the server
+        TIMER.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    Client.this.server.renewLease(Client.this);
+                } catch (RemoteException e) {
+                    LOGGER.warning("Unable to renew the lease of the client : " + e.getMessage() + "\n");
+                }
+            }
+        }, LEASE_RENEWAL_DELAY, LEASE_RENEWAL_DELAY);
     }
 
     /**
      * Register a new auction
-     * @param auction
+     * @param auction The summary of the auction
+     * @param sequence Sequence number of the event
      * @throws RemoteException
      */
     @Override
-    public void newAuction(UUID auctionId, AuctionBean auction) throws RemoteException {
+    public synchronized void newAuction(UUID auctionId, AuctionSummary auction, long sequence) throws RemoteException {
         LOGGER.info("New auction received from the server \n");
 
-        if (this.getIdentifier().equals(auction.getSeller())) {
-    			this.isSellerList.put(auctionId, true);
-        } else {
-            this.isSellerList.put(auctionId, false);
+        if (isStale(auctionId, sequence)) {
+            return;
         }
-        auctionList.put(auctionId, auction);
+        sequenceList.put(auctionId, sequence);
+        if (auctionList.containsKey(auctionId)) {
+            // The auction is launched again by a server which has taken over : only its round is refreshed
+            AuctionStatus status = server.resync(auctionId);
+            restartRound(auctionId);
+            changePrice(auctionId, auction.getPrice(), status != null ? status.getWinner() : null);
+            return;
+        }
+        startAuction(auctionId, auction.toBean());
+    }
 
-        Timer newTimer = new Timer();
-        newTimer.schedule(new TimerManager(auctionId, timeElapsed),0, TIME_TO_REFRESH);
-        timerList.put(auctionId, newTimer);
+    /**
+     * Register the client on the server. He learns the running auctions from the snapshot returned by the server,
+     * each one with its price, its winner and the countdown of its current round.
+     * @throws RemoteException
+     * @throws InterruptedException
+     */
+    public void register() throws RemoteException, InterruptedException {
+        applySnapshot(server.register(this));
+    }
 
-        stateList.put(auctionId, ClientState.WAITING);
+    private synchronized void applySnapshot(AuctionSnapshot snapshot) {
+        for (AuctionSnapshot.Entry entry : snapshot.getEntries()) {
+            UUID auctionId = entry.getUuid();
+            // An event received while registering may be newer than the snapshot
+            if (isStale(auctionId, entry.getSequence())) {
+                continue;
+            }
+            sequenceList.put(auctionId, entry.getSequence());
+            if (auctionList.containsKey(auctionId)) {
+                restartRound(auctionId, entry.getRemainingTime());
+            } else {
+                startAuction(auctionId, entry.getSummary().toBean(), entry.getRemainingTime());
+            }
+            changePrice(auctionId, entry.getSummary().getPrice(), entry.getWinner());
+        }
+    }
 
-        // notify the observers of the new auction
-        for(INewAuctionObserver observer : newAuctionObservers)
-            observer.updateNewAuction(auction);
+    /**
+     * Get the details of an auction : they are fetched from the server, chunk after chunk, the first time only.
+     * The client is not locked while they are fetched.
+     * @param auctionId UUID of the auction
+     * @return The details, with the whole description, or null if the auction is unknown
+     * @throws RemoteException
+     */
+    public AuctionDetails getAuctionDetails(UUID auctionId) throws RemoteException {
+        synchronized (detailsCache) {
+            AuctionDetails cached = detailsCache.get(auctionId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        AuctionDetails chunk = server.getAuctionDetails(auctionId, 0);
+        if (chunk == null) {
+            return null;
+        }
+        StringBuilder description = new StringBuilder(chunk.getLength());
+        description.append(chunk.getDescription());
+        while (chunk.hasMore()) {
+            chunk = server.getAuctionDetails(auctionId, description.length());
+            if (chunk == null || chunk.getDescription().isEmpty()) {
+                throw new RemoteException("The details of the auction " + auctionId + " are incomplete");
+            }
+            description.append(chunk.getDescription());
+        }
+        AuctionDetails details = new AuctionDetails(auctionId, chunk.getCategory(), description.toString(), 0,
+                description.length());
+        synchronized (detailsCache) {
+            detailsCache.put(auctionId, details);
+        }
+        return details;
     }
 
     /**
@@ -155,74 +245,239 @@ public class Client extends UnicastRemoteObject implements IClient, IBidSoldObse
         server.placeAuction(auction);
     }
 
+    /**
+     * Watch a topic : once the client watches a topic, he only receives the price events of the auctions
+     * of his topics
+     * @param topic An auction, a seller or a category
+     * @throws RemoteException
+     */
+    public void watch(Topic topic) throws RemoteException {
+        server.subscribe(this, topic);
+    }
+
+    /**
+     * Stop watching a topic
+     * @param topic The topic
+     * @throws RemoteException
+     */
+    public void unwatch(Topic topic) throws RemoteException {
+        server.unsubscribe(this, topic);
+    }
+
     /**
      * An item has been sold to a client
-     * @param buyer The client who bought the current auction
+     * @param buyer The identifier of the client who bought the current auction
+     * @param sequence Sequence number of the event
      * @throws RemoteException
      */
     @Override
-    public void bidSold(UUID auctionId, IClient buyer) throws RemoteException {
+    public synchronized void bidSold(UUID auctionId, String buyer, long sequence) throws RemoteException {
+        if (acceptEvent(auctionId, sequence)) {
+            endAuction(auctionId, buyer);
+        }
+    }
 
-        LOGGER.info((buyer == null ? "nobody" : buyer.getIdentifier())
-                + " won " + auctionList.get(auctionId).getName() + "\n");
+    /**
+     * The client does not take part in an auction anymore : it is forgotten until he joins it again.
+     * The observers of the auction are kept, so that they are notified if he joins it again.
+     * @param auctionId UUID of the auction
+     * @throws RemoteException
+     */
+    @Override
+    public synchronized void auctionLeft(UUID auctionId) throws RemoteException {
+        if (!auctionList.containsKey(auctionId)) {
+            return;
+        }
+        LOGGER.info("Not taking part in " + auctionList.get(auctionId).getName() + " anymore \n");
 
         auctionList.remove(auctionId);
         isSellerList.remove(auctionId);
-
-        timerList.get(auctionId).cancel();
-        timerList.remove(auctionId);
-
-        stateList.put(auctionId, ClientState.ENDING);
         stateList.remove(auctionId);
+        TimerTask timer = timerList.remove(auctionId);
+        if (timer != null) {
+            timer.cancel();
+        }
+        // The event which lets him join the auction again gives him its current sequence number
+        sequenceList.remove(auctionId);
 
-        // notify the observers of the new bid
-
-        if(buyer != null)
-            bidSoldObservers.get(auctionId).updateBidSold(buyer);
-        else
-            bidSoldObservers.get(auctionId).updateBidSold();
+        IAuctionLeftObserver observer = auctionLeftObservers.get(auctionId);
+        if (observer != null) {
+            observer.updateAuctionLeft();
+        }
     }
 
     /**
-     * Update the price of an item
+     * A new round has begun, with a new price
      * @param auctionId UUID of the auction
      * @param price Price of the auction
+     * @param winner Identifier of the current winner
+     * @param sequence Sequence number of the event
      * @throws RemoteException
      */
     @Override
-    public void newPrice(UUID auctionId, int price) throws RemoteException {
+    public synchronized void newPrice(UUID auctionId, int price, String winner, long sequence) throws RemoteException {
         LOGGER.info("New price received for the current auction \n");
 
+        if (!acceptEvent(auctionId, sequence)) {
+            return;
+        }
         auctionList.get(auctionId).setPrice(price);
+        restartRound(auctionId);
+        newPriceObservers.get(auctionId).updateNewPrice(auctionId, price, winner);
+    }
+
+    /**
+     * Restart the countdown of an auction for a new round
+     */
+    private void restartRound(UUID auctionId) {
+        restartRound(auctionId, TIME_TO_RAISE_BID);
+    }
 
+    /**
+     * Restart the countdown of an auction, from the time left in its current round
+     */
+    private void restartRound(UUID auctionId, long roundTime) {
         if(timerList.get(auctionId) != null){
             timerList.get(auctionId).cancel();
             timerList.remove(auctionId);
         }
 
-        Timer newTimer = new Timer();
-        newTimer.schedule(new TimerManager(auctionId, timeElapsed),0, TIME_TO_REFRESH);
+        TimerTask newTimer = new TimerManager(auctionId, timeElapsed, roundTime);
+        TIMER.schedule(newTimer, 0, TIME_TO_REFRESH);
         timerList.put(auctionId, newTimer);
 
         stateList.put(auctionId, ClientState.WAITING);
-
-        newPriceObservers.get(auctionId).updateNewPrice(auctionId, price);
     }
 
     /**
      * Update the price of an item
      * @param auctionId UUID of the auction
      * @param price Price of the auction
+     * @param winner Identifier of the current winner, or null if there is none
+     * @param sequence Sequence number of the event
      * @throws RemoteException
      */
     @Override
-    public void updatePrice(UUID auctionId, int price) throws RemoteException {
+    public synchronized void updatePrice(UUID auctionId, int price, String winner, long sequence)
+            throws RemoteException {
         LOGGER.info("New price received for the current auction \n");
 
+        if (acceptEvent(auctionId, sequence)) {
+            changePrice(auctionId, price, winner);
+        }
+    }
+
+    /**
+     * @return True if an event of an auction is older than the last one received
+     */
+    private boolean isStale(UUID auctionId, long sequence) {
+        Long last = sequenceList.get(auctionId);
+        if (last != null && sequence <= last) {
+            LOGGER.info("Stale event " + sequence + " dropped for the auction " + auctionId + "\n");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check the sequence number of an event. A stale event is dropped; when some events are missing,
+     * the state of the auction is fetched from the server before the event is applied.
+     * The events replaced in the outbox of a slow client leave such gaps.
+     * @param auctionId UUID of the auction
+     * @param sequence Sequence number of the event
+     * @return True if the event must be applied
+     */
+    private boolean acceptEvent(UUID auctionId, long sequence) throws RemoteException {
+        if (isStale(auctionId, sequence)) {
+            return false;
+        }
+        Long last = sequenceList.get(auctionId);
+        if (last == null || sequence > last + 1) {
+            LOGGER.info("Events missing for the auction " + auctionId + ", resync with the server \n");
+            AuctionStatus status = server.resync(auctionId);
+            if (status == null) {
+                return false;
+            }
+            applyStatus(status);
+            // The event is still applied if it is not older than the state received
+            if (status.isCompleted() || sequence < status.getSequence()) {
+                return false;
+            }
+        }
+        sequenceList.put(auctionId, sequence);
+        return true;
+    }
+
+    /**
+     * Apply the state of an auction received from the server
+     */
+    private void applyStatus(AuctionStatus status) {
+        UUID auctionId = status.getUuid();
+        sequenceList.put(auctionId, status.getSequence());
+        if (!auctionList.containsKey(auctionId)) {
+            if (status.isCompleted()) {
+                return;
+            }
+            startAuction(auctionId, status.getAuction());
+        }
+        if (status.isCompleted()) {
+            endAuction(auctionId, status.getWinner());
+        } else {
+            changePrice(auctionId, status.getAuction().getPrice(), status.getWinner());
+        }
+    }
+
+    private void startAuction(UUID auctionId, AuctionBean auction) {
+        startAuction(auctionId, auction, TIME_TO_RAISE_BID);
+    }
+
+    private void startAuction(UUID auctionId, AuctionBean auction, long roundTime) {
+        if (this.getIdentifier().equals(auction.getSeller())) {
+    			this.isSellerList.put(auctionId, true);
+        } else {
+            this.isSellerList.put(auctionId, false);
+        }
+        auctionList.put(auctionId, auction);
+
+        TimerTask newTimer = new TimerManager(auctionId, timeElapsed, roundTime);
+        TIMER.schedule(newTimer, 0, TIME_TO_REFRESH);
+        timerList.put(auctionId, newTimer);
+
+        stateList.put(auctionId, ClientState.WAITING);
+
+        // notify the observers of the new auction
+        for(INewAuctionObserver observer : newAuctionObservers)
+            observer.updateNewAuction(auction);
+    }
+
+    private void changePrice(UUID auctionId, int price, String winner) {
         auctionList.get(auctionId).setPrice(price);
 
         // notify the observers of the new price for the current auction
-        newPriceObservers.get(auctionId).updateNewPrice(auctionId, price);
+        newPriceObservers.get(auctionId).updateNewPrice(auctionId, price, winner);
+    }
+
+    private void endAuction(UUID auctionId, String buyer) {
+        LOGGER.info((buyer == null ? "nobody" : buyer) + " won " + auctionList.get(auctionId).getName() + "\n");
+
+        auctionList.remove(auctionId);
+        isSellerList.remove(auctionId);
+
+        timerList.get(auctionId).cancel();
+        timerList.remove(auctionId);
+
+        stateList.put(auctionId, ClientState.ENDING);
+        stateList.remove(auctionId);
+
+        // No other event is expected for this auction
+        sequenceList.put(auctionId, Long.MAX_VALUE);
+
+        // notify the observers of the new bid
+
+        if(buyer != null)
+            bidSoldObservers.get(auctionId).updateBidSold(buyer);
+        else
+            bidSoldObservers.get(auctionId).updateBidSold();
     }
 
     public void addWonAuction(AuctionBean auction) throws RemoteException{
@@ -267,6 +522,14 @@ public class Client extends UnicastRemoteObject implements IClient, IBidSoldObse
     @Override
     public void removeBidSoldObserver(UUID auctionId) { bidSoldObservers.remove(auctionId); }
 
+    @Override
+    public void addAuctionLeftObserver(UUID auctionId, IAuctionLeftObserver observer) {
+        auctionLeftObservers.put(auctionId, observer);
+    }
+
+    @Override
+    public void removeAuctionLeftObserver(UUID auctionId) { auctionLeftObservers.remove(auctionId); }
+
     @Override
     public boolean addNewAuctionObserver(INewAuctionObserver observer) { return newAuctionObservers.add(observer); }
 
@@ -295,4 +558,9 @@ public class Client extends UnicastRemoteObject implements IClient, IBidSoldObse
 
     @Override
     public String getIdentifier(){return identity.getIdentifier(); }
+
+    @Override
+    public ClientBean getIdentity() {
+        return identity;
+    }
 }
@@ -1,6 +1,8 @@
 package com.alma.pay2bid.client;
 
 import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.ClientBean;
 
 import java.io.Serializable;
 import java.rmi.Remote;
@@ -14,11 +16,18 @@ import java.util.UUID;
  * @author Thomas Minier
  */
 public interface IClient extends Remote, Serializable {
+    /*
+     * Every event of an auction carries a sequence number, increasing for each auction :
+     * the client drops the stale events, and resyncs with the server when he receives an event for an auction he does
+     * not know. The price events may be conflated by the server, so they carry the whole price of the auction.
+     */
+
     /**
-     * @param auction
+     * @param auction The summary of the auction : its details are fetched with IServer.getAuctionDetails
+     * @param sequence Sequence number of the event
      * @throws RemoteException
      */
-    void newAuction(UUID auctionId, AuctionBean auction) throws RemoteException;
+    void newAuction(UUID auctionId, AuctionSummary auction, long sequence) throws RemoteException;
 
     /**
      * @param auction
@@ -27,24 +36,39 @@ public interface IClient extends Remote, Serializable {
     void submit(AuctionBean auction) throws RemoteException;
 
     /**
-     * @param buyer
+     * @param buyer Identifier of the buyer, or null if nobody has bought the item
+     * @param sequence Sequence number of the event
      * @throws RemoteException
      */
-    void bidSold(UUID auctionId, IClient buyer) throws RemoteException;
+    void bidSold(UUID auctionId, String buyer, long sequence) throws RemoteException;
 
     /**
+     * A new round has begun
      * @param auctionId
      * @param price
+     * @param winner Identifier of the current winner
+     * @param sequence Sequence number of the event
      * @throws RemoteException
      */
-    void newPrice(UUID auctionId, int price) throws RemoteException;
+    void newPrice(UUID auctionId, int price, String winner, long sequence) throws RemoteException;
 
     /**
+     * The price has changed during a round
      * @param auctionId
      * @param price
+     * @param winner Identifier of the current winner, or null if there is none
+     * @param sequence Sequence number of the event
+     * @throws RemoteException
+     */
+    void updatePrice(UUID auctionId, int price, String winner, long sequence) throws RemoteException;
+
+    /**
+     * The client does not take part in an auction : he has stopped watching it, or it has been launched
+     * while he was watching other topics. He receives no more event of the auction, and cannot bid on it.
+     * @param auctionId
      * @throws RemoteException
      */
-    void updatePrice(UUID auctionId, int price) throws RemoteException;
+    void auctionLeft(UUID auctionId) throws RemoteException;
 
     /**
      * @return
@@ -56,6 +80,12 @@ public interface IClient extends Remote, Serializable {
 
     String getIdentifier() throws RemoteException;
 
+    /**
+     * @return The identity of the client, fetched once by the server when the client registers
+     * @throws RemoteException
+     */
+    ClientBean getIdentity() throws RemoteException;
+
     void setName(String name) throws RemoteException;
 
     ClientState getState(UUID auctionId) throws RemoteException;
@@ -0,0 +1,17 @@
+package com.alma.pay2bid.client.observable;
+
+import com.alma.pay2bid.client.observer.IAuctionLeftObserver;
+
+import java.util.UUID;
+
+/**
+ * An observable that notifies its observers when the client does not take part in an auction anymore
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public interface IAuctionLeftObservable {
+    void addAuctionLeftObserver(UUID auctionId, IAuctionLeftObserver observer);
+
+    void removeAuctionLeftObserver(UUID auctionId);
+}
@@ -0,0 +1,11 @@
+package com.alma.pay2bid.client.observer;
+
+/**
+ * An observer notified when the client does not take part in an auction anymore
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public interface IAuctionLeftObserver {
+    void updateAuctionLeft();
+}
@@ -1,7 +1,5 @@
 package com.alma.pay2bid.client.observer;
 
-import com.alma.pay2bid.client.IClient;
-
 /**
  * An observer notified when an item has been sold
  * @author Alexis Giraudet
@@ -9,6 +7,6 @@ import com.alma.pay2bid.client.IClient;
  * @author Thomas Minier
  */
 public interface IBidSoldObserver {
-    void updateBidSold(IClient client);
+    void updateBidSold(String winner);
     void updateBidSold();
 }
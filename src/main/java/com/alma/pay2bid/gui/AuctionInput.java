@@ -18,10 +18,11 @@ public class AuctionInput extends JPanel {
     private JTextField  name;
     public JTextField  price;
     private JTextField  description;
+    private JTextField  category;
     private JLabel statusLabel;
 
     public AuctionInput(IClient client) {
-        setLayout(new GridLayout(4,3,5,5));
+        setLayout(new GridLayout(5,3,5,5));
 
         // Frame used to displayed the input
         auctionFrame = new JFrame("Add a new auction");
@@ -44,6 +45,11 @@ public class AuctionInput extends JPanel {
         description = new JTextField();
         descriptionLabel.setLabelFor(description);
 
+        // Field "Category"
+        JLabel categoryLabel = new JLabel("Category : ");
+        category = new JTextField();
+        categoryLabel.setLabelFor(category);
+
         // Info label at the bottom of the frame
         statusLabel = new JLabel("", JLabel.CENTER);
 
@@ -62,6 +68,9 @@ public class AuctionInput extends JPanel {
         add(descriptionLabel);
         add(description);
 
+        add(categoryLabel);
+        add(category);
+
         add(auctionSend);
 
         // add the panel to the input frame
@@ -89,6 +98,14 @@ public class AuctionInput extends JPanel {
         return description.getText();
     }
 
+    /**
+     * @return The category of the auction, or null if none has been given
+     */
+    public String getCategory() {
+        String text = category.getText().trim();
+        return text.isEmpty() ? null : text;
+    }
+
     public JLabel getStatusLabel() {
         return statusLabel;
     }
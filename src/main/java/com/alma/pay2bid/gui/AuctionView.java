@@ -28,7 +28,7 @@ public class AuctionView {
     public AuctionView(AuctionBean auction){
         auctionPanel = new JPanel();
         auctionPanel.setMaximumSize(new Dimension(600, 200));
-        auctionPanel.setLayout(new GridLayout(5, 2));
+        auctionPanel.setLayout(new GridLayout(6, 2));
 
         // Create the price label
         JLabel auctionPriceLabel = new JLabel(" Price : ");
@@ -98,6 +98,14 @@ public class AuctionView {
         auctionPanel.add(raiseButton);
     }
 
+    public void setWatchButton(JToggleButton watchButton) {
+        auctionPanel.add(watchButton);
+    }
+
+    public void setDetailsButton(JButton detailsButton) {
+        auctionPanel.add(detailsButton);
+    }
+
     public void setPrice(int newPrice){
         auctionPriceValue.setText(String.valueOf(newPrice));
     }
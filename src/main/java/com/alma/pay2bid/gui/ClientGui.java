@@ -2,14 +2,16 @@ package com.alma.pay2bid.gui;
 
 import com.alma.pay2bid.bean.AuctionBean;
 import com.alma.pay2bid.client.Client;
-import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.client.observer.IAuctionLeftObserver;
 import com.alma.pay2bid.client.observer.IBidSoldObserver;
 import com.alma.pay2bid.client.observer.INewAuctionObserver;
 import com.alma.pay2bid.client.observer.INewPriceObserver;
 import com.alma.pay2bid.client.observer.ITimerObserver;
 import com.alma.pay2bid.gui.listeners.AuctionInputListener;
 import com.alma.pay2bid.gui.listeners.AuctionWinListener;
+import com.alma.pay2bid.gui.listeners.DetailsButtonListener;
 import com.alma.pay2bid.gui.listeners.RaiseBidButtonListener;
+import com.alma.pay2bid.gui.listeners.WatchButtonListener;
 import com.alma.pay2bid.server.IServer;
 
 import javax.swing.*;
@@ -68,7 +70,7 @@ public class ClientGui {
         // paint the GUI
         createGui();
 
-        server.register(this.client);
+        client.register();
     }
 
     /**
@@ -152,7 +154,7 @@ public class ClientGui {
      * Add a new panel to the main panel which display a new Auction
      * @param auctionBean
      */
-    private void addAuctionPanel(AuctionBean auctionBean){
+    private void addAuctionPanel(final AuctionBean auctionBean){
 
         if(!auctionsList.containsKey(auctionBean.getUuid())) {
             LOGGER.info("Add new auction to auctionPanel \n");
@@ -176,12 +178,22 @@ public class ClientGui {
 
             auction.setRaiseButton(raiseBidButton);
 
+            // The client receives the price events of the auctions he watches
+            JToggleButton watchButton = new JToggleButton("Watch");
+            watchButton.addActionListener(new WatchButtonListener(auctionBean.getUuid(), client, statusLabel));
+            auction.setWatchButton(watchButton);
+
+            // The description is not sent with the auction : it is fetched when the user asks for it
+            JButton detailsButton = new JButton("Details");
+            detailsButton.addActionListener(new DetailsButtonListener(auctionBean.getUuid(), client, statusLabel));
+            auction.setDetailsButton(detailsButton);
+
 
             //Now add the observer to receive all price updates
             client.addNewPriceObserver(auctionBean.getUuid(), new INewPriceObserver() {
                 @Override
-                public void updateNewPrice(UUID auctionId, Integer price) {
-                    setAuctionPrice(auctionId, price);
+                public void updateNewPrice(UUID auctionId, Integer price, String winner) {
+                    setAuctionPrice(auctionId, price, winner);
                     try {
                         if (!client.getIsSeller(auctionId)) {
                             auction.enable();
@@ -196,13 +208,9 @@ public class ClientGui {
             // Add a observer to receive the notification when the bid is sold
             client.addBidSoldObserver(auctionBean.getUuid(), new IBidSoldObserver() {
                 @Override
-                public void updateBidSold(IClient client) {
-                    try {
-                        auction.setWinner(client.getIdentifier());
-                        //deleteAuctionPanel(auctionBean.getUuid());
-                    } catch (RemoteException e) {
-                        e.printStackTrace();
-                    }
+                public void updateBidSold(String winner) {
+                    auction.setWinner(winner);
+                    //deleteAuctionPanel(auctionBean.getUuid());
                 }
 
                 @Override
@@ -212,6 +220,16 @@ public class ClientGui {
                 }
             });
 
+            // The client cannot bid anymore on an auction he has stopped watching
+            client.addAuctionLeftObserver(auctionBean.getUuid(), new IAuctionLeftObserver() {
+                @Override
+                public void updateAuctionLeft() {
+                    auction.disable();
+                    auction.setAuctionTimer("");
+                    statusLabel.setText("Auction " + auctionBean.getName() + " not watched : you cannot bid on it.");
+                }
+            });
+
             client.addTimerObserver(auctionBean.getUuid(), new ITimerObserver() {
                 @Override
                 public void updateTimer(String time) {
@@ -226,8 +244,9 @@ public class ClientGui {
             mainPanel.repaint();
             mainFrame.repaint();
 
-        } else {
-            LOGGER.warning("Trying to add a duplicated auction to the list - Auction : " + auctionBean.toString() + "\n");
+        } else if (!client.getIdentifier().equals(auctionBean.getSeller())) {
+            // The client takes part again in an auction he had left
+            auctionsList.get(auctionBean.getUuid()).enable();
         }
     }
 
@@ -245,22 +264,18 @@ public class ClientGui {
     /**
      * Set an new price for a given AuctionBean
      */
-    private void setAuctionPrice(UUID auctionId, int newPrice){
+    private void setAuctionPrice(UUID auctionId, int newPrice, String winner){
         LOGGER.info("auctionPrice set ! \n");
         AuctionView auction = auctionsList.get(auctionId);
 
         // Update auction in our list
         auction.setPrice(newPrice);
 
-        //update the current winner
-        try {
-            if(server.getWinner(auctionId) != null) {
-                auction.setCurrentWinner(server.getWinner(auctionId).getIdentifier());
-            } else{
-                auction.setCurrentWinner("No winner found !");
-            }
-        } catch (RemoteException e) {
-            e.printStackTrace();
+        //update the current winner, sent with the price
+        if(winner != null) {
+            auction.setCurrentWinner(winner);
+        } else{
+            auction.setCurrentWinner("No winner found !");
         }
 
         //Reload the main panel
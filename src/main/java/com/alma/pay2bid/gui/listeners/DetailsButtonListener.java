@@ -0,0 +1,48 @@
+package com.alma.pay2bid.gui.listeners;
+
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.client.Client;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.rmi.RemoteException;
+import java.util.UUID;
+
+/**
+ * An ActionListener called to display the details of an auction, fetched from the server the first time
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class DetailsButtonListener implements ActionListener {
+    private UUID auctionId;
+    private Client client;
+    private JLabel statusLabel;
+
+    public DetailsButtonListener(UUID auctionId, Client client, JLabel statusLabel) {
+        this.auctionId = auctionId;
+        this.client = client;
+        this.statusLabel = statusLabel;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent actionEvent) {
+        try {
+            AuctionDetails details = client.getAuctionDetails(auctionId);
+            if (details == null) {
+                statusLabel.setText("The auction is not available anymore.");
+                return;
+            }
+            String category = details.getCategory() != null ? details.getCategory() : "none";
+            JTextArea text = new JTextArea("Category : " + category + "\n\n" + details.getDescription(), 10, 40);
+            text.setLineWrap(true);
+            text.setWrapStyleWord(true);
+            text.setEditable(false);
+            JOptionPane.showMessageDialog(null, new JScrollPane(text), "Details", JOptionPane.INFORMATION_MESSAGE);
+        } catch (RemoteException e) {
+            statusLabel.setText("Unable to get the details of the auction.");
+            e.printStackTrace();
+        }
+    }
+}
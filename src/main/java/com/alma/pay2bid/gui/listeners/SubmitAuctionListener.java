@@ -29,6 +29,7 @@ public class SubmitAuctionListener implements ActionListener{
         try {
             // send the new auction to the server through the client
             AuctionBean a = new AuctionBean(Integer.parseInt(input.getAuctionPrice()), input.getAuctionName(), input.getDescription(), client.getIdentifier());
+            a.setCategory(input.getCategory());
             client.submit(a);
 
 
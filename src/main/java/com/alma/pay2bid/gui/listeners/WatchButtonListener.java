@@ -0,0 +1,45 @@
+package com.alma.pay2bid.gui.listeners;
+
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.Client;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.rmi.RemoteException;
+import java.util.UUID;
+
+/**
+ * An ActionListener called to watch an auction, or to stop watching it
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class WatchButtonListener implements ActionListener {
+    private UUID auctionId;
+    private Client client;
+    private JLabel statusLabel;
+
+    public WatchButtonListener(UUID auctionId, Client client, JLabel statusLabel) {
+        this.auctionId = auctionId;
+        this.client = client;
+        this.statusLabel = statusLabel;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent actionEvent) {
+        JToggleButton watchButton = (JToggleButton) actionEvent.getSource();
+        try {
+            if (watchButton.isSelected()) {
+                client.watch(Topic.auction(auctionId));
+                statusLabel.setText("Auction watched.");
+            } else {
+                client.unwatch(Topic.auction(auctionId));
+                statusLabel.setText("Auction not watched anymore.");
+            }
+        } catch (RemoteException e) {
+            watchButton.setSelected(!watchButton.isSelected());
+            e.printStackTrace();
+        }
+    }
+}
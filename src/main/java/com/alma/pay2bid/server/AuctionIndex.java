@@ -0,0 +1,194 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The search indexes of the running auctions : an inverted index of the words of their name and description,
+ * an index of their sellers and a sorted index of their prices.
+ * The indexes are updated when an auction is placed, when its price changes and when it is completed.
+ * The updates are serialized by the index, while the searches never lock it.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class AuctionIndex {
+
+    private final ConcurrentMap<String, Set<UUID>> words = new ConcurrentHashMap<String, Set<UUID>>();
+    private final ConcurrentMap<String, Set<UUID>> sellers = new ConcurrentHashMap<String, Set<UUID>>();
+    private final ConcurrentNavigableMap<Integer, Set<UUID>> prices = new ConcurrentSkipListMap<Integer, Set<UUID>>();
+    private final ConcurrentMap<UUID, Integer> priceOf = new ConcurrentHashMap<UUID, Integer>();
+
+    /**
+     * Index a new auction
+     * @param auction The auction
+     */
+    synchronized void add(AuctionBean auction) {
+        UUID auctionId = auction.getUuid();
+        if (priceOf.putIfAbsent(auctionId, auction.getPrice()) != null) {
+            return;
+        }
+        for (String word : wordsOf(auction)) {
+            put(words, word, auctionId);
+        }
+        if (auction.getSeller() != null) {
+            put(sellers, auction.getSeller(), auctionId);
+        }
+        put(prices, auction.getPrice(), auctionId);
+    }
+
+    /**
+     * Move an auction in the price index
+     * @param auctionId UUID of the auction
+     * @param price The new price of the auction
+     */
+    synchronized void priceChanged(UUID auctionId, int price) {
+        Integer previous = priceOf.get(auctionId);
+        if (previous == null || previous == price) {
+            return;
+        }
+        // The auction is put at its new price before leaving the old one, so a search never misses it
+        put(prices, price, auctionId);
+        priceOf.put(auctionId, price);
+        remove(prices, previous, auctionId);
+    }
+
+    /**
+     * Remove an auction from the indexes
+     * @param auction The auction
+     */
+    synchronized void remove(AuctionBean auction) {
+        UUID auctionId = auction.getUuid();
+        Integer price = priceOf.remove(auctionId);
+        if (price == null) {
+            return;
+        }
+        for (String word : wordsOf(auction)) {
+            remove(words, word, auctionId);
+        }
+        if (auction.getSeller() != null) {
+            remove(sellers, auction.getSeller(), auctionId);
+        }
+        remove(prices, price, auctionId);
+    }
+
+    /**
+     * Find the auctions matching a query. The most selective criterion is enumerated, and the others are checked
+     * on its results.
+     * @param query The query
+     * @return The UUID of the matching auctions, by increasing price when only the price is searched
+     */
+    List<UUID> search(AuctionQuery query) {
+        int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+        int minPrice = query.getMinPrice() != null ? query.getMinPrice() : Integer.MIN_VALUE;
+        int maxPrice = query.getMaxPrice() != null ? query.getMaxPrice() : Integer.MAX_VALUE;
+        List<UUID> results = new ArrayList<UUID>();
+        if (minPrice > maxPrice) {
+            return results;
+        }
+
+        List<Set<UUID>> criteria = new ArrayList<Set<UUID>>();
+        for (String word : tokenize(query.getText())) {
+            criteria.add(lookup(words, word));
+        }
+        if (query.getSeller() != null) {
+            criteria.add(lookup(sellers, query.getSeller()));
+        }
+
+        if (criteria.isEmpty()) {
+            // Only the price is searched : the sorted index gives the results in order.
+            // An auction whose price is changing is at both prices for a while, so it is only kept once.
+            Set<UUID> found = new LinkedHashSet<UUID>();
+            for (Set<UUID> auctions : prices.subMap(minPrice, true, maxPrice, true).values()) {
+                for (UUID auctionId : auctions) {
+                    if (found.size() >= limit) {
+                        return new ArrayList<UUID>(found);
+                    }
+                    found.add(auctionId);
+                }
+            }
+            return new ArrayList<UUID>(found);
+        }
+
+        Set<UUID> smallest = criteria.get(0);
+        for (Set<UUID> criterion : criteria) {
+            if (criterion.size() < smallest.size()) {
+                smallest = criterion;
+            }
+        }
+        for (UUID auctionId : smallest) {
+            if (results.size() >= limit) {
+                break;
+            }
+            if (matches(auctionId, criteria, minPrice, maxPrice)) {
+                results.add(auctionId);
+            }
+        }
+        return results;
+    }
+
+    private boolean matches(UUID auctionId, Collection<Set<UUID>> criteria, int minPrice, int maxPrice) {
+        for (Set<UUID> criterion : criteria) {
+            if (!criterion.contains(auctionId)) {
+                return false;
+            }
+        }
+        Integer price = priceOf.get(auctionId);
+        return price != null && price >= minPrice && price <= maxPrice;
+    }
+
+    private static Set<String> wordsOf(AuctionBean auction) {
+        Set<String> auctionWords = tokenize(auction.getName());
+        auctionWords.addAll(tokenize(auction.getDescription()));
+        return auctionWords;
+    }
+
+    /**
+     * Split a text in lower case words
+     */
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<String>();
+        if (text != null) {
+            for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static <K> Set<UUID> lookup(ConcurrentMap<K, Set<UUID>> index, K key) {
+        Set<UUID> auctions = index.get(key);
+        return auctions != null ? auctions : Collections.<UUID>emptySet();
+    }
+
+    private static <K> void put(ConcurrentMap<K, Set<UUID>> index, K key, UUID auctionId) {
+        Set<UUID> auctions = index.get(key);
+        if (auctions == null) {
+            auctions = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+            index.put(key, auctions);
+        }
+        auctions.add(auctionId);
+    }
+
+    private static <K> void remove(ConcurrentMap<K, Set<UUID>> index, K key, UUID auctionId) {
+        Set<UUID> auctions = index.get(key);
+        if (auctions != null && auctions.remove(auctionId) && auctions.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.client.IClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of an auction held by the server : the auction itself, its current winner, the bids and the round counters.
+ * An AuctionState is its own lock : every access must be made while holding its monitor.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class AuctionState {
+    private final AuctionBean auction;
+    private IClient winner;
+    private String winnerIdentifier;
+    private final Map<IClient, Integer> bidByClient = new HashMap<IClient, Integer>();
+    private final List<IClient> highestBidders = new ArrayList<IClient>();
+    private int highestBid = Integer.MIN_VALUE;
+    private final List<String> nameClientsBid = new ArrayList<String>();
+    private int nbParticipants;
+    private int bidThisRound;
+    private int round = 0;
+    private TimingWheel.Timeout deadline;
+    private boolean launched = false;
+    private boolean completed = false;
+
+    // The events sent to the clients are numbered, and the state carried by the last one is kept for the resyncs
+    private long sequence = 0;
+    private volatile AuctionStatus status;
+
+    // The clients taking part in the auction, and the ones who will join it at the next round
+    private final Set<IClient> audience = new LinkedHashSet<IClient>();
+    private final Set<IClient> pending = new LinkedHashSet<IClient>();
+    private final Set<IClient> answered = new HashSet<IClient>();
+
+    AuctionState(AuctionBean auction) {
+        this.auction = auction;
+    }
+
+    AuctionBean getAuction() {
+        return auction;
+    }
+
+    IClient getWinner() {
+        return winner;
+    }
+
+    void setWinner(IClient winner) {
+        this.winner = winner;
+    }
+
+    /**
+     * @return The identifier of the current winner, which is still known when the winner is not connected anymore
+     */
+    String getWinnerIdentifier() {
+        return winnerIdentifier;
+    }
+
+    void setWinnerIdentifier(String winnerIdentifier) {
+        this.winnerIdentifier = winnerIdentifier;
+    }
+
+    /**
+     * @return The highest bid placed on the auction, or Integer.MIN_VALUE if there is none
+     */
+    int getHighestBid() {
+        return highestBid;
+    }
+
+    /**
+     * @return The clients who have placed the highest bid (more than one in case of a tie)
+     */
+    List<IClient> getHighestBidders() {
+        return Collections.unmodifiableList(highestBidders);
+    }
+
+    /**
+     * @return The identifiers of the clients who have bid during this round
+     */
+    List<String> getNameClientsBid() {
+        return nameClientsBid;
+    }
+
+    int getNbParticipants() {
+        return nbParticipants;
+    }
+
+    void setNbParticipants(int nbParticipants) {
+        this.nbParticipants = nbParticipants;
+    }
+
+    int getBidThisRound() {
+        return bidThisRound;
+    }
+
+    void setBidThisRound(int bidThisRound) {
+        this.bidThisRound = bidThisRound;
+    }
+
+    /**
+     * Record a bid placed during the current round
+     * @param client The client who bid
+     * @param identifier The identifier of the client
+     * @param bid The value of the bid
+     */
+    void addBid(IClient client, String identifier, int bid) {
+        bidByClient.put(client, bid);
+        nameClientsBid.add(identifier);
+        bidThisRound++;
+
+        // The highest bid and its tie set are maintained as the bids come, so closing a round never sorts the bids
+        if (bid > highestBid) {
+            highestBid = bid;
+            highestBidders.clear();
+            highestBidders.add(client);
+        } else if (bid == highestBid && !highestBidders.contains(client)) {
+            highestBidders.add(client);
+        }
+    }
+
+    /**
+     * Forget the bid of a client who has left the auction
+     * @param client The client who left
+     */
+    void removeBid(IClient client) {
+        if (bidByClient.remove(client) == null) {
+            return;
+        }
+        highestBidders.remove(client);
+
+        // Only the departure of the last highest bidder requires to look for the new highest bid
+        if (highestBidders.isEmpty()) {
+            highestBid = Integer.MIN_VALUE;
+            for (Map.Entry<IClient, Integer> bid : bidByClient.entrySet()) {
+                if (bid.getValue() > highestBid) {
+                    highestBid = bid.getValue();
+                    highestBidders.clear();
+                }
+                if (bid.getValue() == highestBid) {
+                    highestBidders.add(bid.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget all the bids placed on the auction
+     */
+    void clearBids() {
+        bidByClient.clear();
+        highestBidders.clear();
+        highestBid = Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return The number of the current round
+     */
+    int getRound() {
+        return round;
+    }
+
+    /**
+     * Start a new round
+     * @param deadline The timeout closing the new round
+     * @return The number of the new round
+     */
+    int nextRound(TimingWheel.Timeout deadline) {
+        setDeadline(deadline);
+        answered.clear();
+        return ++round;
+    }
+
+    /**
+     * @return The time (in milliseconds) before the deadline of the current round
+     */
+    long getRemainingTime() {
+        return deadline != null ? Math.max(0, deadline.getDeadline() - System.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * Replace the deadline of the current round, cancelling the previous one
+     */
+    void setDeadline(TimingWheel.Timeout deadline) {
+        if (this.deadline != null) {
+            this.deadline.cancel();
+        }
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return True if the auction has been sold
+     */
+    boolean isCompleted() {
+        return completed;
+    }
+
+    void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    boolean isLaunched() {
+        return launched;
+    }
+
+    void setLaunched(boolean launched) {
+        this.launched = launched;
+    }
+
+    /**
+     * Number a new event of the auction
+     * @return The sequence number of the event
+     */
+    long nextSequence() {
+        return ++sequence;
+    }
+
+    /**
+     * Number the next events of the auction from an origin, so that they follow the events numbered by
+     * another server
+     * @param origin The sequence number before the next event
+     */
+    void skipSequenceTo(long origin) {
+        sequence = Math.max(sequence, origin);
+    }
+
+    /**
+     * @return The state of the auction after its last event, or null if no event has been sent.
+     * It can be read without holding the lock of the auction.
+     */
+    AuctionStatus getStatus() {
+        return status;
+    }
+
+    void setStatus(AuctionStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * @return The clients taking part in the auction
+     */
+    Set<IClient> getAudience() {
+        return audience;
+    }
+
+    /**
+     * Add a client who has subscribed to the auction during a round : he will join it at the next round
+     * @param client The new client
+     */
+    void addPending(IClient client) {
+        if (!audience.contains(client)) {
+            pending.add(client);
+        }
+    }
+
+    /**
+     * Add a client who joins the auction during the current round
+     * @param client The new client
+     * @return False if the client was already taking part in the auction
+     */
+    boolean join(IClient client) {
+        pending.remove(client);
+        return audience.add(client);
+    }
+
+    /**
+     * Let the pending clients join the auction
+     * @return The clients who have joined the auction
+     */
+    List<IClient> admitPending() {
+        List<IClient> admitted = new ArrayList<IClient>(pending);
+        audience.addAll(pending);
+        pending.clear();
+        return admitted;
+    }
+
+    /**
+     * Remove a client from the auction
+     * @param client The client who left
+     * @return True if the client was taking part in the auction
+     */
+    boolean leave(IClient client) {
+        pending.remove(client);
+        return audience.remove(client);
+    }
+
+    /**
+     * Record that a client has finished the current round
+     * @param client The client who answered
+     * @return False if the client had already answered during this round
+     */
+    boolean answer(IClient client) {
+        return answered.add(client);
+    }
+
+    /**
+     * @return True if the client has finished the current round
+     */
+    boolean hasAnswered(IClient client) {
+        return answered.contains(client);
+    }
+}
@@ -0,0 +1,143 @@
+package com.alma.pay2bid.server;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The versions of the auction catalogue. Each change of an auction (placed, new price, completed) gives it a new
+ * version, taken from a global counter : the changes since a version are read in order from a sorted index,
+ * where every auction appears only once, at its latest version.
+ * <p>
+ * The completed auctions leave a tombstone, so that a client can forget them. Only the latest tombstones are kept :
+ * a client whose version is older than the oldest one must reload the whole catalogue.
+ * The updates are serialized by the versions, while the reads never lock them.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class AuctionVersions {
+
+    /**
+     * The latest change of an auction
+     */
+    static class Change {
+        private final UUID auctionId;
+        private final boolean removed;
+
+        private Change(UUID auctionId, boolean removed) {
+            this.auctionId = auctionId;
+            this.removed = removed;
+        }
+
+        UUID getAuctionId() {
+            return auctionId;
+        }
+
+        /**
+         * @return True if the auction is not running anymore
+         */
+        boolean isRemoved() {
+            return removed;
+        }
+    }
+
+    private final ConcurrentSkipListMap<Long, Change> changes = new ConcurrentSkipListMap<Long, Change>();
+    private final ConcurrentMap<UUID, Long> versionOf = new ConcurrentHashMap<UUID, Long>();
+    private final Deque<Long> tombstones = new ArrayDeque<Long>();
+    private final int maxTombstones;
+
+    /*
+     * The versions start from the clock, so that the versions given by a previous run of the server are older
+     * than the origin, and are recognized as expired.
+     */
+    private final long origin = System.currentTimeMillis() * 1000;
+    private volatile long current = origin;
+    private volatile long floor = origin;
+
+    /**
+     * Constructor
+     * @param maxTombstones Number of tombstones kept
+     */
+    AuctionVersions(int maxTombstones) {
+        this.maxTombstones = maxTombstones;
+    }
+
+    /**
+     * Give a new version to an auction which has been placed or updated
+     * @param auctionId UUID of the auction
+     */
+    synchronized void touch(UUID auctionId) {
+        put(new Change(auctionId, false));
+    }
+
+    /**
+     * Replace an auction which is not running anymore by a tombstone
+     * @param auctionId UUID of the auction
+     */
+    synchronized void remove(UUID auctionId) {
+        if (!versionOf.containsKey(auctionId)) {
+            return;
+        }
+        tombstones.add(put(new Change(auctionId, true)));
+
+        while (tombstones.size() > maxTombstones) {
+            long oldest = tombstones.poll();
+            Change tombstone = changes.remove(oldest);
+            if (tombstone != null) {
+                versionOf.remove(tombstone.getAuctionId(), oldest);
+            }
+            floor = oldest;
+        }
+    }
+
+    /**
+     * @param version A version given by the server
+     * @return True if the changes since this version cannot be computed anymore
+     */
+    boolean isExpired(long version) {
+        return version != 0 && (version < floor || version > current);
+    }
+
+    /**
+     * @param version A version given by the server, or 0 for the whole catalogue
+     * @return The latest change of each auction changed after this version, by increasing version
+     */
+    NavigableMap<Long, Change> changesAfter(long version) {
+        return changes.tailMap(version, false);
+    }
+
+    /**
+     * @param auctionId UUID of an auction
+     * @return The version of the latest change of the auction, or 0 if it is not in the catalogue
+     */
+    long getVersion(UUID auctionId) {
+        Long version = versionOf.get(auctionId);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * @return The version of the latest change
+     */
+    long getCurrent() {
+        return current;
+    }
+
+    /**
+     * The change is put at its new version before leaving the old one, so a reader never misses it
+     */
+    private long put(Change change) {
+        long version = current + 1;
+        changes.put(version, change);
+        current = version;
+        Long previous = versionOf.put(change.getAuctionId(), version);
+        if (previous != null) {
+            changes.remove(previous);
+        }
+        return version;
+    }
+}
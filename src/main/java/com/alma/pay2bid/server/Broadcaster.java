@@ -0,0 +1,381 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.client.IClient;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Sends the callbacks to the clients. Each client has his own bounded outbox, drained in order by a sender task
+ * running on a bounded pool of threads : sending a callback never waits for the client.
+ * <p>
+ * A callback sent with a conflation key replaces the callback with the same key still waiting in the outbox,
+ * so a slow client only receives the latest price of an auction. When the outbox is full, the new prices are dropped
+ * but the other callbacks are still queued. A client whose outbox has been full and has not been emptied since
+ * a timeout is reported as saturated, and a client whose callback fails is reported as failed.
+ * Each callback has a deadline : a client who does not answer in time is reported as failed, and the thread waiting
+ * for him goes back to the other outboxes.
+ * <p>
+ * The clients behind a relay share the outbox of the relay : a callback is sent once to the relay, with the list
+ * of its recipients, and the relay delivers it to them. When the relay fails, all its clients are reported.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class Broadcaster {
+
+    /**
+     * A remote call made on a single client
+     */
+    interface Callback {
+        void call(IClient client) throws RemoteException;
+    }
+
+    /**
+     * Notified when a client cannot receive his callbacks anymore
+     */
+    interface FailureListener {
+        void clientFailed(IClient client);
+
+        void clientSaturated(IClient client);
+    }
+
+    /**
+     * A callback waiting in an outbox
+     */
+    private static class Message {
+        private final Object key;
+        private Callback callback;
+
+        Message(Object key, Callback callback) {
+            this.key = key;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * The outbox of a client. At most one sender task drains it at a time, so the callbacks are sent in order.
+     */
+    private class Outbox implements Runnable {
+        private final IClient client;
+        private final Deque<Message> messages = new ArrayDeque<Message>();
+        private final Map<Object, Message> conflated = new HashMap<Object, Message>();
+        private boolean scheduled = false;
+        private boolean closed = false;
+        private long saturatedSince = 0;
+
+        Outbox(IClient client) {
+            this.client = client;
+        }
+
+        synchronized void offer(Object key, Callback callback) {
+            if (closed) {
+                return;
+            }
+            if (key != null) {
+                Message queued = conflated.get(key);
+                if (queued != null) {
+                    queued.callback = callback;
+                    return;
+                }
+            }
+
+            if (messages.size() >= capacity) {
+                long now = System.currentTimeMillis();
+                if (saturatedSince == 0) {
+                    saturatedSince = now;
+                } else if (now - saturatedSince > saturationTimeout) {
+                    LOGGER.warning("The outbox of a client is saturated : " + client + "\n");
+                    close();
+                    for (IClient reported : clientsOf(client)) {
+                        listener.clientSaturated(reported);
+                    }
+                    return;
+                }
+                // Only a price is dropped : the next price of the auction carries its state, and the client resyncs
+                // on the gap. The other callbacks (new auction, sold, won) are followed by nothing and are kept.
+                if (key != null) {
+                    return;
+                }
+            }
+
+            Message message = new Message(key, callback);
+            messages.add(message);
+            if (key != null) {
+                conflated.put(key, message);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                executor.execute(this);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            messages.clear();
+            conflated.clear();
+        }
+
+        /**
+         * Send a batch of callbacks, then give the thread to the other outboxes
+         */
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Message message;
+                synchronized (this) {
+                    message = messages.poll();
+                    if (message == null) {
+                        // The client has caught up
+                        scheduled = false;
+                        saturatedSince = 0;
+                        return;
+                    }
+                    if (message.key != null) {
+                        conflated.remove(message.key);
+                    }
+                }
+                try {
+                    call(message.callback, client);
+                } catch (RemoteException e) {
+                    LOGGER.warning("A callback has failed : " + e.getMessage() + "\n");
+                    close();
+                    synchronized (this) {
+                        scheduled = false;
+                    }
+                    for (IClient reported : clientsOf(client)) {
+                        listener.clientFailed(reported);
+                    }
+                    return;
+                } catch (RuntimeException e) {
+                    LOGGER.warning("A callback has failed : " + e + "\n");
+                }
+            }
+            synchronized (this) {
+                if (messages.isEmpty()) {
+                    scheduled = false;
+                    saturatedSince = 0;
+                } else {
+                    executor.execute(this);
+                }
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(Broadcaster.class.getCanonicalName());
+    private static final int BATCH_SIZE = 16;
+    private static final int CALLERS_PER_SENDER = 2;
+
+    private final ConcurrentMap<IClient, Outbox> outboxes = new ConcurrentHashMap<IClient, Outbox>();
+    private final ConcurrentMap<IClient, RelayLink> relayed = new ConcurrentHashMap<IClient, RelayLink>();
+    private final ConcurrentMap<IRelay, RelayLink> links = new ConcurrentHashMap<IRelay, RelayLink>();
+    private final ExecutorService executor;
+    private final ExecutorService callers;
+    private final long callDeadline;
+    private final int capacity;
+    private final long saturationTimeout;
+    private final FailureListener listener;
+
+    /**
+     * Constructor
+     * @param nbThreads Maximum number of callbacks running at the same time
+     * @param capacity Number of callbacks waiting in the outbox of a client above which his prices are dropped
+     * @param saturationTimeout Time (in milliseconds) after which a client whose outbox stays full is reported
+     * @param callDeadline Maximum time (in milliseconds) given to a client to answer a callback
+     * @param listener Notified of the clients which have failed or are saturated
+     */
+    Broadcaster(int nbThreads, int capacity, long saturationTimeout, long callDeadline, FailureListener listener) {
+        this.capacity = capacity;
+        this.callDeadline = callDeadline;
+        this.saturationTimeout = saturationTimeout;
+        this.listener = listener;
+        this.executor = new ThreadPoolExecutor(nbThreads, nbThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("broadcaster"));
+        // Each sender waits for one call at a time. The other threads are held by the calls which have missed their
+        // deadline and never returned : their clients are reported and never called again, but the pool stays bounded.
+        this.callers = new ThreadPoolExecutor(0, CALLERS_PER_SENDER * nbThreads, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new DaemonThreadFactory("callback"));
+    }
+
+    /**
+     * Create the outbox of a new client
+     * @param client The client
+     */
+    void open(IClient client) {
+        outboxes.putIfAbsent(client, new Outbox(client));
+    }
+
+    /**
+     * Add a new client behind a relay, sharing the outbox of the relay
+     * @param client The client
+     * @param clientId UUID of the client, known by the relay
+     * @param relay The relay delivering the callbacks to the client
+     */
+    void openRelayed(IClient client, UUID clientId, IRelay relay) {
+        synchronized (links) {
+            RelayLink link = links.get(relay);
+            if (link == null) {
+                link = new RelayLink(relay);
+                links.put(relay, link);
+                outboxes.put(link, new Outbox(link));
+            }
+            link.add(client, clientId);
+            relayed.put(client, link);
+        }
+    }
+
+    /**
+     * Drop the outbox of a client who has left, with the callbacks still waiting in it.
+     * The outbox of a relay is dropped with its last client.
+     * @param client The client
+     */
+    void close(IClient client) {
+        Outbox outbox = outboxes.remove(client);
+        if (outbox != null) {
+            outbox.close();
+        }
+        synchronized (links) {
+            RelayLink link = relayed.remove(client);
+            if (link != null && link.remove(client)) {
+                links.remove(link.getRelay());
+                close(link);
+            }
+        }
+    }
+
+    /**
+     * Queue a callback for every client. It returns without waiting for the clients.
+     * @param clients The recipients of the callback
+     * @param callback The remote call to make on each client
+     */
+    void send(Collection<IClient> clients, Callback callback) {
+        send(clients, null, callback);
+    }
+
+    /**
+     * Queue a callback for every client, replacing the callback with the same key still waiting for him
+     * @param clients The recipients of the callback
+     * @param key The conflation key of the callback, or null if it cannot be replaced
+     * @param callback The remote call to make on each client
+     */
+    void send(Collection<IClient> clients, Object key, Callback callback) {
+        Map<RelayLink, List<UUID>> recipients = null;
+        for (IClient client : clients) {
+            RelayLink link = relayed.get(client);
+            if (link != null) {
+                UUID clientId = link.idOf(client);
+                if (clientId == null) {
+                    continue;
+                }
+                if (recipients == null) {
+                    recipients = new HashMap<RelayLink, List<UUID>>();
+                }
+                List<UUID> ids = recipients.get(link);
+                if (ids == null) {
+                    ids = new ArrayList<UUID>();
+                    recipients.put(link, ids);
+                }
+                ids.add(clientId);
+                continue;
+            }
+            Outbox outbox = outboxes.get(client);
+            if (outbox != null) {
+                outbox.offer(key, callback);
+            }
+        }
+
+        if (recipients != null) {
+            for (Map.Entry<RelayLink, List<UUID>> entry : recipients.entrySet()) {
+                Outbox outbox = outboxes.get(entry.getKey());
+                if (outbox != null) {
+                    // The recipients are part of the conflation key : a price replaces the one sent to the same clients
+                    Object relayKey = key != null ? Arrays.asList(key, entry.getValue()) : null;
+                    outbox.offer(relayKey, relay(entry.getKey(), entry.getValue(), callback));
+                }
+            }
+        }
+    }
+
+    /**
+     * Make a callback, waiting for the client until the deadline of the call
+     * @throws RemoteException If the callback has failed, or if its deadline has been reached or cannot be met
+     */
+    private void call(final Callback callback, final IClient client) throws RemoteException {
+        Future<Void> call;
+        try {
+            call = callers.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws RemoteException {
+                    callback.call(client);
+                    return null;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Every thread is held by a call which has not returned : the client would not be called in time
+            throw new RemoteException("No thread left to call the client before the deadline of a callback : "
+                    + client);
+        }
+        try {
+            call.get(callDeadline, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            throw new RemoteException("The client missed the deadline of a callback : " + client);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RemoteException("A callback has failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for a callback", e);
+        }
+    }
+
+    /**
+     * @return The clients reported when the outbox of a client or a relay fails
+     */
+    private Collection<IClient> clientsOf(IClient client) {
+        if (client instanceof RelayLink) {
+            return new ArrayList<IClient>(((RelayLink) client).getClients());
+        }
+        return Collections.singletonList(client);
+    }
+
+    /**
+     * @return The callback made once on the relay for some of its clients
+     */
+    private static Callback relay(final RelayLink link, final List<UUID> recipients, final Callback callback) {
+        return new Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                callback.call(link.to(recipients));
+            }
+        };
+    }
+}
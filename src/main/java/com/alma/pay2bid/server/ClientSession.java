@@ -0,0 +1,60 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.client.ClientState;
+import com.alma.pay2bid.client.IClient;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What the server knows about a registered client : his identity, fetched once at registration,
+ * and his state in each auction. The bid path never has to call the client back.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class ClientSession {
+    private final IClient client;
+    private final UUID uuid;
+    private final String identifier;
+    private final ConcurrentMap<UUID, ClientState> states = new ConcurrentHashMap<UUID, ClientState>();
+
+    ClientSession(IClient client, ClientBean identity) {
+        this.client = client;
+        this.uuid = identity.getUuid();
+        this.identifier = identity.getIdentifier();
+    }
+
+    IClient getClient() {
+        return client;
+    }
+
+    UUID getUuid() {
+        return uuid;
+    }
+
+    String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @param auctionId UUID of the auction
+     * @return The state of the client in the auction, or null if he does not take part in it
+     */
+    ClientState getState(UUID auctionId) {
+        return states.get(auctionId);
+    }
+
+    void setState(UUID auctionId, ClientState state) {
+        states.put(auctionId, state);
+    }
+
+    /**
+     * Forget the state of the client in an auction he has left
+     */
+    void removeState(UUID auctionId) {
+        states.remove(auctionId);
+    }
+}
@@ -0,0 +1,67 @@
+package com.alma.pay2bid.server;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * A consistent hash ring : each node is placed at several points of the ring, and a key belongs to the first node
+ * found after its hash. Adding a node only moves the keys of its own points.
+ * The points of a node only depend on its name, so every router built with the same names agrees on the owners.
+ * @param <T> The type of the nodes
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class HashRing<T> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final TreeMap<Long, T> ring = new TreeMap<Long, T>();
+    private final int virtualNodes;
+
+    /**
+     * @param virtualNodes Number of points of each node on the ring
+     */
+    HashRing(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    void add(String name, T node) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(name + "#" + i), node);
+        }
+    }
+
+    /**
+     * @param key The key
+     * @return The node owning the key, or null if the ring is empty
+     */
+    T nodeFor(UUID key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, T> tail = ring.tailMap(hash(key.toString()));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * The first 8 bytes of the MD5 of the key, which spreads the similar names over the whole ring
+     */
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM provides MD5
+            throw new IllegalStateException(e);
+        }
+    }
+}
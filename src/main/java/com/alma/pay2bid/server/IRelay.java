@@ -0,0 +1,34 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSummary;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The interface of a relay, which receives the callbacks of the clients attached to it and delivers them.
+ * Each callback is sent once for all the recipients behind the relay, given by the UUID of their identity.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public interface IRelay extends Remote {
+
+    void newAuction(List<UUID> recipients, UUID auctionId, AuctionSummary auction, long sequence)
+            throws RemoteException;
+
+    void bidSold(List<UUID> recipients, UUID auctionId, String buyer, long sequence) throws RemoteException;
+
+    void newPrice(List<UUID> recipients, UUID auctionId, int price, String winner, long sequence)
+            throws RemoteException;
+
+    void updatePrice(List<UUID> recipients, UUID auctionId, int price, String winner, long sequence)
+            throws RemoteException;
+
+    void auctionLeft(List<UUID> recipients, UUID auctionId) throws RemoteException;
+
+    void addWonAuction(List<UUID> recipients, AuctionBean auction) throws RemoteException;
+}
@@ -6,6 +6,13 @@ import java.util.List;
 import java.util.UUID;
 
 import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
 import com.alma.pay2bid.client.IClient;
 
 /**
@@ -22,11 +29,57 @@ public interface IServer extends Remote {
     void placeAuction(AuctionBean auction) throws RemoteException;
 
     /**
+     * Register a new client. He joins the running auctions he watches during their current round : the snapshot
+     * returned gives him these auctions, and the other clients are not notified.
      * @param client
+     * @return The running auctions, with their prices, winners and round deadlines
      * @throws RemoteException
      * @throws InterruptedException
      */
-    void register(IClient client) throws RemoteException, InterruptedException;
+    AuctionSnapshot register(IClient client) throws RemoteException, InterruptedException;
+
+    /**
+     * Attach again a client who was registered on another server, which has stopped : he keeps the auctions he knows,
+     * and the auctions he was winning.
+     * @param client
+     * @throws RemoteException
+     * @throws InterruptedException
+     */
+    void reattach(IClient client) throws RemoteException, InterruptedException;
+
+    /**
+     * Register a new client behind a relay : his callbacks are sent to the relay, which delivers them to him.
+     * @param client
+     * @param identity The identity of the client, read by the relay
+     * @param relay The relay of the client
+     * @return The running auctions, with their prices, winners and round deadlines
+     * @throws RemoteException
+     * @throws InterruptedException
+     */
+    AuctionSnapshot registerRelayed(IClient client, ClientBean identity, IRelay relay) throws RemoteException, InterruptedException;
+
+    /**
+     * Renew the lease of a client : a client who stops renewing his lease is considered as crashed.
+     * @param client
+     * @throws RemoteException
+     */
+    void renewLease(IClient client) throws RemoteException;
+
+    /**
+     * Subscribe a client to a topic : once he has subscribed to a topic, he only receives the price events of the
+     * auctions he watches. Every client is still notified of the new auctions.
+     * @param client
+     * @param topic An auction, a seller or a category
+     * @throws RemoteException
+     */
+    void subscribe(IClient client, Topic topic) throws RemoteException;
+
+    /**
+     * @param client
+     * @param topic
+     * @throws RemoteException
+     */
+    void unsubscribe(IClient client, Topic topic) throws RemoteException;
 
     void disconnect(IClient client) throws RemoteException, InterruptedException;
 
@@ -38,6 +91,7 @@ public interface IServer extends Remote {
     void raiseBid(UUID auctionId, IClient client, int newBid) throws RemoteException;
 
     /**
+     * Notifies the server that a client has finished its round, so that the round can end before its deadline.
      * @param client
      * @throws RemoteException
      * @throws InterruptedException
@@ -63,4 +117,41 @@ public interface IServer extends Remote {
 
     AuctionBean getAuction(UUID auctionId) throws RemoteException;
 
+    /**
+     * Get the details of an auction left out of the summary sent to the clients. A long description is returned
+     * in chunks : the next chunk starts at the offset following the previous one.
+     * @param auctionId UUID of the auction
+     * @param offset Position in the description of the first character to return
+     * @return A chunk of the details, or null if the auction is unknown
+     * @throws RemoteException
+     */
+    AuctionDetails getAuctionDetails(UUID auctionId, int offset) throws RemoteException;
+
+    /**
+     * Get the state of an auction after its last event, for a client who has detected that he has missed some events.
+     * It never waits for the auction to be unlocked, so it can be called from a callback.
+     * @param auctionId UUID of the auction
+     * @return The state of the auction, or null if the auction has not been launched
+     * @throws RemoteException
+     */
+    AuctionStatus resync(UUID auctionId) throws RemoteException;
+
+    /**
+     * Search the running auctions by words of their name or description, by seller and by price range
+     * @param query The criteria of the search
+     * @return The matching auctions
+     * @throws RemoteException
+     */
+    List<AuctionBean> search(AuctionQuery query) throws RemoteException;
+
+    /**
+     * List the auctions placed, updated or completed since a version of the catalogue, by pages.
+     * A client gives the version of the last page he has received, or 0 to list the whole catalogue.
+     * @param sinceVersion The version of the last page received, or 0
+     * @param pageSize The maximum number of changes in the page
+     * @return The page, with the version to give to the next call
+     * @throws RemoteException
+     */
+    AuctionPage listAuctions(long sinceVersion, int pageSize) throws RemoteException;
+
 }
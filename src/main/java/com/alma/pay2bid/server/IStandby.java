@@ -0,0 +1,27 @@
+package com.alma.pay2bid.server;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * The interface of a hot standby server, which follows the state transitions of a primary server
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public interface IStandby extends Remote {
+    /**
+     * Apply the next state transitions of the primary. An empty batch tells that the primary is still alive.
+     * @param events A batch of events, encoded by JournalEvent.encode
+     * @return False if the standby does not follow the primary anymore : it has taken over, or it has been dropped
+     * @throws RemoteException
+     */
+    boolean replicate(byte[] events) throws RemoteException;
+
+    /**
+     * Tell the standby that the primary has dropped it : it has missed some events, and must never take over.
+     * @return False if the standby had already taken over
+     * @throws RemoteException
+     */
+    boolean detach() throws RemoteException;
+}
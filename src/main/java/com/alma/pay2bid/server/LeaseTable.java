@@ -0,0 +1,134 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.client.IClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The leases of the connected clients. A client keeps his lease by renewing it before it expires;
+ * a client who stops renewing his lease is considered as crashed.
+ * A renewal only updates a timestamp : the expirations are checked by a timing wheel, and reported in batches.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class LeaseTable {
+
+    /**
+     * Notified when some leases have expired
+     */
+    interface ExpiryListener {
+        void leasesExpired(List<IClient> clients);
+    }
+
+    /**
+     * The lease of a client
+     */
+    private class Lease implements Runnable {
+        private final IClient client;
+        private volatile long expiration;
+
+        Lease(IClient client) {
+            this.client = client;
+            this.expiration = System.currentTimeMillis() + duration;
+        }
+
+        /**
+         * Check the lease when its last known expiration is reached
+         */
+        @Override
+        public void run() {
+            if (leases.get(client) != this) {
+                // The lease has been revoked
+                return;
+            }
+            long remaining = expiration - System.currentTimeMillis();
+            if (remaining > 0) {
+                // The lease has been renewed in the meantime
+                wheel.schedule(this, remaining);
+            } else if (leases.remove(client, this)) {
+                expired(client);
+            }
+        }
+    }
+
+    private final ConcurrentMap<IClient, Lease> leases = new ConcurrentHashMap<IClient, Lease>();
+    private final Queue<IClient> expiredClients = new ConcurrentLinkedQueue<IClient>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final TimingWheel wheel;
+    private final long duration;
+    private final ExpiryListener listener;
+
+    /**
+     * Constructor
+     * @param wheel The timing wheel checking the expirations
+     * @param duration Duration of a lease, in milliseconds
+     * @param listener Notified of the expired leases
+     */
+    LeaseTable(TimingWheel wheel, long duration, ExpiryListener listener) {
+        this.wheel = wheel;
+        this.duration = duration;
+        this.listener = listener;
+    }
+
+    /**
+     * Give a new lease to a client
+     * @param client The client
+     */
+    void grant(IClient client) {
+        Lease lease = new Lease(client);
+        leases.put(client, lease);
+        wheel.schedule(lease, duration);
+    }
+
+    /**
+     * Renew the lease of a client
+     * @param client The client
+     * @return False if the client has no lease
+     */
+    boolean renew(IClient client) {
+        Lease lease = leases.get(client);
+        if (lease == null) {
+            return false;
+        }
+        lease.expiration = System.currentTimeMillis() + duration;
+        return true;
+    }
+
+    /**
+     * Revoke the lease of a client who has left
+     * @param client The client
+     */
+    void revoke(IClient client) {
+        leases.remove(client);
+    }
+
+    /**
+     * Queue an expired client. The clients expiring during the same tick are reported together.
+     */
+    private void expired(IClient client) {
+        expiredClients.add(client);
+        if (flushScheduled.compareAndSet(false, true)) {
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduled.set(false);
+                    List<IClient> batch = new ArrayList<IClient>();
+                    IClient expiredClient;
+                    while ((expiredClient = expiredClients.poll()) != null) {
+                        batch.add(expiredClient);
+                    }
+                    if (!batch.isEmpty()) {
+                        listener.leasesExpired(batch);
+                    }
+                }
+            }, 0);
+        }
+    }
+}
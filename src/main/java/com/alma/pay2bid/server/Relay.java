@@ -0,0 +1,301 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.IClient;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * A relay in front of a server : the clients register on the relay, which registers them on the server behind it.
+ * The server sends each callback once to the relay, with the list of its recipients, and the relay delivers it
+ * to them from its own outboxes. The other calls of the clients are forwarded to the server.
+ * <p>
+ * A relay can stand in front of another relay : the clients of the lower relay are registered on the upper relay
+ * as its own relayed clients.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class Relay extends UnicastRemoteObject implements IServer, IRelay {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(Relay.class.getCanonicalName());
+    private static final int OUTBOX_CAPACITY = 256;
+    private static final long SATURATION_TIMEOUT = 5000;
+    private static final long CALLBACK_DEADLINE = 2000;
+    private static final int BROADCAST_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+
+    private final IServer upstream;
+    private final ConcurrentMap<UUID, IClient> clientsById = new ConcurrentHashMap<UUID, IClient>();
+    private final ConcurrentMap<IClient, UUID> idOf = new ConcurrentHashMap<IClient, UUID>();
+
+    /*
+     * A client who cannot receive his callbacks is forgotten by the relay, and reported to the server as crashed :
+     * the server would otherwise keep him in the rounds of his auctions until his lease expires.
+     */
+    private final Broadcaster broadcaster = new Broadcaster(BROADCAST_THREADS, OUTBOX_CAPACITY, SATURATION_TIMEOUT,
+            CALLBACK_DEADLINE,
+            new Broadcaster.FailureListener() {
+                @Override
+                public void clientFailed(IClient client) {
+                    drop(client);
+                }
+
+                @Override
+                public void clientSaturated(IClient client) {
+                    drop(client);
+                }
+            });
+
+    /**
+     * Constructor
+     * @param upstream The server, or the relay, behind this relay
+     * @throws RemoteException
+     */
+    public Relay(IServer upstream) throws RemoteException {
+        super();
+        this.upstream = upstream;
+    }
+
+    private void attach(IClient client, ClientBean identity, IRelay relay) {
+        UUID clientId = identity.getUuid();
+        IClient previous = clientsById.put(clientId, client);
+        if (previous != null && !previous.equals(client)) {
+            forget(previous);
+            clientsById.put(clientId, client);
+        }
+        idOf.put(client, clientId);
+        if (relay != null) {
+            broadcaster.openRelayed(client, clientId, relay);
+        } else {
+            broadcaster.open(client);
+        }
+    }
+
+    private void forget(IClient client) {
+        UUID clientId = idOf.remove(client);
+        if (clientId != null) {
+            clientsById.remove(clientId, client);
+        }
+        broadcaster.close(client);
+    }
+
+    /**
+     * Forget a client who cannot receive his callbacks, and tell the server that he has crashed
+     */
+    private void drop(IClient client) {
+        if (!idOf.containsKey(client)) {
+            return;
+        }
+        forget(client);
+        try {
+            upstream.clientsCrashed(Collections.singletonList(client));
+        } catch (RemoteException e) {
+            LOGGER.warning("Unable to report a crashed client to the server : " + e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * @return The clients behind the relay among the recipients of a callback
+     */
+    private List<IClient> clientsOf(List<UUID> recipients) {
+        List<IClient> clients = new ArrayList<IClient>(recipients.size());
+        for (UUID clientId : recipients) {
+            IClient client = clientsById.get(clientId);
+            if (client != null) {
+                clients.add(client);
+            }
+        }
+        return clients;
+    }
+
+    @Override
+    public void placeAuction(AuctionBean auction) throws RemoteException {
+        upstream.placeAuction(auction);
+    }
+
+    @Override
+    public AuctionSnapshot register(IClient client) throws RemoteException, InterruptedException {
+        ClientBean identity = client.getIdentity();
+        attach(client, identity, null);
+        AuctionSnapshot snapshot = upstream.registerRelayed(client, identity, this);
+        LOGGER.info("Client " + identity.getIdentifier() + " registered through the relay \n");
+        return snapshot;
+    }
+
+    /**
+     * The relay cannot tell the server that the client is attached again : the server gives him back
+     * the auctions he was winning when a relayed client registers.
+     */
+    @Override
+    public void reattach(IClient client) throws RemoteException, InterruptedException {
+        register(client);
+    }
+
+    @Override
+    public AuctionSnapshot registerRelayed(IClient client, ClientBean identity, IRelay relay)
+            throws RemoteException, InterruptedException {
+        attach(client, identity, relay);
+        return upstream.registerRelayed(client, identity, this);
+    }
+
+    @Override
+    public void subscribe(IClient client, Topic topic) throws RemoteException {
+        upstream.subscribe(client, topic);
+    }
+
+    @Override
+    public void unsubscribe(IClient client, Topic topic) throws RemoteException {
+        upstream.unsubscribe(client, topic);
+    }
+
+    /**
+     * Only the clients known by the relay can renew their lease : a client forgotten by the relay must register again
+     */
+    @Override
+    public void renewLease(IClient client) throws RemoteException {
+        if (!idOf.containsKey(client)) {
+            throw new RemoteException("The client is not registered on the relay");
+        }
+        upstream.renewLease(client);
+    }
+
+    @Override
+    public void disconnect(IClient client) throws RemoteException, InterruptedException {
+        forget(client);
+        upstream.disconnect(client);
+    }
+
+    @Override
+    public void raiseBid(UUID auctionId, IClient client, int newBid) throws RemoteException {
+        upstream.raiseBid(auctionId, client, newBid);
+    }
+
+    @Override
+    public void timeElapsed(UUID auctionId, IClient client) throws RemoteException, InterruptedException {
+        upstream.timeElapsed(auctionId, client);
+    }
+
+    @Override
+    public void clientDisconnection(IClient client) throws RemoteException, InterruptedException {
+        forget(client);
+        upstream.clientDisconnection(client);
+    }
+
+    @Override
+    public void clientsCrashed(List<IClient> clientsCrashed) throws RemoteException {
+        for (IClient client : clientsCrashed) {
+            forget(client);
+        }
+        upstream.clientsCrashed(clientsCrashed);
+    }
+
+    @Override
+    public IClient getWinner(UUID auctionId) throws RemoteException {
+        return upstream.getWinner(auctionId);
+    }
+
+    @Override
+    public AuctionBean getAuction(UUID auctionId) throws RemoteException {
+        return upstream.getAuction(auctionId);
+    }
+
+    @Override
+    public AuctionDetails getAuctionDetails(UUID auctionId, int offset) throws RemoteException {
+        return upstream.getAuctionDetails(auctionId, offset);
+    }
+
+    @Override
+    public AuctionStatus resync(UUID auctionId) throws RemoteException {
+        return upstream.resync(auctionId);
+    }
+
+    @Override
+    public List<AuctionBean> search(AuctionQuery query) throws RemoteException {
+        return upstream.search(query);
+    }
+
+    @Override
+    public AuctionPage listAuctions(long sinceVersion, int pageSize) throws RemoteException {
+        return upstream.listAuctions(sinceVersion, pageSize);
+    }
+
+    @Override
+    public void newAuction(List<UUID> recipients, final UUID auctionId, final AuctionSummary auction,
+                           final long sequence) {
+        broadcaster.send(clientsOf(recipients), new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.newAuction(auctionId, auction, sequence);
+            }
+        });
+    }
+
+    @Override
+    public void bidSold(List<UUID> recipients, final UUID auctionId, final String buyer, final long sequence) {
+        broadcaster.send(clientsOf(recipients), new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.bidSold(auctionId, buyer, sequence);
+            }
+        });
+    }
+
+    @Override
+    public void newPrice(List<UUID> recipients, final UUID auctionId, final int price, final String winner,
+                         final long sequence) {
+        broadcaster.send(clientsOf(recipients), "newPrice " + auctionId, new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.newPrice(auctionId, price, winner, sequence);
+            }
+        });
+    }
+
+    @Override
+    public void updatePrice(List<UUID> recipients, final UUID auctionId, final int price, final String winner,
+                            final long sequence) {
+        broadcaster.send(clientsOf(recipients), "updatePrice " + auctionId, new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.updatePrice(auctionId, price, winner, sequence);
+            }
+        });
+    }
+
+    @Override
+    public void auctionLeft(List<UUID> recipients, final UUID auctionId) {
+        broadcaster.send(clientsOf(recipients), new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.auctionLeft(auctionId);
+            }
+        });
+    }
+
+    @Override
+    public void addWonAuction(List<UUID> recipients, final AuctionBean auction) {
+        broadcaster.send(clientsOf(recipients), new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.addWonAuction(auction);
+            }
+        });
+    }
+}
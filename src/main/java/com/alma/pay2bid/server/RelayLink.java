@@ -0,0 +1,68 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.client.IClient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The link to a relay, as seen by a broadcaster : all the clients behind the relay share its outbox.
+ * The callbacks made on the link itself are sent to all of them.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class RelayLink extends RelayedClients {
+    private static final long serialVersionUID = 1L;
+
+    private final ConcurrentMap<IClient, UUID> clients = new ConcurrentHashMap<IClient, UUID>();
+
+    RelayLink(IRelay relay) {
+        super(relay, null);
+    }
+
+    void add(IClient client, UUID clientId) {
+        clients.put(client, clientId);
+    }
+
+    /**
+     * @return True if no client is left behind the relay
+     */
+    boolean remove(IClient client) {
+        clients.remove(client);
+        return clients.isEmpty();
+    }
+
+    /**
+     * @return UUID of a client behind the relay, or null if he is not behind it
+     */
+    UUID idOf(IClient client) {
+        return clients.get(client);
+    }
+
+    Collection<IClient> getClients() {
+        return clients.keySet();
+    }
+
+    /**
+     * @param recipients UUID of some clients behind the relay
+     * @return The clients, seen as a single client
+     */
+    IClient to(List<UUID> recipients) {
+        return new RelayedClients(getRelay(), recipients);
+    }
+
+    @Override
+    List<UUID> recipients() {
+        return new ArrayList<UUID>(clients.values());
+    }
+
+    @Override
+    public String toString() {
+        return "RelayLink[" + getRelay() + ", " + clients.size() + " clients]";
+    }
+}
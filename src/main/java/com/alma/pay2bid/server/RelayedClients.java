@@ -0,0 +1,120 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.client.ClientState;
+import com.alma.pay2bid.client.IClient;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Some clients behind a relay, seen as a single client : a callback made on them is sent once to the relay,
+ * with the UUID of its recipients. The other methods of a client are not available through a relay.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class RelayedClients implements IClient {
+    private static final long serialVersionUID = 1L;
+
+    private final IRelay relay;
+    private final List<UUID> recipients;
+
+    RelayedClients(IRelay relay, List<UUID> recipients) {
+        this.relay = relay;
+        this.recipients = recipients;
+    }
+
+    IRelay getRelay() {
+        return relay;
+    }
+
+    /**
+     * @return UUID of the recipients of the callbacks
+     */
+    List<UUID> recipients() {
+        return recipients;
+    }
+
+    @Override
+    public void newAuction(UUID auctionId, AuctionSummary auction, long sequence) throws RemoteException {
+        relay.newAuction(recipients(), auctionId, auction, sequence);
+    }
+
+    @Override
+    public void bidSold(UUID auctionId, String buyer, long sequence) throws RemoteException {
+        relay.bidSold(recipients(), auctionId, buyer, sequence);
+    }
+
+    @Override
+    public void newPrice(UUID auctionId, int price, String winner, long sequence) throws RemoteException {
+        relay.newPrice(recipients(), auctionId, price, winner, sequence);
+    }
+
+    @Override
+    public void updatePrice(UUID auctionId, int price, String winner, long sequence) throws RemoteException {
+        relay.updatePrice(recipients(), auctionId, price, winner, sequence);
+    }
+
+    @Override
+    public void auctionLeft(UUID auctionId) throws RemoteException {
+        relay.auctionLeft(recipients(), auctionId);
+    }
+
+    @Override
+    public void addWonAuction(AuctionBean auction) throws RemoteException {
+        relay.addWonAuction(recipients(), auction);
+    }
+
+    @Override
+    public void submit(AuctionBean auction) throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public String getName() throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public void setName(String name) throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public String getIdentifier() throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public ClientBean getIdentity() throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public ClientState getState(UUID auctionId) throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public void setState(UUID auctionId, ClientState newState) throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public boolean getIsSeller(UUID auctionId) throws RemoteException {
+        throw unavailable();
+    }
+
+    @Override
+    public void setIsSeller(UUID auctionId, boolean v) throws RemoteException {
+        throw unavailable();
+    }
+
+    private static RemoteException unavailable() {
+        return new RemoteException("A relay only delivers the callbacks of its clients");
+    }
+}
@@ -0,0 +1,134 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.server.journal.JournalEvent;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Sends the state transitions of a primary server to its standby. The events are queued without waiting for the
+ * standby, and sent in batches by a single thread; when there is no event, an empty batch is sent as a heartbeat.
+ * <p>
+ * The replication is asynchronous : the events still in the queue when the primary stops are lost.
+ * A standby which cannot follow the primary anymore is dropped, and the primary goes on without it. The standby is
+ * told that it has been dropped : it would otherwise take over when the heartbeats stop, while the primary is still
+ * running.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class Replicator implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(Replicator.class.getCanonicalName());
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final IStandby standby;
+    private final BlockingQueue<JournalEvent> events;
+    private final long heartbeatInterval;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor
+     * @param standby The standby
+     * @param capacity Maximum number of events waiting to be sent
+     * @param heartbeatInterval Time (in milliseconds) between two batches sent to the standby when there is no event
+     */
+    Replicator(IStandby standby, int capacity, long heartbeatInterval) {
+        this.standby = standby;
+        this.events = new LinkedBlockingQueue<JournalEvent>(capacity);
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "replicator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue an event for the standby
+     * @param event The event
+     */
+    void append(JournalEvent event) {
+        if (running && !events.offer(event)) {
+            LOGGER.warning("The standby is too far behind : it is dropped \n");
+            running = false;
+            events.clear();
+        }
+    }
+
+    @Override
+    public void run() {
+        replicate();
+        if (!Thread.currentThread().isInterrupted()) {
+            fence();
+        }
+    }
+
+    private void replicate() {
+        List<JournalEvent> batch = new ArrayList<JournalEvent>();
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    JournalEvent first = events.poll(heartbeatInterval, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                    }
+                }
+                // A batch which has failed is sent again, with the next events up to the size of a batch only :
+                // the others stay in the queue, which drops the standby when it is full
+                events.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                if (!standby.replicate(JournalEvent.encode(batch))) {
+                    LOGGER.warning("The standby does not follow this server anymore : it is dropped \n");
+                    running = false;
+                    events.clear();
+                    return;
+                }
+                batch.clear();
+            } catch (RemoteException e) {
+                LOGGER.warning("Unable to reach the standby : " + e.getMessage() + "\n");
+                try {
+                    Thread.sleep(heartbeatInterval);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tell the dropped standby that it must not take over, until it can be reached
+     */
+    private void fence() {
+        while (true) {
+            try {
+                if (standby.detach()) {
+                    LOGGER.info("The standby knows that it has been dropped \n");
+                } else {
+                    LOGGER.severe("The standby has taken over while this server is running \n");
+                }
+                return;
+            } catch (RemoteException e) {
+                LOGGER.warning("Unable to tell the standby that it has been dropped : " + e.getMessage() + "\n");
+            }
+            try {
+                Thread.sleep(heartbeatInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -1,12 +1,32 @@
 package com.alma.pay2bid.server;
 
 import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
 import com.alma.pay2bid.client.ClientState;
 import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.server.journal.AuctionArchive;
+import com.alma.pay2bid.server.journal.Journal;
+import com.alma.pay2bid.server.journal.JournalEvent;
+import com.alma.pay2bid.server.journal.Snapshot;
+import com.alma.pay2bid.server.journal.SnapshotStore;
+
+import java.io.IOException;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -19,133 +39,781 @@ import java.util.stream.Collectors;
  */
 public class Server extends UnicastRemoteObject implements IServer {
 
-    /**
-     * Daemon responsible of detecting closed connection with clients
+    private static final Logger LOGGER = Logger.getLogger(Server.class.getCanonicalName());
+    private static final long LEASE_DURATION = 6000;
+    private static final long SNAPSHOT_INTERVAL = 60000;
+    private static final int OUTBOX_CAPACITY = 256;
+    private static final long SATURATION_TIMEOUT = 5000;
+    private static final long CALLBACK_DEADLINE = 2000;
+    private static final int BROADCAST_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+    private static final long ROUND_DURATION = 30000;
+    private static final long TIMER_TICK = 100;
+    private static final int TIMER_SIZE = 512;
+    private static final int TIMER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DETAILS_CHUNK_SIZE = 16384; // Characters of the description sent per call
+    private static final int MAX_TOMBSTONES = 100000;
+    private static final int REPLICATION_CAPACITY = 100000;
+    private static final long HEARTBEAT_INTERVAL = 500;
+
+    /*
+     * Random generator used to break the ties between the highest bidders.
+     * It is shared by all the auctions, and can be seeded with the system property pay2bid.seed to replay a session.
+     */
+    private static final Random RANDOM = System.getProperty("pay2bid.seed") != null
+            ? new Random(Long.getLong("pay2bid.seed", 0L)) : new Random();
+
+    /*
+     * The state of each auction is held in a single AuctionState, which is also the lock of the auction :
+     * bids on independent auctions are processed in parallel.
+     */
+    private ConcurrentMap<UUID, AuctionState> auctionsList = new ConcurrentHashMap<UUID, AuctionState>();
+
+    // The running auctions are indexed by words, seller and price, so that a search never scans auctionsList
+    private final AuctionIndex index = new AuctionIndex();
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+
+    // Every change of the catalogue gets a version, so that a client only pulls what has changed since his last visit
+    private final AuctionVersions versions = new AuctionVersions(MAX_TOMBSTONES);
+
+    /*
+     * The client registry is guarded separately from the auctions : iterations work on a snapshot of the list.
+     * The session of each client is filled once, when he registers, so that the server never has to call him back
+     * to know who he is or what he is doing.
      */
-    private class ConnectionDaemon extends TimerTask {
+    private List<IClient> clients = new CopyOnWriteArrayList<IClient>();
+    private ConcurrentMap<IClient, ClientSession> sessions = new ConcurrentHashMap<IClient, ClientSession>();
 
+    private static final int MIN_NUMBER_CLIENTS = 2;
+
+    /*
+     * The callbacks are queued in an outbox per client, so a slow client never slows down the auctions.
+     * A client whose callback fails is handled as crashed; a client whose outbox stays full is disconnected.
+     */
+    private final Broadcaster broadcaster = new Broadcaster(BROADCAST_THREADS, OUTBOX_CAPACITY, SATURATION_TIMEOUT,
+            CALLBACK_DEADLINE,
+            new Broadcaster.FailureListener() {
+                @Override
+                public void clientFailed(IClient client) {
+                    List<IClient> failed = new ArrayList<IClient>();
+                    failed.add(client);
+                    reportCrashed(failed);
+                }
+
+                @Override
+                public void clientSaturated(IClient client) {
+                    reportSaturated(client);
+                }
+            });
+    private final ExecutorService crashHandler = Executors.newSingleThreadExecutor(
+            new DaemonThreadFactory("crash-handler"));
+
+    /*
+     * The server owns the deadlines of the rounds and the leases of the clients : a single timing wheel handles them,
+     * and the expired tasks are run by a small pool of threads.
+     */
+    private final TimingWheel timer = new TimingWheel("server-timer", TIMER_TICK, TIMER_SIZE,
+            Executors.newFixedThreadPool(TIMER_THREADS, new DaemonThreadFactory("server-timer-task")));
+
+    /*
+     * The clients keep their lease alive with renewLease : the ones whose lease expires are handled as crashed,
+     * in batches, without the server ever polling them.
+     */
+    private final LeaseTable leases = new LeaseTable(timer, LEASE_DURATION, new LeaseTable.ExpiryListener() {
         @Override
-        public void run() {
-            List<IClient> clientsToRemove = new ArrayList<IClient>();
-            for(IClient client : clients) {
-                try {
-                    client.getName();
-                } catch (RemoteException e) {
-                    LOGGER.info("Detected a closed connection with " + client.toString() + "\n");
-                    clientsToRemove.add(client);
+        public void leasesExpired(List<IClient> expiredClients) {
+            LOGGER.info("The lease of " + expiredClients.size() + " clients has expired \n");
+            reportCrashed(expiredClients);
+        }
+    });
+
+    /*
+     * Every state transition is written in the journal, if the server has one.
+     * The live auctions are periodically written in a snapshot, after which the older events are compacted.
+     */
+    private final Journal journal;
+    private final SnapshotStore snapshots;
+
+    /*
+     * The completed auctions leave auctionsList : they are moved in an append-only archive, and read back on demand.
+     */
+    private final AuctionArchive archive;
+
+    // The state transitions are also sent to a hot standby, if the server has one
+    private volatile Replicator replicator;
+
+    /**
+     * Constructor
+     * @throws RemoteException
+     */
+    public Server() throws RemoteException {
+        super();
+        this.journal = null;
+        this.snapshots = null;
+        try {
+            this.archive = AuctionArchive.temporary();
+        } catch (IOException e) {
+            throw new RemoteException("Unable to create the archive of the auctions", e);
+        }
+    }
+
+    /**
+     * Constructor of a server whose state is rebuilt from its latest snapshot and the tail of its journal
+     * @param journal The journal of the server
+     * @param snapshots The snapshots of the server, or null to rebuild the state from the whole journal
+     * @param archive The archive of the completed auctions
+     * @throws IOException
+     */
+    public Server(Journal journal, SnapshotStore snapshots, AuctionArchive archive) throws IOException {
+        super();
+        this.journal = journal;
+        this.snapshots = snapshots;
+        this.archive = archive;
+
+        long from = 0;
+        Snapshot snapshot = snapshots != null ? snapshots.loadLatest() : null;
+        if (snapshot != null) {
+            for (Snapshot.Entry entry : snapshot.getEntries()) {
+                AuctionState state = new AuctionState(entry.getAuction());
+                state.setWinnerIdentifier(entry.getWinnerIdentifier());
+                auctionsList.put(entry.getAuction().getUuid(), state);
+                index.add(entry.getAuction());
+                versions.touch(entry.getAuction().getUuid());
+            }
+            from = snapshot.getPosition();
+        }
+
+        journal.replay(from, new Journal.Replayer() {
+            @Override
+            public void replay(JournalEvent event) {
+                recover(event);
+            }
+        });
+        LOGGER.info(auctionsList.size() + " auctions recovered from the journal, "
+                + archive.size() + " in the archive \n");
+
+        if (snapshots != null) {
+            Timer snapshotTimer = new Timer("snapshot", true);
+            snapshotTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    takeSnapshot();
+                }
+            }, SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL);
+        }
+    }
+
+    /**
+     * Write a snapshot of the live auctions, then delete the events of the journal which are in it.
+     * The events written while the snapshot is taken are both in the snapshot and in the journal : replaying them
+     * does not change the state.
+     */
+    private void takeSnapshot() {
+        try {
+            Snapshot snapshot = new Snapshot(journal.roll());
+            for (AuctionState state : auctionsList.values()) {
+                synchronized (state) {
+                    if (!state.isCompleted()) {
+                        snapshot.add(copyOf(state.getAuction()), state.getWinnerIdentifier());
+                    }
                 }
             }
+            snapshots.save(snapshot);
+            journal.deleteBefore(snapshot.getPosition());
+            LOGGER.info("Snapshot of " + snapshot.getEntries().size() + " auctions written \n");
+        } catch (IOException e) {
+            LOGGER.warning("Unable to write a snapshot : " + e.getMessage() + "\n");
+        }
+    }
 
-            if(clientsToRemove.size() > 0) {
-                try {
-                    clientsCrashed(clientsToRemove);
-                } catch (RemoteException e) {
-                    e.printStackTrace();
+    /**
+     * Rebuild the state of the server from an event of the journal.
+     * The clients are not recovered : they register again, and the running auctions are launched again with them.
+     */
+    private void recover(JournalEvent event) {
+        if (event.getType() == JournalEvent.Type.AUCTION_PLACED) {
+            // The auction may already be in the snapshot, or even completed and archived
+            if (archive.get(event.getAuctionId()) == null
+                    && auctionsList.putIfAbsent(event.getAuctionId(), new AuctionState(event.toAuction())) == null) {
+                index.add(auctionsList.get(event.getAuctionId()).getAuction());
+                versions.touch(event.getAuctionId());
+            }
+            return;
+        }
+
+        AuctionState state = event.getAuctionId() != null ? auctionsList.get(event.getAuctionId()) : null;
+        if (state == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case ROUND_CLOSED:
+                setPrice(state, event.getPrice());
+                state.setWinnerIdentifier(event.getClientIdentifier());
+                break;
+            case AUCTION_SOLD:
+                setPrice(state, event.getPrice());
+                state.setWinnerIdentifier(event.getClientIdentifier());
+                state.setCompleted(true);
+                evict(state);
+                break;
+            default:
+                // The bids of a round which was not closed are lost with the connections of their clients
+                break;
+        }
+    }
+
+    /**
+     * Change the price of an auction and move it in the price index.
+     * Must be called while holding the lock of the auction.
+     */
+    private void setPrice(AuctionState state, int price) {
+        state.getAuction().setPrice(price);
+        index.priceChanged(state.getAuction().getUuid(), price);
+        versions.touch(state.getAuction().getUuid());
+    }
+
+    /**
+     * Copy an auction. The copies sent in the callbacks are never modified, so their encoding is shared by every
+     * recipient.
+     */
+    private static AuctionBean copyOf(AuctionBean auction) {
+        AuctionBean copy = new AuctionBean(auction.getPrice(), auction.getName(),
+                auction.getDescription(), auction.getSeller());
+        copy.setUuid(auction.getUuid());
+        copy.setCategory(auction.getCategory());
+        return copy;
+    }
+
+    /**
+     * Copy an auction for a caller who does not hold its lock : the bean of the state is modified by the bids
+     */
+    private static AuctionBean copyOf(AuctionState state) {
+        synchronized (state) {
+            return copyOf(state.getAuction());
+        }
+    }
+
+    /**
+     * Summarize an auction for the clients notified of it. Must be called while holding the lock of the auction.
+     */
+    private AuctionSummary summaryOf(AuctionState state) {
+        UUID auctionId = state.getAuction().getUuid();
+        return AuctionSummary.of(state.getAuction(), versions.getVersion(auctionId));
+    }
+
+    /**
+     * Number a new event of an auction, and publish the state it carries for the clients who resync.
+     * Must be called while holding the lock of the auction.
+     * @return The sequence number of the event
+     */
+    private long nextEvent(AuctionState state) {
+        long sequence = state.nextSequence();
+        state.setStatus(new AuctionStatus(copyOf(state.getAuction()), sequence, state.getWinnerIdentifier(),
+                state.isCompleted()));
+        return sequence;
+    }
+
+    /**
+     * Write a state transition in the journal. It never waits for the disk.
+     */
+    private void journal(JournalEvent event) {
+        if (journal != null) {
+            journal.append(event);
+        }
+        Replicator standby = replicator;
+        if (standby != null) {
+            standby.append(event);
+        }
+    }
+
+    /**
+     * Send the state transitions of the server to a hot standby, starting with the running auctions.
+     * The events are sent asynchronously : the last ones are lost if the server stops before they are sent.
+     * @param standby The standby
+     */
+    public void replicateTo(IStandby standby) {
+        Replicator newReplicator = new Replicator(standby, REPLICATION_CAPACITY, HEARTBEAT_INTERVAL);
+        replicator = newReplicator;
+
+        // Each auction is sent under its lock, so its next events are queued after it
+        for (AuctionState state : auctionsList.values()) {
+            synchronized (state) {
+                if (!state.isCompleted()) {
+                    newReplicator.append(JournalEvent.auctionPlaced(copyOf(state.getAuction())));
+                    newReplicator.append(JournalEvent.roundClosed(state.getAuction().getUuid(),
+                            state.getAuction().getPrice(), state.getWinnerIdentifier()));
                 }
             }
+        }
+        newReplicator.start();
+        LOGGER.info("Replication to the standby started \n");
+    }
+
+    /**
+     * @return The state of an auction still held in the live map, or null if there is none
+     */
+    AuctionState stateOf(UUID auctionId) {
+        return auctionsList.get(auctionId);
+    }
 
+    /**
+     * Apply a state transition received from the primary, when the server is its standby
+     * @param event The event
+     */
+    void replicate(JournalEvent event) {
+        recover(event);
+        if (journal != null) {
+            journal.append(event);
         }
     }
 
+    /**
+     * Take over the auctions replicated from a primary which has stopped.
+     * Their next events are numbered after the ones sent by the primary, which the clients already have.
+     */
+    void takeOver() {
+        long origin = System.currentTimeMillis() * 1000;
+        for (AuctionState state : auctionsList.values()) {
+            synchronized (state) {
+                state.skipSequenceTo(origin);
+            }
+        }
+        LOGGER.info("Taking over " + auctionsList.size() + " auctions from the primary \n");
+    }
 
-    private static final Logger LOGGER = Logger.getLogger(Server.class.getCanonicalName());
-    private static final long CHECK_CONN_DELAY = 5000;
+    /**
+     * Queue a callback for a group of clients. The clients that do not answer are handed to the crash-handling path.
+     * @param recipients The clients to notify
+     * @param callback The remote call to make on each client
+     */
+    private void broadcast(Collection<IClient> recipients, Broadcaster.Callback callback) {
+        broadcaster.send(recipients, callback);
+    }
 
-    private HashMap<UUID, AuctionBean> auctionsList = new HashMap<UUID, AuctionBean>();
-    private HashMap<UUID, IClient> winnersList = new HashMap<UUID, IClient>();
-    private HashMap<UUID, HashMap<IClient, Integer>> bidByClientList = new HashMap<UUID, HashMap<IClient, Integer>>();
-    private HashMap<UUID, Integer> nbParticipantsList = new HashMap<UUID, Integer>();
-    private HashMap<UUID, Integer> bidThisRoundList = new HashMap<UUID, Integer>();
-    private HashMap<UUID, ArrayList<String>> nameClientsBidList = new HashMap<UUID, ArrayList<String>>();
+    /**
+     * Queue a price event of an auction for a group of clients : it replaces the event of the same kind
+     * still waiting for a client, since the clients only need the latest price.
+     * @param recipients The clients to notify
+     * @param kind The kind of event
+     * @param auctionId UUID of the auction
+     * @param callback The remote call to make on each client
+     */
+    private void broadcastPrice(Collection<IClient> recipients, String kind, UUID auctionId,
+                                Broadcaster.Callback callback) {
+        broadcaster.send(recipients, kind + " " + auctionId, callback);
+    }
 
-    private boolean auctionInProgress = false;
-    private List<IClient> clients = new ArrayList<IClient>();
+    /**
+     * Tell some clients that they do not take part in an auction, so that they stop offering to bid on it
+     * @param recipients The clients to notify
+     * @param auctionId UUID of the auction
+     */
+    private void broadcastLeft(Collection<IClient> recipients, final UUID auctionId) {
+        broadcast(recipients, new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.auctionLeft(auctionId);
+            }
+        });
+    }
 
-    private static final int MIN_NUMBER_CLIENTS = 2;
+    /**
+     * Disconnect asynchronously a client who does not keep up with his callbacks
+     * @param client The saturated client
+     */
+    private void reportSaturated(final IClient client) {
+        crashHandler.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (clients.contains(client)) {
+                    try {
+                        clientDisconnection(client);
+                    } catch (RemoteException e) {
+                        e.printStackTrace();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+    }
 
     /**
-     * Constructor
-     * @throws RemoteException
+     * Notify asynchronously the server that some clients have crashed.
+     * It runs outside of the caller's auction lock, since clientsCrashed needs to lock every auction.
+     * @param failed The clients that have failed to answer a callback
      */
-    public Server() throws RemoteException {
-        super();
-        Timer daemonTimer = new Timer();
-        daemonTimer.schedule(new ConnectionDaemon(), 0, CHECK_CONN_DELAY);
+    private void reportCrashed(final List<IClient> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+        crashHandler.execute(new Runnable() {
+            @Override
+            public void run() {
+                // A client may already have been removed by another report
+                failed.retainAll(clients);
+                if (!failed.isEmpty()) {
+                    try {
+                        clientsCrashed(failed);
+                    } catch (RemoteException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the identifier of a client, without calling him if he is registered
+     */
+    private String identifierOf(IClient client) throws RemoteException {
+        ClientSession session = sessions.get(client);
+        return session != null ? session.getIdentifier() : client.getIdentifier();
     }
 
     /**
-     * Launch a new auction
+     * Set the state of the clients of an auction. Must be called while holding the lock of the auction.
      */
-    private void launchAuction(UUID auctionId, AuctionBean auction) throws RemoteException {
+    private void setStates(UUID auctionId, Collection<IClient> auctionClients, ClientState clientState) {
+        for (IClient client : auctionClients) {
+            ClientSession session = sessions.get(client);
+            if (session != null) {
+                session.setState(auctionId, clientState);
+            }
+        }
+    }
 
-        nbParticipantsList.put(auctionId, clients.size() - 1); // We do not count the seller as an active participant
+    /**
+     * Count the clients who can bid on an auction, ie its audience without the seller.
+     * Must be called while holding the lock of the auction.
+     */
+    private int countParticipants(AuctionState state) throws RemoteException {
+        int nbParticipants = 0;
+        for (IClient client : state.getAudience()) {
+            if (!state.getAuction().getSeller().equals(identifierOf(client)))
+                nbParticipants++;
+        }
+        return nbParticipants;
+    }
 
-        auctionInProgress = true;
+    /**
+     * Launch a new auction : every client connected at this moment is notified, and the clients watching it
+     * take part in it
+     */
+    private void launchAuction(final AuctionState state) throws RemoteException {
+        synchronized (state) {
+            if (state.isLaunched()) {
+                return;
+            }
+            state.setLaunched(true);
+            List<IClient> outside = new ArrayList<IClient>();
+            for (IClient client : clients) {
+                ClientSession session = sessions.get(client);
+                if (session != null && subscriptions.watches(client, session.getIdentifier(), state.getAuction())) {
+                    state.getAudience().add(client);
+                } else {
+                    outside.add(client);
+                }
+            }
+            state.setNbParticipants(countParticipants(state)); // We do not count the seller as an active participant
+
+            // Notify the clients that a new auction has begun
+            // Every client receives the same summary of the auction, encoded once
+            final UUID auctionId = state.getAuction().getUuid();
+            final AuctionSummary auction = summaryOf(state);
+            final long sequence = nextEvent(state);
+            broadcast(clients, new Broadcaster.Callback() {
+                @Override
+                public void call(IClient client) throws RemoteException {
+                    client.newAuction(auctionId, auction, sequence);
+                }
+            });
+            // The clients watching other topics see the auction, but do not take part in it
+            if (!outside.isEmpty()) {
+                broadcastLeft(outside, auctionId);
+            }
+            startRound(state);
+        }
+    }
+
+    /**
+     * Start a new round of an auction, which will be closed at the latest when its deadline is reached.
+     * Must be called while holding the lock of the auction.
+     */
+    private void startRound(final AuctionState state) {
+        setStates(state.getAuction().getUuid(), state.getAudience(), ClientState.WAITING);
+        final int round = state.getRound() + 1;
+        state.nextRound(timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                roundDeadline(state, round);
+            }
+        }, ROUND_DURATION));
+    }
 
-        // Notify the clients that a new auction has begun
-        for (IClient client : clients) {
-            client.newAuction(auctionId, auction);
+    /**
+     * Close a round when its deadline is reached, if it has not been closed before
+     * @param state The auction
+     * @param round The number of the round which has reached its deadline
+     */
+    private void roundDeadline(AuctionState state, int round) {
+        synchronized (state) {
+            if (state.isCompleted() || state.getRound() != round) {
+                return;
+            }
+            LOGGER.info("End of the round " + round + " for auction : " + state.getAuction().getName() + "\n");
+            try {
+                closeRound(state);
+            } catch (RemoteException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Close the current round : the auction is sold after a blank round, otherwise a new round begins.
+     * Must be called while holding the lock of the auction.
+     */
+    private void closeRound(AuctionState state) throws RemoteException {
+        if (state.getBidThisRound() == 0) {
+            auctionSold(state);
+        } else {
+            roundWinner(state);
         }
+        state.getNameClientsBid().clear();
+    }
+
+    /**
+     * Notify the clients of an auction that it has been sold
+     */
+    private void broadcastBidSold(AuctionState state) {
+        final UUID auctionId = state.getAuction().getUuid();
+        final String winner = state.getWinnerIdentifier();
+        final long sequence = nextEvent(state);
+        broadcast(state.getAudience(), new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.bidSold(auctionId, winner, sequence);
+            }
+        });
+    }
+
+    /**
+     * Notify the clients of an auction of its current price
+     */
+    private void broadcastUpdatePrice(AuctionState state) {
+        final UUID auctionId = state.getAuction().getUuid();
+        final int price = state.getAuction().getPrice();
+        final String winner = state.getWinnerIdentifier();
+        final long sequence = nextEvent(state);
+        broadcastPrice(state.getAudience(), "updatePrice", auctionId, new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.updatePrice(auctionId, price, winner, sequence);
+            }
+        });
     }
 
     /**
      * Submit a new auction in the auction's queue
      * @param auction The auction submitted
-     * @throws RemoteException
+     * @throws RemoteException If the UUID chosen by the caller is already the UUID of an auction
      */
     @Override
-    public synchronized void placeAuction(AuctionBean auction) throws RemoteException {
-        // Generate a new UUID for the incoming auction, then put it in the queue
-        auction.setUuid(UUID.randomUUID());
-        auctionsList.put(auction.getUuid(), auction);
-        winnersList.put(auction.getUuid(), null);
-        bidByClientList.put(auction.getUuid(), new HashMap<IClient, Integer>());
-        bidThisRoundList.put(auction.getUuid(), 0);
-        nbParticipantsList.put(auction.getUuid(), 0);
-        nameClientsBidList.put(auction.getUuid(), new ArrayList<String>());
+    public void placeAuction(AuctionBean auction) throws RemoteException {
+        // Generate a new UUID for the incoming auction, unless a router has chosen it, then put it in the queue
+        if (auction.getUuid() == null) {
+            auction.setUuid(UUID.randomUUID());
+        }
+        // A UUID chosen by the caller never replaces an auction, running or archived
+        AuctionState state = new AuctionState(auction);
+        if (archive.get(auction.getUuid()) != null || auctionsList.putIfAbsent(auction.getUuid(), state) != null) {
+            throw new RemoteException("An auction already has the UUID " + auction.getUuid());
+        }
+        index.add(auction);
+        versions.touch(auction.getUuid());
+        journal(JournalEvent.auctionPlaced(auction));
 
         LOGGER.info("Auction " + auction.getName() + " from " + auction.getSeller() + " placed in queue \n");
         if (clients.size() >= MIN_NUMBER_CLIENTS) {
-            launchAuction(auction.getUuid(), auction);
+            launchAuction(state);
         }
     }
 
     /**
-     * Use when there is no auction actually running due to a lack of clients and when a client just connected
-     *
+     * Launch the auctions waiting for enough clients to begin
      */
-    public synchronized
-    void checkForAuction() throws RemoteException {
-        if (!auctionInProgress && (auctionsList.size() > 0) && (clients.size() >= MIN_NUMBER_CLIENTS)) {
-            for(Map.Entry<UUID, AuctionBean> pair : auctionsList.entrySet())
-                launchAuction(pair.getKey(), pair.getValue());
+    public void checkForAuction() throws RemoteException {
+        if (clients.size() >= MIN_NUMBER_CLIENTS) {
+            for(AuctionState state : auctionsList.values()) {
+                if (!state.isCompleted())
+                    launchAuction(state);
+            }
         }
     }
 
     /**
-     * Register a new client. If there is an auction in progress, the client will have to wait until its end.
+     * Register a new client. He joins the running auctions he watches during their current round, and learns them
+     * from the snapshot returned : the other clients are not notified.
      * @param client
+     * @return The running auctions
      * @throws RemoteException
      */
     @Override
-    public synchronized void register(IClient client) throws RemoteException {
-        try {
-            // TODO find a new way to add the client without letting him be in the currents auctions but without letting him
-            // TODO wait for all auctions to finish
-            if(auctionsList.isEmpty()) auctionInProgress = false;
-            while (auctionInProgress) {
-                wait();
+    public AuctionSnapshot register(IClient client) throws RemoteException {
+        return attach(client, client.getIdentity(), null);
+    }
+
+    /**
+     * Register a new client behind a relay. The server never calls the client himself : his identity is given
+     * by the relay, and his callbacks are sent through the relay. The relay cannot tell a new client from a client
+     * attached again after a failover, so he always takes back the auctions he was winning.
+     * @param client The client
+     * @param identity The identity of the client
+     * @param relay The relay of the client
+     * @return The running auctions
+     * @throws RemoteException
+     */
+    @Override
+    public AuctionSnapshot registerRelayed(IClient client, ClientBean identity, IRelay relay)
+            throws RemoteException {
+        AuctionSnapshot snapshot = attach(client, identity, relay);
+        restoreWinner(client);
+        return snapshot;
+    }
+
+    private AuctionSnapshot attach(IClient client, ClientBean identity, IRelay relay) throws RemoteException {
+        ClientSession session = new ClientSession(client, identity);
+        String identifier = session.getIdentifier();
+        sessions.put(client, session);
+        if (relay != null) {
+            broadcaster.openRelayed(client, identity.getUuid(), relay);
+        } else {
+            broadcaster.open(client);
+        }
+        clients.add(client);
+        leases.grant(client);
+
+        AuctionSnapshot snapshot = new AuctionSnapshot();
+        for (AuctionState state : auctionsList.values()) {
+            synchronized (state) {
+                if (!state.isLaunched() || state.isCompleted()
+                        || !subscriptions.watches(client, identifier, state.getAuction())) {
+                    continue;
+                }
+                // He takes part in the current round, and is waited for before closing it
+                UUID auctionId = state.getAuction().getUuid();
+                if (state.join(client)) {
+                    session.setState(auctionId, ClientState.WAITING);
+                    if (!state.getAuction().getSeller().equals(identifier)) {
+                        state.setNbParticipants(state.getNbParticipants() + 1);
+                    }
+                }
+                AuctionStatus status = state.getStatus();
+                snapshot.add(new AuctionSnapshot.Entry(summaryOf(state), status != null ? status.getSequence() : 0,
+                        state.getWinnerIdentifier(), (int) state.getRemainingTime()));
             }
+        }
 
-            clients.add(client);
-            LOGGER.info("Client " +  client.getIdentifier() + " connected \n" + client.toString() + "\n");
-            checkForAuction();
+        LOGGER.info("Client " +  identifier + " connected \n" + client.toString() + "\n");
+        checkForAuction();
+        return snapshot;
+    }
+
+    /**
+     * Attach again a client who was registered on a primary which has stopped. He is registered, and he takes back
+     * the auctions he was winning : he will receive them if he buys them.
+     * @param client The client
+     * @throws RemoteException
+     */
+    @Override
+    public void reattach(IClient client) throws RemoteException {
+        register(client);
+        restoreWinner(client);
+    }
+
+    private void restoreWinner(IClient client) {
+        ClientSession session = sessions.get(client);
+        if (session == null) {
+            return;
+        }
+        for (AuctionState state : auctionsList.values()) {
+            synchronized (state) {
+                if (state.getWinner() == null && session.getIdentifier().equals(state.getWinnerIdentifier())) {
+                    state.setWinner(client);
+                    LOGGER.info("Client " + session.getIdentifier() + " reattached to the auction "
+                            + state.getAuction().getName() + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribe a client to a topic. He joins the running auctions of the topic at their next round,
+     * and leaves the auctions he does not watch anymore : he is notified of each of them.
+     * @param client The client
+     * @param topic The topic
+     * @throws RemoteException
+     */
+    @Override
+    public void subscribe(IClient client, Topic topic) throws RemoteException {
+        if (sessions.containsKey(client) && subscriptions.subscribe(client, topic)) {
+            rewatch(client);
+        }
+    }
+
+    /**
+     * Unsubscribe a client from a topic. If it was his last topic, he watches every auction again.
+     * @param client The client
+     * @param topic The topic
+     * @throws RemoteException
+     */
+    @Override
+    public void unsubscribe(IClient client, Topic topic) throws RemoteException {
+        if (sessions.containsKey(client) && subscriptions.unsubscribe(client, topic)) {
+            rewatch(client);
+        }
+    }
 
-        } catch (InterruptedException e) {
-            LOGGER.warning(e.getMessage()  + "\n");
+    /**
+     * Update the running auctions of a client after his topics have changed. He keeps the auctions he is winning
+     * and the ones he has bid on during the current round.
+     */
+    private void rewatch(IClient client) throws RemoteException {
+        ClientSession session = sessions.get(client);
+        if (session == null) {
+            return;
+        }
+        String identifier = session.getIdentifier();
+        for (AuctionState state : auctionsList.values()) {
+            synchronized (state) {
+                if (!state.isLaunched() || state.isCompleted()) {
+                    continue;
+                }
+                if (subscriptions.watches(client, identifier, state.getAuction())) {
+                    state.addPending(client);
+                } else if (!client.equals(state.getWinner()) && !state.getNameClientsBid().contains(identifier)) {
+                    // A pending client has not joined the auction yet : he already knows that he is out of it
+                    boolean taking = state.getAudience().contains(client);
+                    leaveAuction(state, client, identifier);
+                    if (taking) {
+                        broadcastLeft(Collections.singletonList(client), state.getAuction().getUuid());
+                    }
+                }
+            }
         }
     }
 
+    /**
+     * Renew the lease of a client
+     * @param client The client
+     * @throws RemoteException
+     */
+    @Override
+    public void renewLease(IClient client) throws RemoteException {
+        leases.renew(client);
+    }
+
     /**
      * Disconnect a client from the server
      * @param client The client who will be disconnected from the server
@@ -155,7 +823,7 @@ public class Server extends UnicastRemoteObject implements IServer {
     @Override
     public void disconnect(IClient client) throws RemoteException, InterruptedException {
         try {
-			LOGGER.info("Disconnect : Client " + client.getIdentifier() + "\n");
+			LOGGER.info("Disconnect : Client " + identifierOf(client) + "\n");
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -163,16 +831,47 @@ public class Server extends UnicastRemoteObject implements IServer {
     }
 
     /**
-     * Validate and flush all waiting registrations
+     * Complete an auction at the end of a blank round : notify the clients and give the item to the winner.
+     * Must be called while holding the lock of the auction.
      */
-    private synchronized void validateRegistrations(UUID winnerId) {
-
-        if(auctionsList.size() == 0)
-            auctionInProgress = false;
-
-        winnersList.remove(winnerId);
+    private void auctionSold(AuctionState state) throws RemoteException {
+        state.setCompleted(true);
+        state.setDeadline(null);
+        journal(JournalEvent.auctionSold(state.getAuction().getUuid(), state.getAuction().getPrice(),
+                state.getWinnerIdentifier()));
+
+        // Notify all the clients to show the winner
+        broadcastBidSold(state);
+        setStates(state.getAuction().getUuid(), state.getAudience(), ClientState.ENDING);
+
+        state.clearBids();
+
+        if (state.getWinner() != null) {
+            final AuctionBean auction = copyOf(state.getAuction());
+            broadcast(Collections.singletonList(state.getWinner()), new Broadcaster.Callback() {
+                @Override
+                public void call(IClient client) throws RemoteException {
+                    client.addWonAuction(auction);
+                }
+            });
+        }
+        evict(state);
+    }
 
-        notifyAll();
+    /**
+     * Move a completed auction from auctionsList to the archive.
+     * If it cannot be archived, the auction stays in auctionsList, where it is skipped as completed.
+     */
+    private void evict(AuctionState state) {
+        try {
+            archive.archive(state.getAuction(), state.getWinnerIdentifier());
+            auctionsList.remove(state.getAuction().getUuid(), state);
+            index.remove(state.getAuction());
+            versions.remove(state.getAuction().getUuid());
+        } catch (IOException e) {
+            LOGGER.warning("Unable to archive the auction " + state.getAuction().getName() + " : "
+                    + e.getMessage() + "\n");
+        }
     }
 
     /**
@@ -182,53 +881,100 @@ public class Server extends UnicastRemoteObject implements IServer {
      * @throws RemoteException
      */
     @Override
-    public synchronized void raiseBid(UUID auctionId, IClient client, int newBid) throws RemoteException {
-        if((client.getState(auctionId) == ClientState.WAITING) && (newBid > auctionsList.get(auctionId).getPrice())) {
-            bidByClientList.get(auctionId).put(client, newBid);
-            bidThisRoundList.put(auctionId, bidThisRoundList.get(auctionId) + 1);
-            nameClientsBidList.get(auctionId).add(client.getIdentifier());
+    public void raiseBid(UUID auctionId, IClient client, int newBid) throws RemoteException {
+        // The bid is checked against the session of the client : it never calls the client back
+        ClientSession session = sessions.get(client);
+        AuctionState state = auctionsList.get(auctionId);
+        if (session == null || state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (!state.getAudience().contains(client)) {
+                return;
+            }
+            if((session.getState(auctionId) == ClientState.WAITING) && (newBid > state.getAuction().getPrice())) {
+                state.addBid(client, session.getIdentifier(), newBid);
+                journal(JournalEvent.bidAccepted(auctionId, session.getIdentifier(), newBid));
 
-            client.setState(auctionId, ClientState.RAISING);
-            LOGGER.info("New bid " + newBid + " placed by client " + client.getIdentifier()
-                    + " on auction : " + auctionsList.get(auctionId).getName() + "\n");
+                session.setState(auctionId, ClientState.RAISING);
+                LOGGER.info("New bid " + newBid + " placed by client " + session.getIdentifier()
+                        + " on auction : " + state.getAuction().getName() + "\n");
+            }
         }
     }
 
     /**
-     * Notifies the server that a client's timer has reach zero.
+     * Notifies the server that a client has finished its round.
+     * This is only an early-finish signal : the server closes the round at its deadline anyway.
      * @param client
      * @throws RemoteException
      * @throws InterruptedException
      */
     @Override
-    public synchronized void timeElapsed(UUID auctionId, IClient client) throws RemoteException, InterruptedException {
+    public void timeElapsed(UUID auctionId, IClient client) throws RemoteException, InterruptedException {
+        AuctionState state = auctionsList.get(auctionId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (state.isCompleted() || !state.getAudience().contains(client) || !state.answer(client)) {
+                return;
+            }
+            state.setNbParticipants(state.getNbParticipants() - 1);
+            LOGGER.info("A client time elapsed : " + identifierOf(client) + " for auction : "
+                    + state.getAuction().getName() + "\n");
 
-        nbParticipantsList.put(auctionId, nbParticipantsList.get(auctionId) - 1);
-        LOGGER.info("A client time elapsed : " + client.getIdentifier() + " for auction : "
-                + auctionsList.get(auctionId).getName() + "\n");
+            // Everybody has answered : the round is closed without waiting for its deadline
+            if (state.getNbParticipants() == 0) {
+                closeRound(state);
+            }
+        }
+    }
+
+    /**
+     * Remove a client who has left from an auction. If everybody else has answered, the round is closed.
+     * Must be called while holding the lock of the auction.
+     * @param state The auction
+     * @param client The client who left
+     * @param identifier The identifier of the client who left
+     */
+    private void leaveAuction(AuctionState state, IClient client, String identifier) throws RemoteException {
+        if (!state.leave(client)) {
+            return;
+        }
+        ClientSession session = sessions.get(client);
+        if (session != null) {
+            session.removeState(state.getAuction().getUuid());
+        }
 
-        if (nbParticipantsList.get(auctionId) == 0) {
-            // Case of a blank round : the auction is completed
-            if(bidThisRoundList.get(auctionId) == 0) {
+        AuctionBean auctionValue = state.getAuction();
+        if (auctionValue.getSeller().equals(identifier)) {
+            LOGGER.info("The seller has disconnected for the auction " + auctionValue.getName() + "\n");
+            return;
+        }
 
-                // Notify all the clients to show the winner
-                for (IClient c : clients) {
-                    c.bidSold(auctionId, winnersList.get(auctionId));
-                }
+        if (!state.hasAnswered(client)) {
+            state.setNbParticipants(state.getNbParticipants() - 1);
+        }
 
-                bidByClientList.get(auctionId).clear();
+        boolean wasWinner = client.equals(state.getWinner());
+        state.removeBid(client);
 
-                if(winnersList.get(auctionId) != null) {
-                    winnersList.get(auctionId).addWonAuction(auctionsList.get(auctionId));
-                }
+        if (state.getNameClientsBid().remove(identifier))
+            state.setBidThisRound(state.getBidThisRound() - 1);
 
-                // Validate the registrations of clients in the monitor's queue
-                validateRegistrations(auctionId);
+        LOGGER.info("A client has left : " + identifier + " for auction : " + auctionValue.getName() + " \n");
 
-            } else {
-                roundWinner(auctionId);
+        // If everybody bid or leave
+        if (state.getNbParticipants() == 0) {
+            // If the client who left was the winner, we change it with someone else
+            if (wasWinner && state.getBidThisRound() == 0) {
+                defineWinner(state);
             }
-            nameClientsBidList.get(auctionId).clear();
+            closeRound(state);
+        } else if (wasWinner) {
+            defineWinner(state);
+            broadcastUpdatePrice(state);
         }
     }
 
@@ -239,68 +985,23 @@ public class Server extends UnicastRemoteObject implements IServer {
      * @throws InterruptedException
      */
     @Override
-    public synchronized void clientDisconnection(IClient client) throws RemoteException, InterruptedException {
+    public void clientDisconnection(IClient client) throws RemoteException, InterruptedException {
 
+        String identifier = identifierOf(client);
         clients.remove(client);
-
-        for(Map.Entry<UUID, AuctionBean> auctionsPair : auctionsList.entrySet()) {
-
-            UUID auctionId = auctionsPair.getKey();
-            AuctionBean auctionValue = auctionsPair.getValue();
-
-            if(!auctionValue.getSeller().equals(client.getIdentifier())) {
-                if (!(client.getState(auctionsPair.getKey()) == ClientState.RAISING)) {
-                    nbParticipantsList.put(auctionId, nbParticipantsList.get(auctionId) - 1);
+        leases.revoke(client);
+        broadcaster.close(client);
+        subscriptions.remove(client);
+        journal(JournalEvent.clientLeft(identifier));
+
+        for(AuctionState state : auctionsList.values()) {
+            synchronized (state) {
+                if (!state.isCompleted()) {
+                    leaveAuction(state, client, identifier);
                 }
-
-                bidByClientList.get(auctionId).remove(client);
-
-                if(nameClientsBidList.get(auctionId).contains(client.getIdentifier()))
-                    bidThisRoundList.put(auctionId, bidThisRoundList.get(auctionId) - 1);
-
-                LOGGER.info("A client has disconnected : " + client.getIdentifier() + " for auction : "
-                        + auctionValue.getName() + " \n");
-
-                // If everybody bid or leave
-                if (nbParticipantsList.get(auctionId) == 0) {
-                    // Case of a blank round : the auction is completed
-                    if (bidThisRoundList.get(auctionId) == 0) {
-
-                        // If the actual client who's quitting the client is suppose to be the winner of one of the auctions, then we change the winner
-                        if (winnersList.get(auctionId) != null &&
-                                winnersList.get(auctionId).getIdentifier().equals(client.getIdentifier())) {
-                            defineWinner(auctionId);
-                        }
-
-                        // Notify all the clients to show the winner
-                        for (IClient c : clients) {
-                            c.bidSold(auctionId, winnersList.get(auctionId));
-                        }
-
-                        if (winnersList.get(auctionId) != null) {
-                            winnersList.get(auctionId).addWonAuction(auctionValue);
-                        }
-
-                        bidByClientList.get(auctionId).clear();
-
-                        // Validate the registrations of clients in the monitor's queue
-                        validateRegistrations(auctionId);
-                    } else {
-                        roundWinner(auctionId);
-                    }
-                    nameClientsBidList.get(auctionId).clear();
-                } else if (winnersList.get(auctionId) != null &&
-                        winnersList.get(auctionId).getIdentifier().equals(client.getIdentifier())) {
-                    defineWinner(auctionId);
-
-                    for (IClient c : clients) {
-                        c.updatePrice(auctionId, auctionValue.getPrice());
-                    }
-                }
-            }else{
-                LOGGER.info("The seller has disconnected for the auction " + auctionValue.getName() + "\n");
             }
         }
+        sessions.remove(client);
     }
 
     /**
@@ -309,181 +1010,244 @@ public class Server extends UnicastRemoteObject implements IServer {
      * @throws RemoteException
      */
     @Override
-    public synchronized void clientsCrashed(List<IClient> clientsCrashed) throws RemoteException{
-
+    public void clientsCrashed(List<IClient> clientsCrashed) throws RemoteException{
+
+        LOGGER.info(clientsCrashed.size() + " clients have crashed \n");
+
+        // The identifiers are known locally : the crashed clients are never called
+        Map<IClient, String> crashed = new HashMap<IClient, String>();
+        for (IClient client : clientsCrashed) {
+            ClientSession session = sessions.get(client);
+            leases.revoke(client);
+            broadcaster.close(client);
+            subscriptions.remove(client);
+            crashed.put(client, session != null ? session.getIdentifier() : client.toString());
+            journal(JournalEvent.clientLeft(crashed.get(client)));
+        }
         clients.removeAll(clientsCrashed);
 
-        for(Map.Entry<UUID, AuctionBean> auctionsPair : auctionsList.entrySet()) {
-
-            UUID auctionId = auctionsPair.getKey();
-            AuctionBean auctionValue = auctionsPair.getValue();
-
-            boolean isSeller = false;
-            for (IClient client : clients) {
-                if (auctionValue.getSeller().equals(client.getIdentifier()))
-                    isSeller = true;
-            }
-            if(!isSeller) {
-                int counter = 0;
-
-                for (IClient client : clients) {
-                    for (String nameClientBid : nameClientsBidList.get(auctionId)) {
-                        if (nameClientBid.equals(client.getIdentifier())) {
-                            break;
-                        }
-                        counter++;
-                    }
-                }
-
-                nbParticipantsList.put(auctionId, nbParticipantsList.get(auctionId) - (clientsCrashed.size() - counter));
-
-                for (IClient client : clientsCrashed) {
-                    bidByClientList.get(auctionId).remove(client);
-                }
-
-                LOGGER.info(clientsCrashed.size() + " clients have crashed \n");
-
-                // If everybody bid or leave
-                if (nbParticipantsList.get(auctionId) == 0) {
-                    // Case of a blank round : the auction is completed
-                    if (bidThisRoundList.get(auctionId) == 0) {
-
-                        // If one of the clients who crashed is the winner we change it with someone else
-                        if (winnersList.get(auctionId) != null) {
-                            try {
-                                winnersList.get(auctionId).getName();
-                            } catch (Exception e) {
-                                defineWinner(auctionId);
-                            }
-                        }
-
-                        // Notify all the clients to show the winner
-                        for (IClient c : clients) {
-                            c.bidSold(auctionId, winnersList.get(auctionId));
-                        }
-
-                        if (winnersList.get(auctionId) != null) {
-                            winnersList.get(auctionId).addWonAuction(auctionValue);
-                        }
-
-                        bidByClientList.get(auctionId).clear();
-
-                        // Validate the registrations of clients in the monitor's queue
-                        validateRegistrations(auctionId);
-                    } else {
-                        roundWinner(auctionId);
-                    }
-
-                    nameClientsBidList.get(auctionId).clear();
-                } else {
-                    if (winnersList.get(auctionId) != null) {
-                        try {
-                            winnersList.get(auctionId).getName();
-                        } catch (Exception e) {
-                            defineWinner(auctionId);
-                        }
-                    }
-                    for (IClient c : clients) {
-                        c.updatePrice(auctionId, auctionValue.getPrice());
+        for(AuctionState state : auctionsList.values()) {
+            synchronized (state) {
+                for (Map.Entry<IClient, String> client : crashed.entrySet()) {
+                    if (!state.isCompleted()) {
+                        leaveAuction(state, client.getKey(), client.getValue());
                     }
                 }
             }
         }
+        for (IClient client : clientsCrashed) {
+            sessions.remove(client);
+        }
     }
 
     public IClient getWinner(UUID auctionId) throws RemoteException{
-      return winnersList.get(auctionId);
+        AuctionState state = auctionsList.get(auctionId);
+        if (state != null) {
+            synchronized (state) {
+                return state.getWinner();
+            }
+        }
+
+        // The buyer of an archived auction is only known by his identifier : he is found if he is still connected
+        AuctionArchive.ArchivedAuction archived = archive.get(auctionId);
+        if (archived == null || archived.getWinnerIdentifier() == null) {
+            return null;
+        }
+        for (ClientSession session : sessions.values()) {
+            if (archived.getWinnerIdentifier().equals(session.getIdentifier())) {
+                return session.getClient();
+            }
+        }
+        return null;
     }
 
     public AuctionBean getAuction(UUID auctionId) throws RemoteException{
-        return auctionsList.get(auctionId);
+        AuctionState state = auctionsList.get(auctionId);
+        if (state != null) {
+            return copyOf(state);
+        }
+        AuctionArchive.ArchivedAuction archived = archive.get(auctionId);
+        return archived == null ? null : archived.toBean();
     }
 
-    public static TreeMap<IClient, Integer> sortMapByValue(HashMap<IClient, Integer> map){
-        Comparator<IClient> comparator = new ValueComparator(map);
-        //TreeMap is a map sorted by its keys.
-        //The comparator is used to sort the TreeMap by keys.
-        TreeMap<IClient, Integer> result = new TreeMap<IClient, Integer>(comparator);
-        result.putAll(map);
-        return result;
+    /**
+     * Get a chunk of the details of an auction, running or archived
+     * @param auctionId UUID of the auction
+     * @param offset Position in the description of the first character to return
+     * @return The chunk, or null if the auction is unknown
+     * @throws RemoteException
+     */
+    @Override
+    public AuctionDetails getAuctionDetails(UUID auctionId, int offset) throws RemoteException {
+        AuctionBean auction = getAuction(auctionId);
+        if (auction == null) {
+            return null;
+        }
+        String description = auction.getDescription() != null ? auction.getDescription() : "";
+        int from = Math.min(Math.max(offset, 0), description.length());
+        int to = Math.min(from + DETAILS_CHUNK_SIZE, description.length());
+        if (to < description.length() && Character.isHighSurrogate(description.charAt(to - 1))) {
+            // A character is never split between two chunks
+            to--;
+        }
+        return new AuctionDetails(auctionId, auction.getCategory(), description.substring(from, to), from,
+                description.length());
     }
 
+    /**
+     * Get the state of an auction after its last event, without locking it
+     * @param auctionId UUID of the auction
+     * @return The state of the auction, or null if the auction has not been launched
+     * @throws RemoteException
+     */
+    @Override
+    public AuctionStatus resync(UUID auctionId) throws RemoteException {
+        AuctionState state = auctionsList.get(auctionId);
+        if (state != null) {
+            return state.getStatus();
+        }
+        // An archived auction will not have any other event
+        AuctionArchive.ArchivedAuction archived = archive.get(auctionId);
+        return archived == null ? null
+                : new AuctionStatus(archived.toBean(), Long.MAX_VALUE, archived.getWinnerIdentifier(), true);
+    }
 
-    public void roundWinner(UUID auctionId)  throws RemoteException{
-        // Compute the winner of the current round
+    /**
+     * Search the running auctions, using the indexes only
+     * @param query The criteria of the search
+     * @return The matching auctions
+     * @throws RemoteException
+     */
+    @Override
+    public List<AuctionBean> search(AuctionQuery query) throws RemoteException {
+        List<AuctionBean> results = new ArrayList<AuctionBean>();
+        for (UUID auctionId : index.search(query)) {
+            AuctionState state = auctionsList.get(auctionId);
+            if (state != null) {
+                results.add(copyOf(state));
+            }
+        }
+        return results;
+    }
 
-        defineWinner(auctionId);
-        bidThisRoundList.put(auctionId, 0);
+    /**
+     * List the changes of the catalogue since a version, by pages
+     * @param sinceVersion The version of the last page received, or 0 to list the whole catalogue
+     * @param pageSize The maximum number of changes in the page
+     * @return The page, with the version to give to the next call
+     * @throws RemoteException
+     */
+    @Override
+    public AuctionPage listAuctions(long sinceVersion, int pageSize) throws RemoteException {
+        int size = pageSize > 0 ? Math.min(pageSize, MAX_PAGE_SIZE) : MAX_PAGE_SIZE;
+
+        // A client whose version is too old, or from a previous run of the server, reloads the whole catalogue
+        boolean reset = versions.isExpired(sinceVersion);
+        long from = reset ? 0 : sinceVersion;
+        AuctionPage page = new AuctionPage(from);
+        page.setReset(reset);
+
+        for (Map.Entry<Long, AuctionVersions.Change> change : versions.changesAfter(from).entrySet()) {
+            if (page.getAuctions().size() + page.getRemoved().size() >= size) {
+                page.setMore(true);
+                break;
+            }
+            UUID auctionId = change.getValue().getAuctionId();
+            if (change.getValue().isRemoved()) {
+                // A client loading the whole catalogue has nothing to forget
+                if (from != 0) {
+                    page.getRemoved().add(auctionId);
+                }
+            } else {
+                AuctionState state = auctionsList.get(auctionId);
+                if (state != null) {
+                    page.getAuctions().add(copyOf(state));
+                }
+            }
+            page.setVersion(change.getKey());
+        }
+        if (page.getVersion() == 0) {
+            page.setVersion(versions.getCurrent());
+        }
+        return page;
+    }
 
-        if(winnersList.get(auctionId) != null) {
-            LOGGER.info("End of a round. Bid = " + auctionsList.get(auctionId).getPrice()
-                    + " - The current winner is " + winnersList.get(auctionId).getIdentifier() + "\n");
+    /**
+     * Close the current round of an auction. The clients who have subscribed to it during the round join the auction.
+     * Must be called while holding the lock of the auction.
+     */
+    private void roundWinner(AuctionState state)  throws RemoteException{
+        // Compute the winner of the current round
 
-            boolean sellerStillHere = false;
-            for (IClient client : clients) {
-                if (auctionsList.get(auctionId).getSeller().equals(client.getIdentifier()))
-                    sellerStillHere = true;
+        defineWinner(state);
+        state.setBidThisRound(0);
+        journal(JournalEvent.roundClosed(state.getAuction().getUuid(), state.getAuction().getPrice(),
+                state.getWinnerIdentifier()));
+
+        // The clients who have subscribed to the auction during the round join it
+        final List<IClient> admitted = state.admitPending();
+        final UUID auctionId = state.getAuction().getUuid();
+        final AuctionBean auction = copyOf(state.getAuction());
+        final AuctionSummary summary = summaryOf(state);
+        final long sequence = admitted.isEmpty() && state.getWinner() == null ? 0 : nextEvent(state);
+        broadcast(admitted, new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.newAuction(auctionId, summary, sequence);
             }
+        });
 
-            // clean the data structures before the next round
-            if(sellerStillHere)
-                nbParticipantsList.put(auctionId, clients.size() - 1);
-            else
-                nbParticipantsList.put(auctionId, clients.size());
-
+        // clean the data structures before the next round
+        state.setNbParticipants(countParticipants(state));
 
+        if(state.getWinner() != null) {
+            LOGGER.info("End of a round. Bid = " + auction.getPrice()
+                    + " - The current winner is " + identifierOf(state.getWinner()) + "\n");
 
             // notify the clients of the new price & start a new round
-            for (IClient c : clients) {
-                c.newPrice(auctionId, auctionsList.get(auctionId).getPrice());
-            }
+            List<IClient> recipients = new ArrayList<IClient>(state.getAudience());
+            recipients.removeAll(admitted);
+            final int price = auction.getPrice();
+            final String winner = state.getWinnerIdentifier();
+            broadcastPrice(recipients, "newPrice", auctionId, new Broadcaster.Callback() {
+                @Override
+                public void call(IClient client) throws RemoteException {
+                    client.newPrice(auctionId, price, winner, sequence);
+                }
+            });
         } else {
             LOGGER.info("There is no winners in this round for the auction : "
-                    + auctionsList.get(auctionId).getName() + "\n");
+                    + auction.getName() + "\n");
         }
-
+        startRound(state);
     }
 
-    public void defineWinner(UUID auctionId){
-
-        int maxBid = Integer.MIN_VALUE;
-        ArrayList<IClient> highestBidsClients = new ArrayList<IClient>();
-
-        TreeMap<IClient, Integer> sortedMap = sortMapByValue(bidByClientList.get(auctionId));
+    /**
+     * Compute the current winner of an auction. Must be called while holding the lock of the auction.
+     */
+    private void defineWinner(AuctionState state) throws RemoteException {
 
-        // We get all the clients who bid the same amount
-        if(sortedMap.size() != 0){
-            maxBid = sortedMap.firstEntry().getValue();
-            for(Map.Entry<IClient, Integer> pair : sortedMap.entrySet()) {
-
-                if(pair.getValue() == maxBid) {
-                    highestBidsClients.add(pair.getKey());
-                } else {
-                    break;
-                }
-            }
-        }
+        // The highest bid and its tie set are kept up to date by the AuctionState
+        List<IClient> highestBidsClients = state.getHighestBidders();
 
+        AuctionBean auction = state.getAuction();
         if(highestBidsClients.size() != 0) {
             // And we chose a random one between them
-            Random r = new Random();
-            int index = r.nextInt(highestBidsClients.size());
+            int index = highestBidsClients.size() == 1 ? 0 : RANDOM.nextInt(highestBidsClients.size());
 
-            winnersList.put(auctionId, highestBidsClients.get(index));
+            state.setWinner(highestBidsClients.get(index));
+            state.setWinnerIdentifier(identifierOf(state.getWinner()));
 
-            auctionsList.get(auctionId).setPrice(maxBid);
+            setPrice(state, state.getHighestBid());
 
-            try {
-                LOGGER.info("The actual winner is : " + winnersList.get(auctionId).getIdentifier()
-                        + " with a bid of : " + auctionsList.get(auctionId).getPrice()
-                        + " for the auction : " + auctionsList.get(auctionId).getName() + "\n");
-            }catch(RemoteException e){
-                e.printStackTrace();
-            }
+            LOGGER.info("The actual winner is : " + state.getWinnerIdentifier()
+                    + " with a bid of : " + auction.getPrice()
+                    + " for the auction : " + auction.getName() + "\n");
         } else{
-            winnersList.put(auctionId, null);
+            state.setWinner(null);
+            state.setWinnerIdentifier(null);
             LOGGER.info("There is no winner found for the auction : "
-                    + auctionsList.get(auctionId).getName() + "\n");
+                    + auction.getName() + "\n");
         }
     }
 }
@@ -0,0 +1,402 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.IClient;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * A router in front of several servers, the shards : each auction belongs to a shard chosen by consistent hashing
+ * of its UUID. The router gives its UUID to a new auction, so the calls about an auction are forwarded to its shard.
+ * <p>
+ * A client registers once on the router, which registers him on every shard at the same time : he receives the
+ * callbacks of every shard directly. If a shard refuses him, he is disconnected from the others, so he is never
+ * registered on a part of the shards only. The searches are gathered from all the shards.
+ * The catalogue is listed shard after shard, with a version of the router standing for the versions of the shards.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class ShardRouter extends UnicastRemoteObject implements IServer {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(ShardRouter.class.getCanonicalName());
+    private static final int VIRTUAL_NODES = 128;
+    private static final int MAX_CURSORS = 10000;
+
+    /**
+     * A call about a client, made on every shard
+     */
+    private interface ShardCall<T> {
+        T call(IServer shard) throws RemoteException, InterruptedException;
+    }
+
+    private final List<IServer> shards;
+    private final HashRing<IServer> ring = new HashRing<IServer>(VIRTUAL_NODES);
+    private final ExecutorService executor;
+
+    /*
+     * The versions given to the clients by listAuctions, with the versions of the shards they stand for.
+     * They start from the clock, so that the versions given by a previous run of the router are not recognized.
+     */
+    private final Map<Long, long[]> cursors = new LinkedHashMap<Long, long[]>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > MAX_CURSORS;
+        }
+    };
+    private long nextCursor = System.currentTimeMillis() * 1000;
+
+    /**
+     * Constructor
+     * @param shards The shards, by name. The name of a shard places it on the ring : it must not change across
+     *               restarts, or its auctions would be looked up on another shard.
+     * @throws RemoteException
+     */
+    public ShardRouter(Map<String, IServer> shards) throws RemoteException {
+        super();
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A router needs at least one shard");
+        }
+        this.shards = new ArrayList<IServer>(shards.values());
+        for (Map.Entry<String, IServer> shard : shards.entrySet()) {
+            ring.add(shard.getKey(), shard.getValue());
+        }
+        this.executor = Executors.newCachedThreadPool(new DaemonThreadFactory("router"));
+    }
+
+    private IServer shardOf(UUID auctionId) {
+        return ring.nodeFor(auctionId);
+    }
+
+    @Override
+    public void placeAuction(AuctionBean auction) throws RemoteException {
+        auction.setUuid(UUID.randomUUID());
+        shardOf(auction.getUuid()).placeAuction(auction);
+    }
+
+    @Override
+    public AuctionSnapshot register(final IClient client) throws RemoteException, InterruptedException {
+        // Each shard gives the auctions it holds
+        AuctionSnapshot snapshot = new AuctionSnapshot();
+        for (AuctionSnapshot shardSnapshot : fanOut(client, "register the client", new ShardCall<AuctionSnapshot>() {
+            @Override
+            public AuctionSnapshot call(IServer shard) throws RemoteException, InterruptedException {
+                return shard.register(client);
+            }
+        })) {
+            snapshot.addAll(shardSnapshot);
+        }
+        LOGGER.info("Client registered on " + shards.size() + " shards \n");
+        return snapshot;
+    }
+
+    @Override
+    public void reattach(final IClient client) throws RemoteException, InterruptedException {
+        fanOut(client, "reattach the client", new ShardCall<Void>() {
+            @Override
+            public Void call(IServer shard) throws RemoteException, InterruptedException {
+                shard.reattach(client);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public AuctionSnapshot registerRelayed(final IClient client, final ClientBean identity, final IRelay relay)
+            throws RemoteException, InterruptedException {
+        AuctionSnapshot snapshot = new AuctionSnapshot();
+        for (AuctionSnapshot shardSnapshot : fanOut(client, "register the client", new ShardCall<AuctionSnapshot>() {
+            @Override
+            public AuctionSnapshot call(IServer shard) throws RemoteException, InterruptedException {
+                return shard.registerRelayed(client, identity, relay);
+            }
+        })) {
+            snapshot.addAll(shardSnapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Every shard receives every topic, even the topic of an auction it does not hold :
+     * a client subscribed to no topic on a shard would receive all the auctions of this shard.
+     */
+    @Override
+    public void subscribe(IClient client, Topic topic) throws RemoteException {
+        for (IServer shard : shards) {
+            shard.subscribe(client, topic);
+        }
+    }
+
+    @Override
+    public void unsubscribe(IClient client, Topic topic) throws RemoteException {
+        for (IServer shard : shards) {
+            shard.unsubscribe(client, topic);
+        }
+    }
+
+    /**
+     * Renew the lease of the client on all the shards at the same time. If a shard refuses it, the client is
+     * disconnected from the others : he has to register again.
+     */
+    @Override
+    public void renewLease(final IClient client) throws RemoteException {
+        try {
+            fanOut(client, "renew the lease of the client", new ShardCall<Void>() {
+                @Override
+                public Void call(IServer shard) throws RemoteException {
+                    shard.renewLease(client);
+                    return null;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while renewing the lease on the shards", e);
+        }
+    }
+
+    @Override
+    public void disconnect(IClient client) throws RemoteException, InterruptedException {
+        for (IServer shard : shards) {
+            shard.disconnect(client);
+        }
+    }
+
+    @Override
+    public void raiseBid(UUID auctionId, IClient client, int newBid) throws RemoteException {
+        shardOf(auctionId).raiseBid(auctionId, client, newBid);
+    }
+
+    @Override
+    public void timeElapsed(UUID auctionId, IClient client) throws RemoteException, InterruptedException {
+        shardOf(auctionId).timeElapsed(auctionId, client);
+    }
+
+    @Override
+    public void clientDisconnection(IClient client) throws RemoteException, InterruptedException {
+        for (IServer shard : shards) {
+            shard.clientDisconnection(client);
+        }
+    }
+
+    @Override
+    public void clientsCrashed(List<IClient> clientsCrashed) throws RemoteException {
+        for (IServer shard : shards) {
+            shard.clientsCrashed(clientsCrashed);
+        }
+    }
+
+    @Override
+    public IClient getWinner(UUID auctionId) throws RemoteException {
+        return shardOf(auctionId).getWinner(auctionId);
+    }
+
+    @Override
+    public AuctionBean getAuction(UUID auctionId) throws RemoteException {
+        return shardOf(auctionId).getAuction(auctionId);
+    }
+
+    @Override
+    public AuctionDetails getAuctionDetails(UUID auctionId, int offset) throws RemoteException {
+        return shardOf(auctionId).getAuctionDetails(auctionId, offset);
+    }
+
+    @Override
+    public AuctionStatus resync(UUID auctionId) throws RemoteException {
+        return shardOf(auctionId).resync(auctionId);
+    }
+
+    /**
+     * Search all the shards at the same time, and merge their results
+     * @param query The criteria of the search
+     * @return The matching auctions, by increasing price when only the price is searched
+     * @throws RemoteException
+     */
+    @Override
+    public List<AuctionBean> search(final AuctionQuery query) throws RemoteException {
+        List<Callable<List<AuctionBean>>> searches = new ArrayList<Callable<List<AuctionBean>>>();
+        for (final IServer shard : shards) {
+            searches.add(new Callable<List<AuctionBean>>() {
+                @Override
+                public List<AuctionBean> call() throws RemoteException {
+                    return shard.search(query);
+                }
+            });
+        }
+
+        List<AuctionBean> results = new ArrayList<AuctionBean>();
+        try {
+            for (Future<List<AuctionBean>> found : executor.invokeAll(searches)) {
+                results.addAll(found.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while searching the shards", e);
+        } catch (ExecutionException e) {
+            throw new RemoteException("Unable to search a shard", e.getCause());
+        }
+
+        if (query.getText() == null && query.getSeller() == null) {
+            Collections.sort(results, new Comparator<AuctionBean>() {
+                @Override
+                public int compare(AuctionBean a, AuctionBean b) {
+                    return a.getPrice() < b.getPrice() ? -1 : (a.getPrice() == b.getPrice() ? 0 : 1);
+                }
+            });
+        }
+        if (query.getLimit() > 0 && results.size() > query.getLimit()) {
+            return new ArrayList<AuctionBean>(results.subList(0, query.getLimit()));
+        }
+        return results;
+    }
+
+    /**
+     * Make a call about a client on all the shards at the same time. If it fails on a shard, the client is
+     * disconnected from the shards where it succeeded.
+     * @param client The client
+     * @param action What the call does, for the error
+     * @param call The call
+     * @return The results of the shards, in the order of the shards
+     * @throws RemoteException If the call has failed on a shard
+     * @throws InterruptedException
+     */
+    private <T> List<T> fanOut(IClient client, String action, final ShardCall<T> call)
+            throws RemoteException, InterruptedException {
+        List<Callable<T>> calls = new ArrayList<Callable<T>>();
+        for (final IServer shard : shards) {
+            calls.add(new Callable<T>() {
+                @Override
+                public T call() throws RemoteException, InterruptedException {
+                    return call.call(shard);
+                }
+            });
+        }
+
+        List<Future<T>> futures = executor.invokeAll(calls);
+        List<T> results = new ArrayList<T>();
+        List<IServer> accepted = new ArrayList<IServer>();
+        Throwable failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+                accepted.add(shards.get(i));
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            }
+        }
+        if (failure != null) {
+            disconnect(client, accepted);
+            throw new RemoteException("Unable to " + action + " on every shard", failure);
+        }
+        return results;
+    }
+
+    /**
+     * Disconnect a client from some shards, at the same time
+     */
+    private void disconnect(final IClient client, List<IServer> fromShards) throws InterruptedException {
+        List<Callable<Void>> calls = new ArrayList<Callable<Void>>();
+        for (final IServer shard : fromShards) {
+            calls.add(new Callable<Void>() {
+                @Override
+                public Void call() throws RemoteException, InterruptedException {
+                    shard.disconnect(client);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> disconnection : executor.invokeAll(calls)) {
+            try {
+                disconnection.get();
+            } catch (ExecutionException e) {
+                LOGGER.warning("Unable to disconnect the client from a shard : " + e.getCause().getMessage() + "\n");
+            }
+        }
+        LOGGER.warning("Client disconnected from " + fromShards.size() + " shards after a failure on another \n");
+    }
+
+    /**
+     * List the changes of the catalogue, shard after shard. The page is filled from the first shard which has
+     * changes left, and the version of the page stands for the version reached on each shard.
+     * @param sinceVersion The version of the last page received, or 0 to list the whole catalogue
+     * @param pageSize The maximum number of changes in the page
+     * @return The page, with the version to give to the next call
+     * @throws RemoteException
+     */
+    @Override
+    public AuctionPage listAuctions(long sinceVersion, int pageSize) throws RemoteException {
+        long[] from = sinceVersion == 0 ? new long[shards.size()] : cursorOf(sinceVersion);
+        // A version unknown to the router, or too old for a shard, makes the client reload the whole catalogue
+        boolean reset = from == null;
+        AuctionPage page = listShards(reset ? new long[shards.size()] : from, pageSize);
+        if (page == null) {
+            reset = true;
+            page = listShards(new long[shards.size()], pageSize);
+        }
+        page.setReset(reset);
+        return page;
+    }
+
+    /**
+     * @return The page, or null if a shard has forgotten the changes since its version
+     */
+    private AuctionPage listShards(long[] from, int pageSize) throws RemoteException {
+        long[] to = from.clone();
+        AuctionPage page = new AuctionPage(0);
+        int remaining = pageSize;
+        for (int i = 0; i < shards.size(); i++) {
+            if (remaining <= 0) {
+                page.setMore(true);
+                break;
+            }
+            AuctionPage shardPage = shards.get(i).listAuctions(to[i], remaining);
+            if (shardPage.isReset() && to[i] != 0) {
+                return null;
+            }
+            page.getAuctions().addAll(shardPage.getAuctions());
+            page.getRemoved().addAll(shardPage.getRemoved());
+            page.setMore(page.hasMore() || shardPage.hasMore());
+            to[i] = shardPage.getVersion();
+            remaining -= shardPage.getAuctions().size() + shardPage.getRemoved().size();
+            if (shardPage.hasMore()) {
+                // The next shards are listed once this one has been caught up
+                page.setMore(true);
+                break;
+            }
+        }
+        page.setVersion(newCursor(to));
+        return page;
+    }
+
+    private synchronized long[] cursorOf(long version) {
+        long[] versions = cursors.get(version);
+        return versions == null ? null : versions.clone();
+    }
+
+    private synchronized long newCursor(long[] versions) {
+        nextCursor++;
+        cursors.put(nextCursor, versions);
+        return nextCursor;
+    }
+}
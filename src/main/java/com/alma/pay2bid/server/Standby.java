@@ -0,0 +1,105 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.server.journal.JournalEvent;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Logger;
+
+/**
+ * A hot standby : a server which follows the state transitions of a primary, replayed as they are received,
+ * and takes over when the primary has been silent for a timeout. The clients reattach to it by themselves.
+ * <p>
+ * The standby only takes over once it has heard from a primary. Once it has taken over, it refuses the events of
+ * the former primary. A standby dropped by its primary refuses its events too, and never takes over : its state
+ * is not the state of the primary anymore, so it must be restarted to follow the primary again.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class Standby extends UnicastRemoteObject implements IStandby {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Notified when the standby takes over
+     */
+    public interface TakeoverListener {
+        void tookOver(Server server);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(Standby.class.getCanonicalName());
+
+    // The name of a standby in the registry of its server
+    public static final String NAME = "com.alma.pay2bid.server.Standby";
+
+    private final Server server;
+    private final long takeoverTimeout;
+    private final TakeoverListener listener;
+    private final Timer watchdog = new Timer("standby-watchdog", true);
+    private long lastContact = 0;
+    private boolean active = false;
+    private boolean detached = false;
+
+    /**
+     * Constructor
+     * @param server The server following the primary. It must not be reachable by the clients before it takes over.
+     * @param takeoverTimeout Time (in milliseconds) without any batch from the primary after which the standby
+     *                        takes over
+     * @param listener Notified when the standby takes over, to make the server reachable
+     * @throws RemoteException
+     */
+    public Standby(Server server, long takeoverTimeout, TakeoverListener listener) throws RemoteException {
+        super();
+        this.server = server;
+        this.takeoverTimeout = takeoverTimeout;
+        this.listener = listener;
+        watchdog.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                checkPrimary();
+            }
+        }, takeoverTimeout / 4, takeoverTimeout / 4);
+    }
+
+    @Override
+    public synchronized boolean replicate(byte[] batch) throws RemoteException {
+        if (active || detached) {
+            return false;
+        }
+        try {
+            for (JournalEvent event : JournalEvent.decode(batch)) {
+                server.replicate(event);
+            }
+        } catch (IOException e) {
+            throw new RemoteException("Unable to decode the events", e);
+        }
+        lastContact = System.currentTimeMillis();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean detach() {
+        if (active) {
+            return false;
+        }
+        detached = true;
+        watchdog.cancel();
+        LOGGER.warning("Dropped by the primary : the standby will not take over, and must be restarted \n");
+        return true;
+    }
+
+    private synchronized void checkPrimary() {
+        if (active || detached || lastContact == 0 || System.currentTimeMillis() - lastContact < takeoverTimeout) {
+            return;
+        }
+        LOGGER.warning("No news from the primary for " + (System.currentTimeMillis() - lastContact)
+                + " ms : the standby takes over \n");
+        active = true;
+        watchdog.cancel();
+        server.takeOver();
+        listener.tookOver(server);
+    }
+}
@@ -0,0 +1,68 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.IClient;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The topics watched by the clients. A client watches an auction if he has subscribed to the auction, to its seller
+ * or to its category, or if he is its seller. A client who has not subscribed to any topic watches every auction.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class SubscriptionIndex {
+
+    private final ConcurrentMap<IClient, Set<Topic>> topicsOf = new ConcurrentHashMap<IClient, Set<Topic>>();
+
+    /**
+     * @return True if the client was not subscribed to the topic
+     */
+    boolean subscribe(IClient client, Topic topic) {
+        Set<Topic> topics = topicsOf.get(client);
+        if (topics == null) {
+            topics = Collections.newSetFromMap(new ConcurrentHashMap<Topic, Boolean>());
+            Set<Topic> previous = topicsOf.putIfAbsent(client, topics);
+            if (previous != null) {
+                topics = previous;
+            }
+        }
+        return topics.add(topic);
+    }
+
+    /**
+     * @return True if the client was subscribed to the topic
+     */
+    boolean unsubscribe(IClient client, Topic topic) {
+        Set<Topic> topics = topicsOf.get(client);
+        return topics != null && topics.remove(topic);
+    }
+
+    /**
+     * Forget the topics of a client who has left
+     */
+    void remove(IClient client) {
+        topicsOf.remove(client);
+    }
+
+    /**
+     * @param client A client
+     * @param identifier The identifier of the client
+     * @param auction An auction
+     * @return True if the client receives the price events of the auction
+     */
+    boolean watches(IClient client, String identifier, AuctionBean auction) {
+        Set<Topic> topics = topicsOf.get(client);
+        if (topics == null || topics.isEmpty() || identifier.equals(auction.getSeller())) {
+            return true;
+        }
+        return topics.contains(Topic.auction(auction.getUuid()))
+                || (auction.getSeller() != null && topics.contains(Topic.seller(auction.getSeller())))
+                || (auction.getCategory() != null && topics.contains(Topic.category(auction.getCategory())));
+    }
+}
@@ -0,0 +1,162 @@
+package com.alma.pay2bid.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel : a single thread handles the expiration of a large number of timeouts.
+ * Scheduling and cancelling a timeout are O(1), and each tick only looks at the timeouts hashed in its bucket.
+ * The expired tasks are run by an executor, so a slow task never delays the ticks.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class TimingWheel {
+
+    /**
+     * A task scheduled in the wheel
+     */
+    static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled = false;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the timeout : its task will not be run
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return The time (in milliseconds since the epoch) when the task will be run
+         */
+        long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getCanonicalName());
+
+    private final long tickDuration;
+    private final List<List<Timeout>> wheel;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final Executor executor;
+    private final Thread worker;
+    private final long startTime;
+    private long tick = 0;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor
+     * @param name Name of the thread running the wheel
+     * @param tickDuration Duration of a tick, in milliseconds
+     * @param wheelSize Number of buckets of the wheel
+     * @param executor Executor used to run the expired tasks
+     */
+    TimingWheel(String name, long tickDuration, int wheelSize, Executor executor) {
+        this.tickDuration = tickDuration;
+        this.executor = executor;
+        this.wheel = new ArrayList<List<Timeout>>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayList<Timeout>());
+        }
+
+        this.startTime = System.currentTimeMillis();
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Schedule a task
+     * @param task The task to run when the delay has elapsed
+     * @param delay The delay, in milliseconds
+     * @return The timeout, which can be cancelled
+     */
+    Timeout schedule(Runnable task, long delay) {
+        Timeout timeout = new Timeout(task, System.currentTimeMillis() + delay);
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the wheel : the pending timeouts will never expire
+     */
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                long sleep = startTime + (tick + 1) * tickDuration - System.currentTimeMillis();
+                if (sleep > 0) {
+                    Thread.sleep(sleep);
+                }
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            transferNewTimeouts();
+            expireTimeouts(wheel.get((int) (tick % wheel.size())));
+            tick++;
+        }
+    }
+
+    /**
+     * Put the timeouts scheduled since the last tick in their bucket
+     */
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            // A timeout is never put in the past : at worst, it expires at the current tick
+            long expirationTick = Math.max(tick, (timeout.deadline - startTime) / tickDuration);
+            timeout.remainingRounds = (expirationTick - tick) / wheel.size();
+            wheel.get((int) (expirationTick % wheel.size())).add(timeout);
+        }
+    }
+
+    private void expireTimeouts(List<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                iterator.remove();
+                try {
+                    executor.execute(timeout.task);
+                } catch (RuntimeException e) {
+                    LOGGER.warning("Unable to run an expired task : " + e.getMessage() + "\n");
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+}
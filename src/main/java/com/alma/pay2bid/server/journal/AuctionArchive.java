@@ -0,0 +1,249 @@
+package com.alma.pay2bid.server.journal;
+
+import com.alma.pay2bid.bean.AuctionBean;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An append-only, memory-mapped archive of the completed auctions.
+ * <p>
+ * The completed auctions leave the memory of the server : only their position in the archive is kept.
+ * They are read back through flyweights, which decode the fields straight from the mapping when asked.
+ * The archive is made of chunks of the same file, mapped one after the other as it grows.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionArchive implements Closeable {
+
+    /**
+     * A flyweight reading a completed auction from the archive
+     */
+    public static class ArchivedAuction {
+        private static final int UUID_OFFSET = 4;
+        private static final int PRICE_OFFSET = 20;
+        private static final int STRINGS_OFFSET = 24;
+
+        private final ByteBuffer chunk;
+        private final int offset;
+
+        private ArchivedAuction(ByteBuffer chunk, int offset) {
+            this.chunk = chunk;
+            this.offset = offset;
+        }
+
+        public UUID getUuid() {
+            return new UUID(chunk.getLong(offset + UUID_OFFSET), chunk.getLong(offset + UUID_OFFSET + 8));
+        }
+
+        public int getPrice() {
+            return chunk.getInt(offset + PRICE_OFFSET);
+        }
+
+        public String getName() {
+            return readString(0);
+        }
+
+        public String getDescription() {
+            return readString(1);
+        }
+
+        public String getSeller() {
+            return readString(2);
+        }
+
+        /**
+         * @return The identifier of the buyer, or null if nobody has bought the item
+         */
+        public String getWinnerIdentifier() {
+            return readString(3);
+        }
+
+        /**
+         * @return The category of the auction, or null if it has none
+         */
+        public String getCategory() {
+            return readString(4);
+        }
+
+        /**
+         * @return A copy of the auction
+         */
+        public AuctionBean toBean() {
+            AuctionBean auction = new AuctionBean(getPrice(), getName(), getDescription(), getSeller());
+            auction.setUuid(getUuid());
+            auction.setCategory(getCategory());
+            return auction;
+        }
+
+        /**
+         * Decode the n-th string of the record
+         * @return The string, or null if it is not set
+         */
+        private String readString(int index) {
+            int position = offset + STRINGS_OFFSET;
+            for (int i = 0; i < index; i++) {
+                position += 4 + Math.max(0, chunk.getInt(position));
+            }
+            int length = chunk.getInt(position);
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = chunk.get(position + 4 + i);
+            }
+            try {
+                return new String(bytes, CHARSET);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final String CHARSET = "UTF-8";
+    private static final String ARCHIVE_FILE = "archive.dat";
+
+    private final int chunkSize;
+    private final RandomAccessFile file;
+    private final List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+    private final List<ByteBuffer> readers = new ArrayList<ByteBuffer>();
+    private final ConcurrentMap<UUID, ArchivedAuction> index = new ConcurrentHashMap<UUID, ArchivedAuction>();
+
+    /**
+     * Open the archive of a directory, or create it
+     * @param directory The directory of the archive
+     * @throws IOException
+     */
+    public AuctionArchive(File directory) throws IOException {
+        this(new File(directory, ARCHIVE_FILE), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Open an archive, or create it
+     * @param archive The file of the archive
+     * @param chunkSize Size of a mapped chunk, in bytes
+     * @throws IOException
+     */
+    public AuctionArchive(File archive, int chunkSize) throws IOException {
+        this.chunkSize = chunkSize;
+        this.file = new RandomAccessFile(archive, "rw");
+
+        // Index the auctions already archived
+        long nbChunks = Math.max(1, (file.length() + chunkSize - 1) / chunkSize);
+        for (int i = 0; i < nbChunks; i++) {
+            MappedByteBuffer chunk = mapChunk(i);
+            int position = 0;
+            while (position + 4 <= chunkSize && chunk.getInt(position) > 0) {
+                ArchivedAuction auction = new ArchivedAuction(readers.get(i), position);
+                index.put(auction.getUuid(), auction);
+                position += chunk.getInt(position);
+            }
+            chunk.position(position);
+        }
+    }
+
+    /**
+     * Create an archive in a temporary file, deleted when the JVM stops
+     * @throws IOException
+     */
+    public static AuctionArchive temporary() throws IOException {
+        File archive = File.createTempFile("pay2bid-archive", ".dat");
+        archive.deleteOnExit();
+        return new AuctionArchive(archive, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Append a completed auction to the archive
+     * @param auction The auction
+     * @param winnerIdentifier The identifier of the buyer, or null if nobody has bought the item
+     * @throws IOException
+     */
+    public synchronized void archive(AuctionBean auction, String winnerIdentifier) throws IOException {
+        if (index.containsKey(auction.getUuid())) {
+            return;
+        }
+
+        byte[][] strings = {encode(auction.getName()), encode(auction.getDescription()),
+                encode(auction.getSeller()), encode(winnerIdentifier), encode(auction.getCategory())};
+        int length = ArchivedAuction.STRINGS_OFFSET;
+        for (byte[] string : strings) {
+            length += 4 + (string == null ? 0 : string.length);
+        }
+        if (length + 4 > chunkSize) {
+            throw new IOException("Auction too large for the archive : " + auction.getUuid());
+        }
+
+        MappedByteBuffer chunk = chunks.get(chunks.size() - 1);
+        if (chunk.remaining() < length + 4) {
+            chunk = mapChunk(chunks.size());
+        }
+
+        int start = chunk.position();
+        chunk.putInt(start + 4, 0);
+        chunk.position(start + 4);
+        chunk.putLong(auction.getUuid().getMostSignificantBits());
+        chunk.putLong(auction.getUuid().getLeastSignificantBits());
+        chunk.putInt(auction.getPrice());
+        for (byte[] string : strings) {
+            chunk.putInt(string == null ? -1 : string.length);
+            if (string != null) {
+                chunk.put(string);
+            }
+        }
+        // The length is written last, so a torn record is never indexed
+        chunk.putInt(start, length);
+
+        index.put(auction.getUuid(), new ArchivedAuction(readers.get(readers.size() - 1), start));
+    }
+
+    /**
+     * @param auctionId UUID of an auction
+     * @return The archived auction, or null if the auction is not in the archive
+     */
+    public ArchivedAuction get(UUID auctionId) {
+        return index.get(auctionId);
+    }
+
+    /**
+     * @return The number of archived auctions
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        file.close();
+    }
+
+    private MappedByteBuffer mapChunk(int number) throws IOException {
+        MappedByteBuffer chunk = file.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                (long) number * chunkSize, chunkSize);
+        chunks.add(chunk);
+        // The flyweights only use absolute reads on a read-only view, which is safe while the chunk is written
+        readers.add(chunk.asReadOnlyBuffer());
+        return chunk;
+    }
+
+    private static byte[] encode(String value) throws UnsupportedEncodingException {
+        return value == null ? null : value.getBytes(CHARSET);
+    }
+}
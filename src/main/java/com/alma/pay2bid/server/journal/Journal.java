@@ -0,0 +1,384 @@
+package com.alma.pay2bid.server.journal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * An append-only journal of the state transitions of the auction house, used to rebuild the server after a restart.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files. Appending an event only copies it in the mapping :
+ * the segments are forced to the disk by a background thread (group commit), so an append never waits for a fsync.
+ * A record is made of its length followed by the encoded event; the length is written last, so a torn record is
+ * never replayed.
+ * <p>
+ * The appends do not share a lock : each one reserves the room of its record with a compare-and-set on the segment,
+ * then copies it concurrently with the others. The journal is only locked to roll to a new segment.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class Journal implements Closeable {
+
+    /**
+     * Receives the events read from the journal
+     */
+    public interface Replayer {
+        void replay(JournalEvent event);
+    }
+
+    /**
+     * A mapped segment file, and the room already reserved in it
+     */
+    private static class Segment {
+        private final int number;
+        private final RandomAccessFile file;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger next; // Offset of the next record
+        private final AtomicInteger writers = new AtomicInteger(); // Appends which may be copying a record
+
+        Segment(int number, RandomAccessFile file, MappedByteBuffer buffer, int position) {
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+            this.next = new AtomicInteger(position);
+        }
+
+        /**
+         * Reserve the room of a record
+         * @param size The size of the record
+         * @return The offset of the record, or -1 if the segment is full
+         */
+        int reserve(int size) {
+            while (true) {
+                int start = next.get();
+                if (start + size > buffer.capacity()) {
+                    return -1;
+                }
+                if (next.compareAndSet(start, start + size)) {
+                    return start;
+                }
+            }
+        }
+
+        /**
+         * Copy a record in the room reserved for it
+         */
+        void write(int start, byte[] record) {
+            // A duplicate has its own position : the appends never share one
+            ByteBuffer view = buffer.duplicate();
+            view.position(start + 4);
+            view.put(record);
+            buffer.putInt(start, record.length);
+        }
+
+        /**
+         * Zero the segment from an offset : the records written after a torn one before a crash are never replayed
+         * once new records are appended over the torn one
+         */
+        void clearFrom(int offset) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            byte[] zeros = new byte[4096];
+            while (view.hasRemaining()) {
+                view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+            }
+            buffer.force();
+        }
+
+        /**
+         * Refuse the next reservations, wait for the records being copied, then force the segment and close it
+         */
+        void seal() throws IOException {
+            next.set(buffer.capacity());
+            while (writers.get() > 0) {
+                Thread.yield();
+            }
+            buffer.force();
+            file.close();
+        }
+    }
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(Journal.class.getCanonicalName());
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long FLUSH_INTERVAL = 10;
+
+    private final File directory;
+    private final int segmentSize;
+
+    private volatile Segment current;
+    private volatile boolean dirty = false;
+    private volatile boolean open = true;
+    private final Thread flusher;
+
+    /**
+     * Open a journal, or create it if the directory does not contain one
+     * @param directory Directory of the journal
+     * @throws IOException
+     */
+    public Journal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open a journal, or create it if the directory does not contain one
+     * @param directory Directory of the journal
+     * @param segmentSize Size of a segment file, in bytes
+     * @throws IOException
+     */
+    public Journal(File directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the journal directory " + directory);
+        }
+
+        // New events are appended after the last complete record of the last segment
+        List<Integer> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(0, 0);
+        } else {
+            int last = segments.get(segments.size() - 1);
+            int position = scanSegment(last, 0, null);
+            openSegment(last, position);
+            current.clearFrom(position);
+        }
+
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Append an event to the journal. The event is durable after the next group commit.
+     * The events appended by a thread are written in the order of the calls.
+     * @param event The event
+     */
+    public void append(JournalEvent event) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream encoder = new DataOutputStream(bytes);
+            event.write(encoder);
+            encoder.flush();
+            byte[] record = bytes.toByteArray();
+            if (record.length + 4 > segmentSize) {
+                throw new IOException("Event too large for a segment of the journal : " + event);
+            }
+
+            while (open) {
+                Segment segment = current;
+                // The writer is counted before reserving, so a segment is never closed under a reserved record
+                segment.writers.incrementAndGet();
+                try {
+                    int start = segment.reserve(record.length + 4);
+                    if (start >= 0) {
+                        segment.write(start, record);
+                        dirty = true;
+                        return;
+                    }
+                } finally {
+                    segment.writers.decrementAndGet();
+                }
+                rollFrom(segment);
+            }
+        } catch (IOException e) {
+            LOGGER.severe("Unable to write in the journal : " + e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * Open the segment following a full one, unless another append has already done it
+     */
+    private synchronized void rollFrom(Segment full) throws IOException {
+        if (open && current == full) {
+            openSegment(full.number + 1, 0);
+        }
+    }
+
+    /**
+     * Read all the events of the journal, from the oldest one
+     * @param replayer Receives the events
+     * @throws IOException
+     */
+    public void replay(Replayer replayer) throws IOException {
+        replay(0, replayer);
+    }
+
+    /**
+     * Read the events of the journal written after a position
+     * @param from The position of the first event to read, as returned by getPosition or roll
+     * @param replayer Receives the events
+     * @throws IOException
+     */
+    public void replay(long from, Replayer replayer) throws IOException {
+        for (int number : listSegments()) {
+            if (number > segmentOf(from)) {
+                scanSegment(number, 0, replayer);
+            } else if (number == segmentOf(from)) {
+                scanSegment(number, offsetOf(from), replayer);
+            }
+        }
+    }
+
+    /**
+     * @return The position where the next event will be written
+     */
+    public long getPosition() {
+        Segment segment = current;
+        return position(segment.number, Math.min(segment.next.get(), segmentSize));
+    }
+
+    /**
+     * Start a new segment, so that the events written before can be compacted once they are in a snapshot
+     * @return The position of the first event of the new segment
+     * @throws IOException
+     */
+    public synchronized long roll() throws IOException {
+        if (current.next.get() > 0) {
+            openSegment(current.number + 1, 0);
+        }
+        return getPosition();
+    }
+
+    /**
+     * Delete the segments holding only events written before a position
+     * @param position A position returned by roll
+     */
+    public synchronized void deleteBefore(long position) {
+        for (int number : listSegments()) {
+            if (number < segmentOf(position) && number != current.number && !segmentFile(number).delete()) {
+                LOGGER.warning("Unable to delete the segment " + segmentFile(number) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Stop the journal, after forcing the last events to the disk
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        open = false;
+        flusher.interrupt();
+        current.seal();
+    }
+
+    private void flushLoop() {
+        while (open) {
+            try {
+                Thread.sleep(FLUSH_INTERVAL);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (dirty) {
+                dirty = false;
+                // The appends go on while the segment is forced
+                current.buffer.force();
+            }
+        }
+    }
+
+    /**
+     * Map a segment and position the journal in it. The previous segment is sealed.
+     */
+    private void openSegment(int number, int position) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segmentFile(number), "rw");
+        MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        Segment previous = current;
+        current = new Segment(number, file, buffer, position);
+        if (previous != null) {
+            previous.seal();
+        }
+    }
+
+    /**
+     * Read the records of a segment
+     * @param number The number of the segment
+     * @param position The position of the first record to read
+     * @param replayer Receives the events, may be null
+     * @return The position following the last complete record
+     */
+    private int scanSegment(int number, int position, Replayer replayer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile(number))));
+        try {
+            if (in.skip(position) < position) {
+                return position;
+            }
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return position;
+                }
+                // A zero length marks the end of the written records
+                if (length <= 0) {
+                    return position;
+                }
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    return position;
+                }
+                if (replayer != null) {
+                    replayer.replay(JournalEvent.read(new DataInputStream(new ByteArrayInputStream(record))));
+                }
+                position += 4 + length;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long position(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return The numbers of the segments of the journal, in order
+     */
+    private List<Integer> listSegments() {
+        List<Integer> segments = new ArrayList<Integer>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.add(Integer.parseInt(
+                                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        LOGGER.warning("Ignoring the file " + name + " in the journal directory\n");
+                    }
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
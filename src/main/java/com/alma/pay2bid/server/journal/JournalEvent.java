@@ -0,0 +1,250 @@
+package com.alma.pay2bid.server.journal;
+
+import com.alma.pay2bid.bean.AuctionBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A state transition of the auction house, as written in the journal
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class JournalEvent {
+
+    /**
+     * The kinds of transition recorded in the journal
+     */
+    public enum Type {
+        AUCTION_PLACED,
+        BID_ACCEPTED,
+        ROUND_CLOSED,
+        AUCTION_SOLD,
+        CLIENT_LEFT
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Type type;
+    private final UUID auctionId;
+    private final String clientIdentifier;
+    private final int price;
+    private final String name;
+    private final String description;
+    private final String seller;
+    private final String category;
+
+    private JournalEvent(Type type, UUID auctionId, String clientIdentifier, int price,
+                         String name, String description, String seller, String category) {
+        this.type = type;
+        this.auctionId = auctionId;
+        this.clientIdentifier = clientIdentifier;
+        this.price = price;
+        this.name = name;
+        this.description = description;
+        this.seller = seller;
+        this.category = category;
+    }
+
+    /**
+     * @param auction The auction placed by a client
+     */
+    public static JournalEvent auctionPlaced(AuctionBean auction) {
+        return new JournalEvent(Type.AUCTION_PLACED, auction.getUuid(), null, auction.getPrice(),
+                auction.getName(), auction.getDescription(), auction.getSeller(), auction.getCategory());
+    }
+
+    /**
+     * @param auctionId UUID of the auction
+     * @param bidder Identifier of the client who bid
+     * @param bid Value of the bid
+     */
+    public static JournalEvent bidAccepted(UUID auctionId, String bidder, int bid) {
+        return new JournalEvent(Type.BID_ACCEPTED, auctionId, bidder, bid, null, null, null, null);
+    }
+
+    /**
+     * @param auctionId UUID of the auction
+     * @param price Price of the auction at the end of the round
+     * @param winner Identifier of the current winner, or null if there is none
+     */
+    public static JournalEvent roundClosed(UUID auctionId, int price, String winner) {
+        return new JournalEvent(Type.ROUND_CLOSED, auctionId, winner, price, null, null, null, null);
+    }
+
+    /**
+     * @param auctionId UUID of the auction
+     * @param price Price at which the auction has been sold
+     * @param winner Identifier of the buyer, or null if nobody has bought the item
+     */
+    public static JournalEvent auctionSold(UUID auctionId, int price, String winner) {
+        return new JournalEvent(Type.AUCTION_SOLD, auctionId, winner, price, null, null, null, null);
+    }
+
+    /**
+     * @param client Identifier of the client who has disconnected or crashed
+     */
+    public static JournalEvent clientLeft(String client) {
+        return new JournalEvent(Type.CLIENT_LEFT, null, client, 0, null, null, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public UUID getAuctionId() {
+        return auctionId;
+    }
+
+    /**
+     * @return The identifier of the bidder, of the winner or of the client who left, depending on the type
+     */
+    public String getClientIdentifier() {
+        return clientIdentifier;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    /**
+     * @return The auction placed, for an AUCTION_PLACED event
+     */
+    public AuctionBean toAuction() {
+        AuctionBean auction = new AuctionBean(price, name, description, seller);
+        auction.setUuid(auctionId);
+        auction.setCategory(category);
+        return auction;
+    }
+
+    /**
+     * Encode the event
+     * @param out The output
+     * @throws IOException
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        writeUuid(out, auctionId);
+        writeString(out, clientIdentifier);
+        out.writeInt(price);
+        if (type == Type.AUCTION_PLACED) {
+            writeString(out, name);
+            writeString(out, description);
+            writeString(out, seller);
+            writeString(out, category);
+        }
+    }
+
+    /**
+     * Decode an event
+     * @param in The input
+     * @return The event
+     * @throws IOException
+     */
+    static JournalEvent read(DataInput in) throws IOException {
+        Type type = Type.values()[in.readByte()];
+        UUID auctionId = readUuid(in);
+        String clientIdentifier = readString(in);
+        int price = in.readInt();
+        String name = null;
+        String description = null;
+        String seller = null;
+        String category = null;
+        if (type == Type.AUCTION_PLACED) {
+            name = readString(in);
+            description = readString(in);
+            seller = readString(in);
+            category = readString(in);
+        }
+        return new JournalEvent(type, auctionId, clientIdentifier, price, name, description, seller, category);
+    }
+
+    /**
+     * Encode a batch of events, with the encoding of the journal, to send them to a replica
+     * @param events The events
+     * @return The encoded batch
+     */
+    public static byte[] encode(List<JournalEvent> events) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(events.size());
+            for (JournalEvent event : events) {
+                event.write(out);
+            }
+        } catch (IOException e) {
+            // Writing in memory never fails
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a batch of events written by encode
+     * @param batch The encoded batch
+     * @return The events
+     * @throws IOException If the batch is corrupted
+     */
+    public static List<JournalEvent> decode(byte[] batch) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch));
+        int size = in.readInt();
+        List<JournalEvent> events = new ArrayList<JournalEvent>(size);
+        for (int i = 0; i < size; i++) {
+            events.add(read(in));
+        }
+        return events;
+    }
+
+    private static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    /**
+     * Write a string as its length in bytes, or -1 if it is null, followed by its UTF-8 encoding
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString
+     */
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + auctionId + " " + clientIdentifier + " " + price;
+    }
+}
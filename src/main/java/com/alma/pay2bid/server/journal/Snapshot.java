@@ -0,0 +1,63 @@
+package com.alma.pay2bid.server.journal;
+
+import com.alma.pay2bid.bean.AuctionBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of the live auctions at a given position of the journal
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class Snapshot {
+
+    /**
+     * A live auction with its current price and winner
+     */
+    public static class Entry {
+        private final AuctionBean auction;
+        private final String winnerIdentifier;
+
+        public Entry(AuctionBean auction, String winnerIdentifier) {
+            this.auction = auction;
+            this.winnerIdentifier = winnerIdentifier;
+        }
+
+        public AuctionBean getAuction() {
+            return auction;
+        }
+
+        public String getWinnerIdentifier() {
+            return winnerIdentifier;
+        }
+    }
+
+    private final long position;
+    private final List<Entry> entries;
+
+    /**
+     * @param position The position of the journal from which the events are not in the snapshot
+     */
+    public Snapshot(long position) {
+        this(position, new ArrayList<Entry>());
+    }
+
+    Snapshot(long position, List<Entry> entries) {
+        this.position = position;
+        this.entries = entries;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public void add(AuctionBean auction, String winnerIdentifier) {
+        entries.add(new Entry(auction, winnerIdentifier));
+    }
+}
@@ -0,0 +1,172 @@
+package com.alma.pay2bid.server.journal;
+
+import com.alma.pay2bid.bean.AuctionBean;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Stores the snapshots of the server in compact binary files, next to its journal.
+ * A snapshot is written in a temporary file and then renamed, so a crash never leaves a partial snapshot behind.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class SnapshotStore {
+
+    private static final Logger LOGGER = Logger.getLogger(SnapshotStore.class.getCanonicalName());
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int MAGIC = 0x50324253;
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+
+    /**
+     * @param directory Directory of the snapshots
+     * @throws IOException
+     */
+    public SnapshotStore(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the snapshot directory " + directory);
+        }
+    }
+
+    /**
+     * Write a snapshot, then delete the older ones
+     * @param snapshot The snapshot
+     * @throws IOException
+     */
+    public void save(Snapshot snapshot) throws IOException {
+        File tmp = new File(directory, SNAPSHOT_PREFIX + Long.toHexString(snapshot.getPosition()) + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.getPosition());
+            out.writeInt(snapshot.getEntries().size());
+            for (Snapshot.Entry entry : snapshot.getEntries()) {
+                AuctionBean auction = entry.getAuction();
+                out.writeLong(auction.getUuid().getMostSignificantBits());
+                out.writeLong(auction.getUuid().getLeastSignificantBits());
+                out.writeInt(auction.getPrice());
+                writeString(out, auction.getName());
+                writeString(out, auction.getDescription());
+                writeString(out, auction.getSeller());
+                writeString(out, entry.getWinnerIdentifier());
+                writeString(out, auction.getCategory());
+            }
+        } finally {
+            out.close();
+        }
+
+        File file = snapshotFile(snapshot.getPosition());
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename the snapshot " + tmp + " to " + file);
+        }
+
+        for (File old : listSnapshots()) {
+            if (!old.equals(file) && !old.delete()) {
+                LOGGER.warning("Unable to delete the snapshot " + old + "\n");
+            }
+        }
+    }
+
+    /**
+     * @return The latest snapshot, or null if there is none
+     * @throws IOException
+     */
+    public Snapshot loadLatest() throws IOException {
+        File latest = null;
+        long latestPosition = -1;
+        for (File file : listSnapshots()) {
+            long position = positionOf(file);
+            if (position > latestPosition) {
+                latest = file;
+                latestPosition = position;
+            }
+        }
+        return latest == null ? null : load(latest);
+    }
+
+    private Snapshot load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown snapshot format : " + file);
+            }
+            long position = in.readLong();
+            int size = in.readInt();
+            List<Snapshot.Entry> entries = new ArrayList<Snapshot.Entry>(size);
+            for (int i = 0; i < size; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                int price = in.readInt();
+                String name = readString(in);
+                String description = readString(in);
+                AuctionBean auction = new AuctionBean(price, name, description, readString(in));
+                auction.setUuid(uuid);
+                String winnerIdentifier = readString(in);
+                auction.setCategory(readString(in));
+                entries.add(new Snapshot.Entry(auction, winnerIdentifier));
+            }
+            return new Snapshot(position, entries);
+        } finally {
+            in.close();
+        }
+    }
+
+    private File snapshotFile(long position) {
+        return new File(directory, SNAPSHOT_PREFIX + Long.toHexString(position) + SNAPSHOT_SUFFIX);
+    }
+
+    private static long positionOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()), 16);
+    }
+
+    private List<File> listSnapshots() {
+        List<File> snapshots = new ArrayList<File>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.add(file);
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Write a string as its length in bytes, or -1 if it is null, followed by its UTF-8 encoding
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString
+     */
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,345 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.server.IRelay;
+import com.alma.pay2bid.server.IServer;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * The server of a client, with its standbys : the calls go to the current server, and when it cannot be reached
+ * anymore the client moves to the next one. The client registered through the proxy is reattached to the new
+ * server, without losing his auctions, then the call is made again.
+ * <p>
+ * Only the failures to reach a server cause a failover : an exception thrown by the server itself is given
+ * to the caller.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class FailoverServerProxy implements IServer {
+
+    /**
+     * A call to a server
+     */
+    private interface Call<T> {
+        T call(IServer server) throws RemoteException, InterruptedException;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(FailoverServerProxy.class.getCanonicalName());
+    private static final long RETRY_DELAY = 200;
+
+    private final List<Transport> transports;
+    private final long failoverTimeout;
+    private int current = 0;
+    private IServer server;
+    private IClient client;
+    private final Set<Topic> topics = new LinkedHashSet<Topic>(); // Subscribed again on the next server
+
+    /**
+     * Constructor
+     * @param transports The primary server, then its standbys
+     * @param failoverTimeout Time (in milliseconds) during which the servers are tried before a call fails
+     * @throws IOException If the primary server cannot be reached
+     */
+    public FailoverServerProxy(List<Transport> transports, long failoverTimeout) throws IOException {
+        this.transports = new ArrayList<Transport>(transports);
+        this.failoverTimeout = failoverTimeout;
+        this.server = transports.get(0).connect();
+    }
+
+    /**
+     * Make a call on the current server, moving to the next servers while it cannot be reached
+     */
+    private <T> T invoke(Call<T> call) throws RemoteException, InterruptedException {
+        IServer target;
+        synchronized (this) {
+            target = server;
+        }
+        try {
+            return call.call(target);
+        } catch (ServerException e) {
+            throw e;
+        } catch (ServerError e) {
+            throw e;
+        } catch (RemoteException e) {
+            LOGGER.warning("The server cannot be reached : " + e.getMessage() + "\n");
+            return call.call(failover(target));
+        }
+    }
+
+    /**
+     * Move to the next server which can be reached, and reattach the client to it
+     * @param failed The server which has failed
+     * @return The new server
+     */
+    private synchronized IServer failover(IServer failed) throws RemoteException, InterruptedException {
+        if (server != failed) {
+            // Another call has already moved to a new server
+            return server;
+        }
+        long deadline = System.currentTimeMillis() + failoverTimeout;
+        RemoteException lastFailure = null;
+        while (System.currentTimeMillis() < deadline) {
+            current = (current + 1) % transports.size();
+            try {
+                IServer next = transports.get(current).connect();
+                if (client != null) {
+                    next.reattach(client);
+                    for (Topic topic : topics) {
+                        next.subscribe(client, topic);
+                    }
+                }
+                server = next;
+                LOGGER.info("Moved to the server " + current + "\n");
+                return next;
+            } catch (ServerException e) {
+                throw e;
+            } catch (IOException e) {
+                // The standby may not have taken over yet
+                lastFailure = e instanceof RemoteException ? (RemoteException) e : new RemoteException(e.getMessage(), e);
+                Thread.sleep(RETRY_DELAY);
+            }
+        }
+        throw new RemoteException("No server can be reached", lastFailure);
+    }
+
+    /**
+     * Make a call which cannot be interrupted by the server, on the current server or on the next ones
+     */
+    private <T> T query(Call<T> call) throws RemoteException {
+        try {
+            return invoke(call);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while moving to another server", e);
+        }
+    }
+
+    @Override
+    public void placeAuction(final AuctionBean auction) throws RemoteException {
+        query(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException {
+                server.placeAuction(auction);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public AuctionSnapshot register(final IClient client) throws RemoteException, InterruptedException {
+        AuctionSnapshot snapshot = invoke(new Call<AuctionSnapshot>() {
+            @Override
+            public AuctionSnapshot call(IServer server) throws RemoteException, InterruptedException {
+                return server.register(client);
+            }
+        });
+        synchronized (this) {
+            this.client = client;
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void reattach(final IClient client) throws RemoteException, InterruptedException {
+        invoke(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException, InterruptedException {
+                server.reattach(client);
+                return null;
+            }
+        });
+        synchronized (this) {
+            this.client = client;
+        }
+    }
+
+    @Override
+    public AuctionSnapshot registerRelayed(final IClient client, final ClientBean identity, final IRelay relay)
+            throws RemoteException, InterruptedException {
+        return invoke(new Call<AuctionSnapshot>() {
+            @Override
+            public AuctionSnapshot call(IServer server) throws RemoteException, InterruptedException {
+                return server.registerRelayed(client, identity, relay);
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(final IClient client, final Topic topic) throws RemoteException {
+        query(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException {
+                server.subscribe(client, topic);
+                return null;
+            }
+        });
+        synchronized (this) {
+            topics.add(topic);
+        }
+    }
+
+    @Override
+    public void unsubscribe(final IClient client, final Topic topic) throws RemoteException {
+        query(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException {
+                server.unsubscribe(client, topic);
+                return null;
+            }
+        });
+        synchronized (this) {
+            topics.remove(topic);
+        }
+    }
+
+    @Override
+    public void renewLease(final IClient client) throws RemoteException {
+        query(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException {
+                server.renewLease(client);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void disconnect(final IClient client) throws RemoteException, InterruptedException {
+        synchronized (this) {
+            this.client = null;
+        }
+        invoke(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException, InterruptedException {
+                server.disconnect(client);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void raiseBid(final UUID auctionId, final IClient client, final int newBid) throws RemoteException {
+        query(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException {
+                server.raiseBid(auctionId, client, newBid);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void timeElapsed(final UUID auctionId, final IClient client) throws RemoteException, InterruptedException {
+        invoke(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException, InterruptedException {
+                server.timeElapsed(auctionId, client);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void clientDisconnection(final IClient client) throws RemoteException, InterruptedException {
+        synchronized (this) {
+            this.client = null;
+        }
+        invoke(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException, InterruptedException {
+                server.clientDisconnection(client);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void clientsCrashed(final List<IClient> clientsCrashed) throws RemoteException {
+        query(new Call<Void>() {
+            @Override
+            public Void call(IServer server) throws RemoteException {
+                server.clientsCrashed(clientsCrashed);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public IClient getWinner(final UUID auctionId) throws RemoteException {
+        return query(new Call<IClient>() {
+            @Override
+            public IClient call(IServer server) throws RemoteException {
+                return server.getWinner(auctionId);
+            }
+        });
+    }
+
+    @Override
+    public AuctionBean getAuction(final UUID auctionId) throws RemoteException {
+        return query(new Call<AuctionBean>() {
+            @Override
+            public AuctionBean call(IServer server) throws RemoteException {
+                return server.getAuction(auctionId);
+            }
+        });
+    }
+
+    @Override
+    public AuctionDetails getAuctionDetails(final UUID auctionId, final int offset) throws RemoteException {
+        return query(new Call<AuctionDetails>() {
+            @Override
+            public AuctionDetails call(IServer server) throws RemoteException {
+                return server.getAuctionDetails(auctionId, offset);
+            }
+        });
+    }
+
+    @Override
+    public AuctionStatus resync(final UUID auctionId) throws RemoteException {
+        return query(new Call<AuctionStatus>() {
+            @Override
+            public AuctionStatus call(IServer server) throws RemoteException {
+                return server.resync(auctionId);
+            }
+        });
+    }
+
+    @Override
+    public List<AuctionBean> search(final AuctionQuery query) throws RemoteException {
+        return query(new Call<List<AuctionBean>>() {
+            @Override
+            public List<AuctionBean> call(IServer server) throws RemoteException {
+                return server.search(query);
+            }
+        });
+    }
+
+    @Override
+    public AuctionPage listAuctions(final long sinceVersion, final int pageSize) throws RemoteException {
+        return query(new Call<AuctionPage>() {
+            @Override
+            public AuctionPage call(IServer server) throws RemoteException {
+                return server.listAuctions(sinceVersion, pageSize);
+            }
+        });
+    }
+}
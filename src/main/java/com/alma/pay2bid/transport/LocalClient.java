@@ -0,0 +1,281 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.client.ClientState;
+import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.server.IServer;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * A client of the in-VM transport, as seen by the server. The callbacks are queued and run in order on the
+ * executor of the transport; the other calls are made directly on the client.
+ * <p>
+ * The queue is bounded, as the outboxes of the server : when it is full, the new prices are dropped but the other
+ * callbacks are still queued. A client whose queue has been full and has not been emptied since a timeout is
+ * disconnected from the server.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class LocalClient implements IClient, Runnable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A callback waiting to be run on the client
+     */
+    private interface Callback {
+        void call(IClient client) throws RemoteException;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LocalClient.class.getCanonicalName());
+    private static final int BATCH_SIZE = 16;
+    private static final int CAPACITY = 256;
+    private static final long SATURATION_TIMEOUT = 5000;
+
+    private final IClient client;
+    private final IServer server;
+    private final Executor executor;
+    private final int capacity;
+    private final long saturationTimeout;
+    private final Queue<Callback> callbacks = new ArrayDeque<Callback>();
+    private boolean scheduled = false;
+    private boolean closed = false;
+    private long saturatedSince = 0;
+
+    /**
+     * @param client The client
+     * @param server The server, which disconnects the client when he is saturated
+     * @param executor The executor of the transport
+     */
+    LocalClient(IClient client, IServer server, Executor executor) {
+        this(client, server, executor, CAPACITY, SATURATION_TIMEOUT);
+    }
+
+    /**
+     * @param client The client
+     * @param server The server, which disconnects the client when he is saturated
+     * @param executor The executor of the transport
+     * @param capacity Number of callbacks waiting for the client above which his prices are dropped
+     * @param saturationTimeout Time (in milliseconds) after which a client whose queue stays full is disconnected
+     */
+    LocalClient(IClient client, IServer server, Executor executor, int capacity, long saturationTimeout) {
+        this.client = client;
+        this.server = server;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.saturationTimeout = saturationTimeout;
+    }
+
+    IClient getClient() {
+        return client;
+    }
+
+    @Override
+    public void newAuction(final UUID auctionId, final AuctionSummary auction, final long sequence) {
+        // The summary is never modified : it is shared by all the recipients of the event
+        enqueue(new Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.newAuction(auctionId, auction, sequence);
+            }
+        }, false);
+    }
+
+    @Override
+    public void bidSold(final UUID auctionId, final String buyer, final long sequence) {
+        enqueue(new Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.bidSold(auctionId, buyer, sequence);
+            }
+        }, false);
+    }
+
+    @Override
+    public void newPrice(final UUID auctionId, final int price, final String winner, final long sequence) {
+        enqueue(new Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.newPrice(auctionId, price, winner, sequence);
+            }
+        }, true);
+    }
+
+    @Override
+    public void updatePrice(final UUID auctionId, final int price, final String winner, final long sequence) {
+        enqueue(new Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.updatePrice(auctionId, price, winner, sequence);
+            }
+        }, true);
+    }
+
+    @Override
+    public void auctionLeft(final UUID auctionId) {
+        enqueue(new Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.auctionLeft(auctionId);
+            }
+        }, false);
+    }
+
+    @Override
+    public void addWonAuction(AuctionBean auction) {
+        final AuctionBean copy = LocalServerProxy.copyOf(auction);
+        enqueue(new Callback() {
+            @Override
+            public void call(IClient client) throws RemoteException {
+                client.addWonAuction(copy);
+            }
+        }, false);
+    }
+
+    @Override
+    public void submit(AuctionBean auction) throws RemoteException {
+        client.submit(LocalServerProxy.copyOf(auction));
+    }
+
+    @Override
+    public String getName() throws RemoteException {
+        return client.getName();
+    }
+
+    @Override
+    public void setName(String name) throws RemoteException {
+        client.setName(name);
+    }
+
+    @Override
+    public String getIdentifier() throws RemoteException {
+        return client.getIdentifier();
+    }
+
+    @Override
+    public ClientBean getIdentity() throws RemoteException {
+        return client.getIdentity();
+    }
+
+    @Override
+    public ClientState getState(UUID auctionId) throws RemoteException {
+        return client.getState(auctionId);
+    }
+
+    @Override
+    public void setState(UUID auctionId, ClientState newState) throws RemoteException {
+        client.setState(auctionId, newState);
+    }
+
+    @Override
+    public boolean getIsSeller(UUID auctionId) throws RemoteException {
+        return client.getIsSeller(auctionId);
+    }
+
+    @Override
+    public void setIsSeller(UUID auctionId, boolean v) throws RemoteException {
+        client.setIsSeller(auctionId, v);
+    }
+
+    /**
+     * @return The number of callbacks waiting for the client
+     */
+    synchronized int queued() {
+        return callbacks.size();
+    }
+
+    /**
+     * Queue a callback
+     * @param price True if the callback is a price, which may be dropped : the next price of the auction carries
+     *              its state, and the client resyncs on the gap
+     */
+    private synchronized void enqueue(Callback callback, boolean price) {
+        if (closed) {
+            return;
+        }
+        if (callbacks.size() >= capacity) {
+            long now = System.currentTimeMillis();
+            if (saturatedSince == 0) {
+                saturatedSince = now;
+            } else if (now - saturatedSince > saturationTimeout) {
+                LOGGER.warning("The callbacks of a client are saturated : " + client + "\n");
+                closed = true;
+                callbacks.clear();
+                reportSaturated();
+                return;
+            }
+            if (price) {
+                return;
+            }
+        }
+
+        callbacks.add(callback);
+        if (!scheduled) {
+            scheduled = true;
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Disconnect asynchronously the client from the server : the callbacks are queued by the threads of the server
+     */
+    private void reportSaturated() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.disconnect(LocalClient.this);
+                } catch (RemoteException e) {
+                    LOGGER.warning("Unable to disconnect a saturated client : " + e.getMessage() + "\n");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a batch of callbacks, then give the thread to the other clients
+     */
+    @Override
+    public void run() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Callback callback;
+            synchronized (this) {
+                callback = callbacks.poll();
+                if (callback == null) {
+                    // The client has caught up
+                    scheduled = false;
+                    saturatedSince = 0;
+                    return;
+                }
+            }
+            try {
+                callback.call(client);
+            } catch (Exception e) {
+                LOGGER.warning("A callback has failed : " + e + "\n");
+            }
+        }
+        synchronized (this) {
+            if (callbacks.isEmpty()) {
+                scheduled = false;
+                saturatedSince = 0;
+            } else {
+                executor.execute(this);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LocalClient[" + client + "]";
+    }
+}
@@ -0,0 +1,184 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.server.IRelay;
+import com.alma.pay2bid.server.IServer;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * A connection of the in-VM transport : the calls are made directly on the server, with the client which has
+ * registered through this connection.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class LocalServerProxy implements IServer {
+
+    private final IServer server;
+    private final Executor executor;
+    private volatile LocalClient client;
+
+    LocalServerProxy(IServer server, Executor executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    @Override
+    public void placeAuction(AuctionBean auction) throws RemoteException {
+        server.placeAuction(copyOf(auction));
+    }
+
+    @Override
+    public AuctionSnapshot register(IClient client) throws RemoteException, InterruptedException {
+        // The snapshot is built for this call only, and its summaries are never modified
+        return server.register(attach(client));
+    }
+
+    @Override
+    public void reattach(IClient client) throws RemoteException, InterruptedException {
+        server.reattach(attach(client));
+    }
+
+    @Override
+    public AuctionSnapshot registerRelayed(IClient client, ClientBean identity, IRelay relay)
+            throws RemoteException, InterruptedException {
+        // The client is called by his relay, not by this transport
+        return server.registerRelayed(client, identity, relay);
+    }
+
+    private LocalClient attach(IClient client) {
+        this.client = new LocalClient(client, server, executor);
+        try {
+            // The client is only called through the transport : it does not need to stay exported to RMI
+            UnicastRemoteObject.unexportObject(client, true);
+        } catch (NoSuchObjectException e) {
+            // The client was not exported
+        }
+        return this.client;
+    }
+
+    @Override
+    public void subscribe(IClient client, Topic topic) throws RemoteException {
+        server.subscribe(localOf(client), topic);
+    }
+
+    @Override
+    public void unsubscribe(IClient client, Topic topic) throws RemoteException {
+        server.unsubscribe(localOf(client), topic);
+    }
+
+    @Override
+    public void renewLease(IClient client) throws RemoteException {
+        server.renewLease(localOf(client));
+    }
+
+    @Override
+    public void disconnect(IClient client) throws RemoteException, InterruptedException {
+        server.disconnect(localOf(client));
+    }
+
+    @Override
+    public void raiseBid(UUID auctionId, IClient client, int newBid) throws RemoteException {
+        server.raiseBid(auctionId, localOf(client), newBid);
+    }
+
+    @Override
+    public void timeElapsed(UUID auctionId, IClient client) throws RemoteException, InterruptedException {
+        server.timeElapsed(auctionId, localOf(client));
+    }
+
+    @Override
+    public void clientDisconnection(IClient client) throws RemoteException, InterruptedException {
+        server.clientDisconnection(localOf(client));
+    }
+
+    @Override
+    public void clientsCrashed(List<IClient> clientsCrashed) throws RemoteException {
+        List<IClient> crashed = new ArrayList<IClient>(clientsCrashed.size());
+        for (IClient crashedClient : clientsCrashed) {
+            crashed.add(localOf(crashedClient));
+        }
+        server.clientsCrashed(crashed);
+    }
+
+    @Override
+    public IClient getWinner(UUID auctionId) throws RemoteException {
+        IClient winner = server.getWinner(auctionId);
+        return winner instanceof LocalClient ? ((LocalClient) winner).getClient() : winner;
+    }
+
+    @Override
+    public AuctionBean getAuction(UUID auctionId) throws RemoteException {
+        AuctionBean auction = server.getAuction(auctionId);
+        return auction == null ? null : copyOf(auction);
+    }
+
+    @Override
+    public AuctionDetails getAuctionDetails(UUID auctionId, int offset) throws RemoteException {
+        // The details are never modified once built
+        return server.getAuctionDetails(auctionId, offset);
+    }
+
+    @Override
+    public AuctionStatus resync(UUID auctionId) throws RemoteException {
+        AuctionStatus status = server.resync(auctionId);
+        return status == null ? null : new AuctionStatus(copyOf(status.getAuction()), status.getSequence(),
+                status.getWinner(), status.isCompleted());
+    }
+
+    @Override
+    public List<AuctionBean> search(AuctionQuery query) throws RemoteException {
+        List<AuctionBean> auctions = new ArrayList<AuctionBean>();
+        for (AuctionBean auction : server.search(query)) {
+            auctions.add(copyOf(auction));
+        }
+        return auctions;
+    }
+
+    @Override
+    public AuctionPage listAuctions(long sinceVersion, int pageSize) throws RemoteException {
+        AuctionPage page = server.listAuctions(sinceVersion, pageSize);
+        AuctionPage copy = new AuctionPage(page.getVersion());
+        copy.setMore(page.hasMore());
+        copy.setReset(page.isReset());
+        for (AuctionBean auction : page.getAuctions()) {
+            copy.getAuctions().add(copyOf(auction));
+        }
+        copy.getRemoved().addAll(page.getRemoved());
+        return copy;
+    }
+
+    /**
+     * The client registered through this connection stands for the client given to a call
+     */
+    private IClient localOf(IClient caller) {
+        LocalClient local = client;
+        return local != null && local.getClient() == caller ? local : caller;
+    }
+
+    /**
+     * Copy a bean crossing the transport, as a remote call would do
+     */
+    static AuctionBean copyOf(AuctionBean auction) {
+        AuctionBean copy = new AuctionBean(auction.getPrice(), auction.getName(),
+                auction.getDescription(), auction.getSeller());
+        copy.setUuid(auction.getUuid());
+        copy.setCategory(auction.getCategory());
+        return copy;
+    }
+}
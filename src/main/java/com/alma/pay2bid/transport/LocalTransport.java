@@ -0,0 +1,67 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.server.IServer;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The in-VM transport, to run a server and many clients in a single JVM : the calls are made directly on the
+ * objects, without stubs nor marshalling. The callbacks of each client are run in order on a pool of threads
+ * shared by all the clients, so the server never runs the code of a client on its own threads.
+ * <p>
+ * The beans crossing the transport are copied, as a remote call would do, so a client never shares the beans
+ * of the server nor of another client.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class LocalTransport implements Transport {
+
+    private static final int CALLBACK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final ExecutorService executor;
+    private volatile IServer server;
+
+    public LocalTransport() {
+        this(CALLBACK_THREADS);
+    }
+
+    /**
+     * @param nbThreads Number of threads running the callbacks of the clients
+     */
+    public LocalTransport(int nbThreads) {
+        executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "local-callbacks-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void serve(IServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public IServer connect() throws IOException {
+        if (server == null) {
+            throw new RemoteException("No server is served through this transport");
+        }
+        return new LocalServerProxy(server, executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
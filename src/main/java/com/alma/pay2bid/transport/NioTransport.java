@@ -0,0 +1,47 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.server.IServer;
+import com.alma.pay2bid.transport.nio.NioServer;
+import com.alma.pay2bid.transport.nio.NioServerProxy;
+
+import java.io.IOException;
+
+/**
+ * The NIO transport : a framed binary protocol on a single connection per client
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class NioTransport implements Transport {
+
+    private final String host;
+    private final int port;
+    private NioServer nioServer;
+
+    /**
+     * @param host The host of the server
+     * @param port The port of the server
+     */
+    public NioTransport(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void serve(IServer server) throws IOException {
+        nioServer = new NioServer(server, port);
+        nioServer.start();
+    }
+
+    @Override
+    public IServer connect() throws IOException {
+        return new NioServerProxy(host, port);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (nioServer != null) {
+            nioServer.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.server.IServer;
+
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * The RMI transport : the server is bound in a registry, and the clients call it through its stub
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class RmiTransport implements Transport {
+
+    private static final String NAME = "com.alma.pay2bid.server.Server";
+
+    private final String host;
+    private final int port;
+    private Registry registry;
+
+    /**
+     * @param host The host of the registry
+     * @param port The port of the registry
+     */
+    public RmiTransport(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void serve(IServer server) throws IOException {
+        bind(NAME, server);
+    }
+
+    /**
+     * Bind an object in the registry, which is created by the first binding
+     * @param name The name of the object
+     * @param object The object
+     * @throws IOException If the registry cannot be created
+     */
+    public synchronized void bind(String name, Remote object) throws IOException {
+        if (registry == null) {
+            registry = LocateRegistry.createRegistry(port);
+        }
+        registry.rebind(name, object);
+    }
+
+    /**
+     * Look up an object bound in the registry
+     * @param name The name of the object
+     * @return The stub of the object
+     * @throws IOException If the object cannot be reached
+     */
+    public Remote lookup(String name) throws IOException {
+        try {
+            return LocateRegistry.getRegistry(host, port).lookup(name);
+        } catch (NotBoundException e) {
+            throw new RemoteException("Nothing is bound in the registry as " + name, e);
+        }
+    }
+
+    @Override
+    public IServer connect() throws IOException {
+        return (IServer) lookup(NAME);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (registry != null) {
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+}
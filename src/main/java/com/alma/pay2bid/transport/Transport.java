@@ -0,0 +1,31 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.server.IServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The way the clients reach a server : the server is served through a transport, and each client connects to it
+ * through the same transport. The client given to the server is the one which calls IServer.register on the
+ * connection.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Make a server reachable by the clients of this transport
+     * @param server The server
+     * @throws IOException If the server cannot be served
+     */
+    void serve(IServer server) throws IOException;
+
+    /**
+     * Connect a client to the server
+     * @return The server, as seen by the client
+     * @throws IOException If the server cannot be reached
+     */
+    IServer connect() throws IOException;
+}
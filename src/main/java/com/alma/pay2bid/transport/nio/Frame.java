@@ -0,0 +1,37 @@
+package com.alma.pay2bid.transport.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+/**
+ * A frame received from a connection
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class Frame {
+    private final int requestId;
+    private final byte op;
+    private final DataInputStream payload;
+
+    /**
+     * @param body The frame, without its length
+     */
+    Frame(byte[] body) {
+        this.requestId = ((body[0] & 0xff) << 24) | ((body[1] & 0xff) << 16) | ((body[2] & 0xff) << 8) | (body[3] & 0xff);
+        this.op = body[4];
+        this.payload = new DataInputStream(new ByteArrayInputStream(body, 5, body.length - 5));
+    }
+
+    int getRequestId() {
+        return requestId;
+    }
+
+    byte getOp() {
+        return op;
+    }
+
+    DataInputStream getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,48 @@
+package com.alma.pay2bid.transport.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds a frame : the header is written first, then the payload, and the length is filled in at the end
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class FrameOutput extends DataOutputStream {
+
+    private final int requestId;
+
+    /**
+     * @param requestId Id of the request, or Protocol.PUSH_ID for an event pushed by the server
+     * @param op The operation
+     */
+    FrameOutput(int requestId, byte op) {
+        super(new ByteArrayOutputStream(64));
+        this.requestId = requestId;
+        try {
+            writeInt(0);
+            writeInt(requestId);
+            writeByte(op);
+        } catch (IOException e) {
+            // Writing in memory never fails
+            throw new IllegalStateException(e);
+        }
+    }
+
+    int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return The frame, ready to be written in a channel
+     */
+    ByteBuffer toBuffer() {
+        byte[] bytes = ((ByteArrayOutputStream) out).toByteArray();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(0, bytes.length - 4);
+        return buffer;
+    }
+}
@@ -0,0 +1,164 @@
+package com.alma.pay2bid.transport.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection accepted by the NIO server. It is read and written by the selector thread only :
+ * the other threads queue their frames, and the requests are processed in order, one at a time.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class NioConnection {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    private final NioServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final Queue<Frame> requests = new ArrayDeque<Frame>();
+    private boolean processing = false;
+    private volatile boolean closed = false;
+    private volatile RemoteClient client;
+
+    NioConnection(NioServer server, SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+    }
+
+    /**
+     * Read the available bytes. Must be called by the selector thread.
+     * @param frames Receives the complete frames
+     * @return False if the connection has been closed by the client
+     */
+    boolean read(List<Frame> frames) throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            return false;
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= 4) {
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length < 5 || length > Protocol.MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (readBuffer.remaining() < 4 + length) {
+                if (readBuffer.capacity() < 4 + length) {
+                    // The buffer grows for a frame larger than it
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    larger.put(readBuffer);
+                    readBuffer = larger;
+                    return true;
+                }
+                break;
+            }
+            readBuffer.getInt();
+            byte[] body = new byte[length];
+            readBuffer.get(body);
+            frames.add(new Frame(body));
+        }
+        readBuffer.compact();
+        return true;
+    }
+
+    /**
+     * Queue a frame. It is written by the selector thread.
+     * @param frame The frame
+     * @throws RemoteException If the connection is closed, or if the client does not read his frames
+     */
+    void send(ByteBuffer frame) throws RemoteException {
+        if (closed) {
+            throw new RemoteException("The connection is closed");
+        }
+        if (pendingBytes.addAndGet(frame.remaining()) > MAX_PENDING_BYTES) {
+            throw new RemoteException("The client does not read his connection");
+        }
+        writes.add(frame);
+        server.requestWrite(this);
+    }
+
+    /**
+     * Write the queued frames. Must be called by the selector thread.
+     */
+    void flush() throws IOException {
+        ByteBuffer frame;
+        while ((frame = writes.peek()) != null) {
+            int written = channel.write(frame);
+            pendingBytes.addAndGet(-written);
+            if (frame.hasRemaining()) {
+                // The socket is full : the selector will tell when it can be written again
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            writes.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Queue a request. It is processed after the previous requests of the connection.
+     * @return True if the caller must process the requests
+     */
+    synchronized boolean enqueue(Frame request) {
+        requests.add(request);
+        if (processing) {
+            return false;
+        }
+        processing = true;
+        return true;
+    }
+
+    /**
+     * @return The next request to process, or null if there is none
+     */
+    synchronized Frame nextRequest() {
+        Frame request = requests.poll();
+        if (request == null) {
+            processing = false;
+        }
+        return request;
+    }
+
+    boolean hasWrites() {
+        return !writes.isEmpty();
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    RemoteClient getClient() {
+        return client;
+    }
+
+    void setClient(RemoteClient client) {
+        this.client = client;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // The connection is dropped anyway
+        }
+    }
+}
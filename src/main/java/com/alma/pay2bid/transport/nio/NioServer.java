@@ -0,0 +1,347 @@
+package com.alma.pay2bid.transport.nio;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.server.IServer;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Serves an IServer through the NIO transport : a single selector thread accepts the connections, reads the
+ * requests and writes the responses and the events, while the requests are processed by a pool of workers.
+ * The requests of a connection are processed in order, and a client may send them without waiting for the responses.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class NioServer implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(NioServer.class.getCanonicalName());
+    private static final int WORKER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final IServer server;
+    private final int port;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Queue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<NioConnection>();
+    private final ExecutorService workers;
+    private Thread selectorThread;
+    private volatile boolean running = false;
+
+    /**
+     * Constructor
+     * @param server The server to serve
+     * @param port The port to listen
+     * @throws IOException If the port cannot be bound
+     */
+    public NioServer(IServer server, int port) throws IOException {
+        this.server = server;
+        this.port = port;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "nio-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start the selector thread. It keeps the JVM running until the server is closed.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                select();
+            }
+        }, "nio-selector");
+        selectorThread.start();
+        LOGGER.info("NIO transport listening on port " + port + "\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        workers.shutdown();
+        serverChannel.close();
+    }
+
+    /**
+     * Called by a connection which has frames to write
+     */
+    void requestWrite(NioConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    private void select() {
+        List<Frame> frames = new ArrayList<Frame>();
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                LOGGER.warning("The selector has failed : " + e.getMessage() + "\n");
+                break;
+            }
+
+            NioConnection writer;
+            while ((writer = pendingWrites.poll()) != null) {
+                if (!writer.isClosed()) {
+                    flush(writer);
+                }
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                NioConnection connection = (NioConnection) key.attachment();
+                if (key.isWritable()) {
+                    flush(connection);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    read(connection, frames);
+                }
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection) {
+                ((NioConnection) key.attachment()).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // The server is stopped anyway
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new NioConnection(this, channel, key));
+        } catch (IOException e) {
+            LOGGER.warning("Unable to accept a connection : " + e.getMessage() + "\n");
+        }
+    }
+
+    private void read(final NioConnection connection, List<Frame> frames) {
+        try {
+            if (!connection.read(frames)) {
+                closed(connection);
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Unable to read a connection : " + e.getMessage() + "\n");
+            closed(connection);
+        }
+        for (Frame frame : frames) {
+            if (connection.enqueue(frame)) {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        process(connection);
+                    }
+                });
+            }
+        }
+        frames.clear();
+    }
+
+    private void flush(NioConnection connection) {
+        try {
+            connection.flush();
+        } catch (IOException e) {
+            LOGGER.warning("Unable to write a connection : " + e.getMessage() + "\n");
+            closed(connection);
+        }
+    }
+
+    /**
+     * The connection has been closed : a client who has not left by himself is treated as crashed
+     */
+    private void closed(NioConnection connection) {
+        if (connection.isClosed()) {
+            return;
+        }
+        connection.close();
+        final RemoteClient client = connection.getClient();
+        // The connections closed by the shutdown of the transport are not crashes, and the workers are stopped
+        if (running && client != null && !client.isDisconnected()) {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        server.clientsCrashed(Collections.<IClient>singletonList(client));
+                    } catch (RemoteException e) {
+                        LOGGER.warning("Unable to remove a client : " + e.getMessage() + "\n");
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Process the requests of a connection, in order
+     */
+    private void process(NioConnection connection) {
+        Frame request;
+        while ((request = connection.nextRequest()) != null) {
+            FrameOutput response = new FrameOutput(request.getRequestId(), Protocol.RESPONSE);
+            try {
+                dispatch(connection, request, response);
+            } catch (Exception e) {
+                response = new FrameOutput(request.getRequestId(), Protocol.ERROR);
+                try {
+                    Protocol.writeString(response, String.valueOf(e.getMessage()));
+                } catch (IOException ignored) {
+                    // Writing in memory never fails
+                }
+            }
+            try {
+                connection.send(response.toBuffer());
+            } catch (RemoteException e) {
+                LOGGER.warning("Unable to answer a client : " + e.getMessage() + "\n");
+            }
+        }
+    }
+
+    private void dispatch(NioConnection connection, Frame request, FrameOutput response) throws Exception {
+        DataInputStream in = request.getPayload();
+        switch (request.getOp()) {
+            case Protocol.PLACE_AUCTION:
+                server.placeAuction(AuctionBean.readFrom(in));
+                break;
+            case Protocol.REGISTER:
+                server.register(attach(connection, in)).writeTo(response);
+                break;
+            case Protocol.REATTACH:
+                server.reattach(attach(connection, in));
+                break;
+            case Protocol.SUBSCRIBE:
+                server.subscribe(clientOf(connection), Protocol.readTopic(in));
+                break;
+            case Protocol.UNSUBSCRIBE:
+                server.unsubscribe(clientOf(connection), Protocol.readTopic(in));
+                break;
+            case Protocol.RENEW_LEASE:
+                server.renewLease(clientOf(connection));
+                break;
+            case Protocol.DISCONNECT:
+                RemoteClient leaving = clientOf(connection);
+                leaving.setDisconnected(true);
+                server.disconnect(leaving);
+                break;
+            case Protocol.RAISE_BID:
+                server.raiseBid(Protocol.readUuid(in), clientOf(connection), in.readInt());
+                break;
+            case Protocol.TIME_ELAPSED:
+                server.timeElapsed(Protocol.readUuid(in), clientOf(connection));
+                break;
+            case Protocol.CLIENT_DISCONNECTION:
+                RemoteClient disconnected = clientOf(connection);
+                disconnected.setDisconnected(true);
+                server.clientDisconnection(disconnected);
+                break;
+            case Protocol.GET_AUCTION:
+                Protocol.writeAuction(response, server.getAuction(Protocol.readUuid(in)));
+                break;
+            case Protocol.GET_DETAILS:
+                AuctionDetails details = server.getAuctionDetails(Protocol.readUuid(in), in.readInt());
+                response.writeBoolean(details != null);
+                if (details != null) {
+                    details.writeTo(response);
+                }
+                break;
+            case Protocol.RESYNC:
+                AuctionStatus status = server.resync(Protocol.readUuid(in));
+                response.writeBoolean(status != null);
+                if (status != null) {
+                    status.writeTo(response);
+                }
+                break;
+            case Protocol.SEARCH:
+                List<AuctionBean> auctions = server.search(Protocol.readQuery(in));
+                response.writeInt(auctions.size());
+                for (AuctionBean auction : auctions) {
+                    auction.writeTo(response);
+                }
+                break;
+            case Protocol.LIST_AUCTIONS:
+                Protocol.writePage(response, server.listAuctions(in.readLong(), in.readInt()));
+                break;
+            default:
+                throw new RemoteException("Unknown operation " + request.getOp());
+        }
+    }
+
+    /**
+     * Create the client of a connection from his identity
+     */
+    private static RemoteClient attach(NioConnection connection, DataInputStream in) throws IOException {
+        if (connection.getClient() != null) {
+            throw new RemoteException("The client is already registered");
+        }
+        RemoteClient client = new RemoteClient(connection, ClientBean.readFrom(in), Protocol.readString(in));
+        connection.setClient(client);
+        return client;
+    }
+
+    private static RemoteClient clientOf(NioConnection connection) throws RemoteException {
+        RemoteClient client = connection.getClient();
+        if (client == null) {
+            throw new RemoteException("The client is not registered");
+        }
+        return client;
+    }
+}
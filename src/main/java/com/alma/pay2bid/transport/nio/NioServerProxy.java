@@ -0,0 +1,414 @@
+package com.alma.pay2bid.transport.nio;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionDetails;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.bean.AuctionStatus;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.bean.Topic;
+import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.server.IRelay;
+import com.alma.pay2bid.server.IServer;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The client side of the NIO transport : an IServer whose calls are sent as frames on a single connection.
+ * Several threads may call the server at the same time, their requests are pipelined on the connection.
+ * The events pushed by the server are given in order to the client registered through this proxy.
+ * <p>
+ * A proxy serves a single client : the client given to the calls is the one which has registered.
+ * getWinner, clientsCrashed and registerRelayed are not available through this transport, the events already carry the winner.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class NioServerProxy implements IServer, Closeable {
+
+    /**
+     * A request waiting for its response
+     */
+    private static class PendingCall {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Frame response;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(NioServerProxy.class.getCanonicalName());
+    private static final long CALL_TIMEOUT = 30000;
+
+    private final SocketChannel channel;
+    private final ConcurrentMap<Integer, PendingCall> pendingCalls = new ConcurrentHashMap<Integer, PendingCall>();
+    private final AtomicInteger requestIds = new AtomicInteger();
+    private final ExecutorService events;
+    private volatile IClient client;
+    private volatile boolean closed = false;
+
+    /**
+     * Connect to a server served by a NioServer
+     * @param host The host of the server
+     * @param port The port of the server
+     * @throws IOException If the server cannot be reached
+     */
+    public NioServerProxy(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        events = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "nio-client-events");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readFrames();
+            }
+        }, "nio-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void placeAuction(AuctionBean auction) throws RemoteException {
+        FrameOutput request = request(Protocol.PLACE_AUCTION);
+        try {
+            auction.writeTo(request);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the request", e);
+        }
+        call(request);
+    }
+
+    @Override
+    public AuctionSnapshot register(IClient client) throws RemoteException {
+        DataInputStream response = attach(Protocol.REGISTER, client);
+        try {
+            return AuctionSnapshot.readFrom(response);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to decode the response", e);
+        }
+    }
+
+    @Override
+    public void reattach(IClient client) throws RemoteException {
+        attach(Protocol.REATTACH, client);
+    }
+
+    private DataInputStream attach(byte op, IClient client) throws RemoteException {
+        FrameOutput request = request(op);
+        try {
+            client.getIdentity().writeTo(request);
+            Protocol.writeString(request, client.getName());
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the request", e);
+        }
+        this.client = client;
+        return call(request);
+    }
+
+    @Override
+    public AuctionSnapshot registerRelayed(IClient client, ClientBean identity, IRelay relay)
+            throws RemoteException {
+        throw new RemoteException("registerRelayed is not available through the NIO transport");
+    }
+
+    @Override
+    public void subscribe(IClient client, Topic topic) throws RemoteException {
+        call(topicRequest(Protocol.SUBSCRIBE, topic));
+    }
+
+    @Override
+    public void unsubscribe(IClient client, Topic topic) throws RemoteException {
+        call(topicRequest(Protocol.UNSUBSCRIBE, topic));
+    }
+
+    private FrameOutput topicRequest(byte op, Topic topic) throws RemoteException {
+        FrameOutput request = request(op);
+        try {
+            Protocol.writeTopic(request, topic);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the request", e);
+        }
+        return request;
+    }
+
+    @Override
+    public void renewLease(IClient client) throws RemoteException {
+        call(request(Protocol.RENEW_LEASE));
+    }
+
+    @Override
+    public void disconnect(IClient client) throws RemoteException {
+        call(request(Protocol.DISCONNECT));
+    }
+
+    @Override
+    public void raiseBid(UUID auctionId, IClient client, int newBid) throws RemoteException {
+        FrameOutput request = request(Protocol.RAISE_BID);
+        try {
+            Protocol.writeUuid(request, auctionId);
+            request.writeInt(newBid);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the request", e);
+        }
+        call(request);
+    }
+
+    @Override
+    public void timeElapsed(UUID auctionId, IClient client) throws RemoteException {
+        FrameOutput request = request(Protocol.TIME_ELAPSED);
+        try {
+            Protocol.writeUuid(request, auctionId);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the request", e);
+        }
+        call(request);
+    }
+
+    @Override
+    public void clientDisconnection(IClient client) throws RemoteException {
+        call(request(Protocol.CLIENT_DISCONNECTION));
+    }
+
+    @Override
+    public void clientsCrashed(List<IClient> clientsCrashed) throws RemoteException {
+        throw new RemoteException("clientsCrashed is not available through the NIO transport");
+    }
+
+    @Override
+    public IClient getWinner(UUID auctionId) throws RemoteException {
+        throw new RemoteException("getWinner is not available through the NIO transport");
+    }
+
+    @Override
+    public AuctionBean getAuction(UUID auctionId) throws RemoteException {
+        FrameOutput request = request(Protocol.GET_AUCTION);
+        try {
+            Protocol.writeUuid(request, auctionId);
+            return Protocol.readAuction(call(request));
+        } catch (IOException e) {
+            throw new RemoteException("Unable to decode the response", e);
+        }
+    }
+
+    @Override
+    public AuctionDetails getAuctionDetails(UUID auctionId, int offset) throws RemoteException {
+        FrameOutput request = request(Protocol.GET_DETAILS);
+        try {
+            Protocol.writeUuid(request, auctionId);
+            request.writeInt(offset);
+            DataInputStream in = call(request);
+            return in.readBoolean() ? AuctionDetails.readFrom(in) : null;
+        } catch (IOException e) {
+            throw new RemoteException("Unable to decode the response", e);
+        }
+    }
+
+    @Override
+    public AuctionStatus resync(UUID auctionId) throws RemoteException {
+        FrameOutput request = request(Protocol.RESYNC);
+        try {
+            Protocol.writeUuid(request, auctionId);
+            DataInputStream response = call(request);
+            return response.readBoolean() ? AuctionStatus.readFrom(response) : null;
+        } catch (IOException e) {
+            throw new RemoteException("Unable to decode the response", e);
+        }
+    }
+
+    @Override
+    public List<AuctionBean> search(AuctionQuery query) throws RemoteException {
+        FrameOutput request = request(Protocol.SEARCH);
+        try {
+            Protocol.writeQuery(request, query);
+            DataInputStream response = call(request);
+            int size = response.readInt();
+            List<AuctionBean> auctions = new ArrayList<AuctionBean>(size);
+            for (int i = 0; i < size; i++) {
+                auctions.add(AuctionBean.readFrom(response));
+            }
+            return auctions;
+        } catch (IOException e) {
+            throw new RemoteException("Unable to decode the response", e);
+        }
+    }
+
+    @Override
+    public AuctionPage listAuctions(long sinceVersion, int pageSize) throws RemoteException {
+        FrameOutput request = request(Protocol.LIST_AUCTIONS);
+        try {
+            request.writeLong(sinceVersion);
+            request.writeInt(pageSize);
+            return Protocol.readPage(call(request));
+        } catch (IOException e) {
+            throw new RemoteException("Unable to decode the response", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+        events.shutdown();
+    }
+
+    private FrameOutput request(byte op) {
+        int requestId = requestIds.incrementAndGet();
+        if (requestId == Protocol.PUSH_ID) {
+            requestId = requestIds.incrementAndGet();
+        }
+        return new FrameOutput(requestId, op);
+    }
+
+    /**
+     * Send a request and wait for its response
+     * @return The payload of the response
+     */
+    private DataInputStream call(FrameOutput request) throws RemoteException {
+        if (closed) {
+            throw new RemoteException("The connection to the server is closed");
+        }
+        PendingCall pending = new PendingCall();
+        pendingCalls.put(request.getRequestId(), pending);
+        try {
+            ByteBuffer frame = request.toBuffer();
+            synchronized (channel) {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            }
+            if (!pending.done.await(CALL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new RemoteException("The server has not answered in time");
+            }
+        } catch (IOException e) {
+            throw new RemoteException("Unable to send the request", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for the server", e);
+        } finally {
+            pendingCalls.remove(request.getRequestId());
+        }
+
+        Frame response = pending.response;
+        if (response == null) {
+            throw new RemoteException("The connection to the server is closed");
+        }
+        if (response.getOp() == Protocol.ERROR) {
+            try {
+                throw new RemoteException(Protocol.readString(response.getPayload()));
+            } catch (IOException e) {
+                throw new RemoteException("The server has failed", e);
+            }
+        }
+        return response.getPayload();
+    }
+
+    private void readFrames() {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (true) {
+                header.clear();
+                readFully(header);
+                int length = header.getInt(0);
+                if (length < 5 || length > Protocol.MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(body);
+                Frame frame = new Frame(body.array());
+                if (frame.getRequestId() == Protocol.PUSH_ID) {
+                    push(frame);
+                } else {
+                    PendingCall pending = pendingCalls.get(frame.getRequestId());
+                    if (pending != null) {
+                        pending.response = frame;
+                        pending.done.countDown();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOGGER.warning("The connection to the server is lost : " + e.getMessage() + "\n");
+            }
+        }
+        closed = true;
+        // The calls still waiting are released without a response
+        for (PendingCall pending : pendingCalls.values()) {
+            pending.done.countDown();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+    }
+
+    /**
+     * Give an event to the client, after the previous events
+     */
+    private void push(final Frame event) {
+        events.execute(new Runnable() {
+            @Override
+            public void run() {
+                IClient target = client;
+                if (target == null) {
+                    return;
+                }
+                DataInputStream in = event.getPayload();
+                try {
+                    switch (event.getOp()) {
+                        case Protocol.NEW_AUCTION:
+                            target.newAuction(Protocol.readUuid(in), AuctionSummary.readFrom(in), in.readLong());
+                            break;
+                        case Protocol.BID_SOLD:
+                            target.bidSold(Protocol.readUuid(in), Protocol.readString(in), in.readLong());
+                            break;
+                        case Protocol.NEW_PRICE:
+                            target.newPrice(Protocol.readUuid(in), in.readInt(), Protocol.readString(in), in.readLong());
+                            break;
+                        case Protocol.UPDATE_PRICE:
+                            target.updatePrice(Protocol.readUuid(in), in.readInt(), Protocol.readString(in), in.readLong());
+                            break;
+                        case Protocol.ADD_WON_AUCTION:
+                            target.addWonAuction(AuctionBean.readFrom(in));
+                            break;
+                        case Protocol.AUCTION_LEFT:
+                            target.auctionLeft(Protocol.readUuid(in));
+                            break;
+                        default:
+                            LOGGER.warning("Unknown event " + event.getOp() + "\n");
+                    }
+                } catch (Exception e) {
+                    LOGGER.warning("An event has failed : " + e + "\n");
+                }
+            }
+        });
+    }
+}
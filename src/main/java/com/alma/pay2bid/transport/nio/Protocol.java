@@ -0,0 +1,172 @@
+package com.alma.pay2bid.transport.nio;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionPage;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.bean.Topic;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * The framed binary protocol of the NIO transport.
+ * <p>
+ * A frame is made of its length (an int, not counting itself), a request id (an int), an operation (a byte)
+ * and a payload. A client may send several requests without waiting : each response carries the id of its request.
+ * The events pushed by the server have the request id 0. The beans are written with their compact encodings,
+ * and the strings with their length like the beans.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+final class Protocol {
+
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    static final int PUSH_ID = 0;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The operations of IServer, sent by the client
+    static final byte PLACE_AUCTION = 1;
+    static final byte REGISTER = 2;
+    static final byte RENEW_LEASE = 3;
+    static final byte DISCONNECT = 4;
+    static final byte RAISE_BID = 5;
+    static final byte TIME_ELAPSED = 6;
+    static final byte CLIENT_DISCONNECTION = 7;
+    static final byte GET_AUCTION = 8;
+    static final byte RESYNC = 9;
+    static final byte SEARCH = 10;
+    static final byte LIST_AUCTIONS = 11;
+    static final byte REATTACH = 12;
+    static final byte SUBSCRIBE = 13;
+    static final byte UNSUBSCRIBE = 14;
+    static final byte GET_DETAILS = 15;
+
+    // The answers of the server
+    static final byte RESPONSE = 64;
+    static final byte ERROR = 65;
+
+    // The operations of IClient, pushed by the server
+    static final byte NEW_AUCTION = 96;
+    static final byte BID_SOLD = 97;
+    static final byte NEW_PRICE = 98;
+    static final byte UPDATE_PRICE = 99;
+    static final byte ADD_WON_AUCTION = 100;
+    static final byte AUCTION_LEFT = 101;
+
+    private Protocol() {
+    }
+
+    static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Write a string as its length in bytes, or -1 if it is null, followed by its UTF-8 encoding
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString
+     */
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid length of a string : " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static void writeAuction(DataOutput out, AuctionBean auction) throws IOException {
+        out.writeBoolean(auction != null);
+        if (auction != null) {
+            auction.writeTo(out);
+        }
+    }
+
+    static AuctionBean readAuction(DataInput in) throws IOException {
+        return in.readBoolean() ? AuctionBean.readFrom(in) : null;
+    }
+
+    static void writeQuery(DataOutput out, AuctionQuery query) throws IOException {
+        writeString(out, query.getText());
+        writeString(out, query.getSeller());
+        writeInteger(out, query.getMinPrice());
+        writeInteger(out, query.getMaxPrice());
+        out.writeInt(query.getLimit());
+    }
+
+    static AuctionQuery readQuery(DataInput in) throws IOException {
+        return new AuctionQuery(readString(in), readString(in), readInteger(in), readInteger(in), in.readInt());
+    }
+
+    static void writeTopic(DataOutput out, Topic topic) throws IOException {
+        out.writeByte(topic.getKind().ordinal());
+        writeString(out, topic.getKey());
+    }
+
+    static Topic readTopic(DataInput in) throws IOException {
+        return new Topic(Topic.Kind.values()[in.readByte()], readString(in));
+    }
+
+    static void writePage(DataOutput out, AuctionPage page) throws IOException {
+        out.writeLong(page.getVersion());
+        out.writeBoolean(page.hasMore());
+        out.writeBoolean(page.isReset());
+        out.writeInt(page.getAuctions().size());
+        for (AuctionBean auction : page.getAuctions()) {
+            auction.writeTo(out);
+        }
+        out.writeInt(page.getRemoved().size());
+        for (UUID auctionId : page.getRemoved()) {
+            writeUuid(out, auctionId);
+        }
+    }
+
+    static AuctionPage readPage(DataInput in) throws IOException {
+        AuctionPage page = new AuctionPage(in.readLong());
+        page.setMore(in.readBoolean());
+        page.setReset(in.readBoolean());
+        int nbAuctions = in.readInt();
+        for (int i = 0; i < nbAuctions; i++) {
+            page.getAuctions().add(AuctionBean.readFrom(in));
+        }
+        int nbRemoved = in.readInt();
+        for (int i = 0; i < nbRemoved; i++) {
+            page.getRemoved().add(readUuid(in));
+        }
+        return page;
+    }
+
+    private static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
@@ -0,0 +1,170 @@
+package com.alma.pay2bid.transport.nio;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.client.ClientState;
+import com.alma.pay2bid.client.IClient;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.UUID;
+
+/**
+ * A client connected through the NIO transport, as seen by the server.
+ * Its identity is sent when it registers; the callbacks of the server are pushed on its connection without waiting.
+ * The server never calls the other methods of a client, which are not available through this transport.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class RemoteClient implements IClient {
+    private static final long serialVersionUID = 1L;
+
+    private final transient NioConnection connection;
+    private final ClientBean identity;
+    private final String name;
+    private volatile boolean disconnected = false;
+
+    RemoteClient(NioConnection connection, ClientBean identity, String name) {
+        this.connection = connection;
+        this.identity = identity;
+        this.name = name;
+    }
+
+    @Override
+    public void newAuction(UUID auctionId, AuctionSummary auction, long sequence) throws RemoteException {
+        FrameOutput event = new FrameOutput(Protocol.PUSH_ID, Protocol.NEW_AUCTION);
+        try {
+            Protocol.writeUuid(event, auctionId);
+            auction.writeTo(event);
+            event.writeLong(sequence);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the event", e);
+        }
+        connection.send(event.toBuffer());
+    }
+
+    @Override
+    public void bidSold(UUID auctionId, String buyer, long sequence) throws RemoteException {
+        FrameOutput event = new FrameOutput(Protocol.PUSH_ID, Protocol.BID_SOLD);
+        try {
+            Protocol.writeUuid(event, auctionId);
+            Protocol.writeString(event, buyer);
+            event.writeLong(sequence);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the event", e);
+        }
+        connection.send(event.toBuffer());
+    }
+
+    @Override
+    public void newPrice(UUID auctionId, int price, String winner, long sequence) throws RemoteException {
+        pushPrice(Protocol.NEW_PRICE, auctionId, price, winner, sequence);
+    }
+
+    @Override
+    public void updatePrice(UUID auctionId, int price, String winner, long sequence) throws RemoteException {
+        pushPrice(Protocol.UPDATE_PRICE, auctionId, price, winner, sequence);
+    }
+
+    private void pushPrice(byte op, UUID auctionId, int price, String winner, long sequence) throws RemoteException {
+        FrameOutput event = new FrameOutput(Protocol.PUSH_ID, op);
+        try {
+            Protocol.writeUuid(event, auctionId);
+            event.writeInt(price);
+            Protocol.writeString(event, winner);
+            event.writeLong(sequence);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the event", e);
+        }
+        connection.send(event.toBuffer());
+    }
+
+    @Override
+    public void auctionLeft(UUID auctionId) throws RemoteException {
+        FrameOutput event = new FrameOutput(Protocol.PUSH_ID, Protocol.AUCTION_LEFT);
+        try {
+            Protocol.writeUuid(event, auctionId);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the event", e);
+        }
+        connection.send(event.toBuffer());
+    }
+
+    @Override
+    public void addWonAuction(AuctionBean auction) throws RemoteException {
+        FrameOutput event = new FrameOutput(Protocol.PUSH_ID, Protocol.ADD_WON_AUCTION);
+        try {
+            auction.writeTo(event);
+        } catch (IOException e) {
+            throw new RemoteException("Unable to encode the event", e);
+        }
+        connection.send(event.toBuffer());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return identity.getIdentifier();
+    }
+
+    @Override
+    public ClientBean getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return True if the client has left the server by himself
+     */
+    boolean isDisconnected() {
+        return disconnected;
+    }
+
+    void setDisconnected(boolean disconnected) {
+        this.disconnected = disconnected;
+    }
+
+    @Override
+    public void submit(AuctionBean auction) throws RemoteException {
+        throw unavailable("submit");
+    }
+
+    @Override
+    public void setName(String name) throws RemoteException {
+        throw unavailable("setName");
+    }
+
+    @Override
+    public ClientState getState(UUID auctionId) throws RemoteException {
+        throw unavailable("getState");
+    }
+
+    @Override
+    public void setState(UUID auctionId, ClientState newState) throws RemoteException {
+        throw unavailable("setState");
+    }
+
+    @Override
+    public boolean getIsSeller(UUID auctionId) throws RemoteException {
+        throw unavailable("getIsSeller");
+    }
+
+    @Override
+    public void setIsSeller(UUID auctionId, boolean v) throws RemoteException {
+        throw unavailable("setIsSeller");
+    }
+
+    private static RemoteException unavailable(String method) {
+        return new RemoteException(method + " is not available through the NIO transport");
+    }
+
+    @Override
+    public String toString() {
+        return "NioClient[" + identity.getIdentifier() + "]";
+    }
+}
@@ -0,0 +1,202 @@
+package com.alma.pay2bid.bean;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The beans are read back as they were written, with their hand-written encodings and through a serialization stream
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class BeanEncodingTest {
+
+    private static byte[] encode(AuctionBean auction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        auction.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T serialize(T bean) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(bean);
+        out.close();
+        return (T) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    private static AuctionBean auction() {
+        AuctionBean auction = new AuctionBean(42, "book", "A book about auctions", "seller");
+        auction.setUuid(UUID.randomUUID());
+        auction.setCategory("books");
+        return auction;
+    }
+
+    private static void assertSameAuction(AuctionBean expected, AuctionBean actual) {
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getSeller(), actual.getSeller());
+        assertEquals(expected.getCategory(), actual.getCategory());
+    }
+
+    @Test
+    public void auctionIsReadAsWritten() throws Exception {
+        AuctionBean auction = auction();
+        assertSameAuction(auction, AuctionBean.readFrom(input(encode(auction))));
+        assertSameAuction(auction, serialize(auction));
+    }
+
+    @Test
+    public void absentFieldsAreNotWritten() throws Exception {
+        AuctionBean empty = new AuctionBean(0, null, null, null);
+        AuctionBean read = AuctionBean.readFrom(input(encode(empty)));
+        assertNull(read.getUuid());
+        assertNull(read.getName());
+        assertNull(read.getDescription());
+        assertNull(read.getSeller());
+        assertNull(read.getCategory());
+
+        // The version, the flags and the price
+        assertEquals(6, encode(empty).length);
+        assertTrue(encode(auction()).length > 6 + 16);
+    }
+
+    @Test
+    public void modifiedAuctionIsEncodedAgain() throws Exception {
+        AuctionBean auction = auction();
+        encode(auction);
+        auction.setPrice(100);
+        auction.setCategory(null);
+        AuctionBean read = AuctionBean.readFrom(input(encode(auction)));
+        assertEquals(100, read.getPrice());
+        assertNull(read.getCategory());
+    }
+
+    @Test
+    public void stringsLongerThan64KBAreWritten() throws Exception {
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 100000) {
+            description.append("A long description \u00e9\u20ac. ");
+        }
+        AuctionBean auction = auction();
+        auction.setDescription(description.toString());
+        assertSameAuction(auction, AuctionBean.readFrom(input(encode(auction))));
+        assertSameAuction(auction, serialize(auction));
+    }
+
+    @Test
+    public void unknownFormatIsRejected() throws Exception {
+        byte[] bytes = encode(auction());
+        bytes[0] = 99;
+        try {
+            AuctionBean.readFrom(input(bytes));
+            fail("An unknown format should be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("AuctionBean"));
+        }
+    }
+
+    @Test
+    public void clientIsReadAsWritten() throws Exception {
+        ClientBean client = new ClientBean(UUID.randomUUID(), "alice", "secret", "alice#1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        client.writeTo(new DataOutputStream(bytes));
+        ClientBean read = ClientBean.readFrom(input(bytes.toByteArray()));
+        assertEquals(client.getUuid(), read.getUuid());
+        assertEquals("alice", read.getLogin());
+        assertEquals("secret", read.getPassword());
+        assertEquals("alice#1", read.getIdentifier());
+
+        ClientBean serialized = serialize(new ClientBean(UUID.randomUUID(), "bob", null, "bob"));
+        assertEquals("bob", serialized.getLogin());
+        assertNull(serialized.getPassword());
+    }
+
+    @Test
+    public void summaryIsReadAsWritten() throws Exception {
+        AuctionBean auction = auction();
+        AuctionSummary summary = AuctionSummary.of(auction, 7);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.writeTo(new DataOutputStream(bytes));
+        AuctionSummary read = AuctionSummary.readFrom(input(bytes.toByteArray()));
+        assertEquals(auction.getUuid(), read.getUuid());
+        assertEquals("book", read.getName());
+        assertEquals("seller", read.getSeller());
+        assertEquals(42, read.getPrice());
+        assertEquals(7, read.getVersion());
+        assertEquals(7, serialize(summary).getVersion());
+    }
+
+    @Test
+    public void statusIsReadAsWritten() throws Exception {
+        AuctionBean auction = auction();
+        AuctionStatus status = serialize(new AuctionStatus(auction, 12, "alice", true));
+        assertSameAuction(auction, status.getAuction());
+        assertEquals(auction.getUuid(), status.getUuid());
+        assertEquals(12, status.getSequence());
+        assertEquals("alice", status.getWinner());
+        assertTrue(status.isCompleted());
+
+        AuctionStatus withoutWinner = serialize(new AuctionStatus(auction, 1, null, false));
+        assertNull(withoutWinner.getWinner());
+        assertFalse(withoutWinner.isCompleted());
+    }
+
+    @Test
+    public void detailsAreReadAsWritten() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        AuctionDetails details = serialize(new AuctionDetails(uuid, "books", "A book", 0, 20));
+        assertEquals(uuid, details.getUuid());
+        assertEquals("books", details.getCategory());
+        assertEquals("A book", details.getDescription());
+        assertEquals(0, details.getOffset());
+        assertEquals(20, details.getLength());
+        assertTrue(details.hasMore());
+        assertFalse(serialize(new AuctionDetails(uuid, null, "A book", 0, 6)).hasMore());
+    }
+
+    @Test
+    public void snapshotIsReadAsWritten() throws Exception {
+        AuctionBean auction = auction();
+        AuctionSnapshot snapshot = new AuctionSnapshot();
+        snapshot.add(new AuctionSnapshot.Entry(AuctionSummary.of(auction, 3), 5, "alice", 1000));
+        snapshot.add(new AuctionSnapshot.Entry(AuctionSummary.of(auction(), 4), 0, null, 0));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        AuctionSnapshot read = AuctionSnapshot.readFrom(input(bytes.toByteArray()));
+        assertEquals(2, read.getEntries().size());
+        AuctionSnapshot.Entry entry = read.getEntries().get(0);
+        assertEquals(auction.getUuid(), entry.getUuid());
+        assertEquals(3, entry.getSummary().getVersion());
+        assertEquals(5, entry.getSequence());
+        assertEquals("alice", entry.getWinner());
+        assertEquals(1000, entry.getRemainingTime());
+        assertNull(read.getEntries().get(1).getWinner());
+
+        assertEquals(2, serialize(snapshot).getEntries().size());
+    }
+}
@@ -0,0 +1,92 @@
+package com.alma.pay2bid.bean;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Size and cost of an auction in a serialization stream, as each RMI call writes it : with the hand-written encoding
+ * of AuctionBean, and with the default serialization of the same fields, as the beans were sent before
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class SerializationBenchmark {
+    private static final int ITERATIONS = 100000;
+
+    /**
+     * The fields of an auction, with the default serialization
+     */
+    private static class DefaultAuctionBean implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private UUID uuid;
+        private int price;
+        private String name;
+        private String description;
+        private String seller;
+        private String category;
+    }
+
+    private static byte[] serialize(Object bean) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(bean);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+
+    /**
+     * @return The time of a serialization followed by a deserialization, in nanoseconds
+     */
+    private static long measure(Object bean) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += deserialize(serialize(bean)).hashCode();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += deserialize(serialize(bean)).hashCode();
+        }
+        long elapsed = (System.nanoTime() - start) / ITERATIONS;
+        return sink == 42 ? 0 : elapsed;
+    }
+
+    @Test
+    public void auctionEncodings() throws Exception {
+        AuctionBean auction = new AuctionBean(42, "An old book", "A book about the auction houses of the 19th century",
+                "seller#1234");
+        auction.setUuid(UUID.randomUUID());
+        auction.setCategory("books");
+
+        DefaultAuctionBean former = new DefaultAuctionBean();
+        former.uuid = auction.getUuid();
+        former.price = auction.getPrice();
+        former.name = auction.getName();
+        former.description = auction.getDescription();
+        former.seller = auction.getSeller();
+        former.category = auction.getCategory();
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        auction.writeTo(new DataOutputStream(raw));
+        AuctionSummary summary = AuctionSummary.of(auction, 1);
+
+        System.out.println(String.format("Default serialization : %4d B, %6d ns", serialize(former).length,
+                measure(former)));
+        System.out.println(String.format("AuctionBean           : %4d B, %6d ns (%d B outside of a stream)",
+                serialize(auction).length, measure(auction), raw.size()));
+        System.out.println(String.format("AuctionSummary        : %4d B, %6d ns", serialize(summary).length,
+                measure(summary)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionQuery;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Latency of the searches among 1 000 000 running auctions : by a rare word, by a common word, by seller,
+ * by price range and by a word within a price range
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionIndexBenchmark {
+    private static final int AUCTIONS = 1000000;
+    private static final int WORDS = 10000;
+    private static final int SELLERS = 5000;
+    private static final int SEARCHES = 10000;
+    private static final int LIMIT = 20;
+    private static final Random RANDOM = new Random(42);
+
+    @Test
+    public void searchAmong1MAuctions() {
+        AuctionIndex index = new AuctionIndex();
+        long start = System.nanoTime();
+        for (int i = 0; i < AUCTIONS; i++) {
+            // The words follow a skewed distribution : the first ones are in most of the auctions
+            AuctionBean auction = new AuctionBean(RANDOM.nextInt(100000), word(skewed()) + " " + word(skewed()),
+                    "An item " + word(RANDOM.nextInt(WORDS)), "seller" + RANDOM.nextInt(SELLERS));
+            auction.setUuid(UUID.randomUUID());
+            index.add(auction);
+        }
+        System.out.println(AUCTIONS + " auctions indexed in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        measure(index, "a rare word", new Query() {
+            @Override
+            public AuctionQuery next() {
+                return new AuctionQuery(word(WORDS / 2 + RANDOM.nextInt(WORDS / 2)), null, null, null, LIMIT);
+            }
+        });
+        measure(index, "a common word", new Query() {
+            @Override
+            public AuctionQuery next() {
+                return new AuctionQuery(word(RANDOM.nextInt(10)), null, null, null, LIMIT);
+            }
+        });
+        measure(index, "a seller", new Query() {
+            @Override
+            public AuctionQuery next() {
+                return new AuctionQuery(null, "seller" + RANDOM.nextInt(SELLERS), null, null, LIMIT);
+            }
+        });
+        measure(index, "a price range", new Query() {
+            @Override
+            public AuctionQuery next() {
+                int minPrice = RANDOM.nextInt(100000);
+                return new AuctionQuery(null, null, minPrice, minPrice + 1000, LIMIT);
+            }
+        });
+        measure(index, "a word within a price range", new Query() {
+            @Override
+            public AuctionQuery next() {
+                int minPrice = RANDOM.nextInt(100000);
+                return new AuctionQuery(word(RANDOM.nextInt(WORDS)), null, minPrice, minPrice + 10000, LIMIT);
+            }
+        });
+    }
+
+    private interface Query {
+        AuctionQuery next();
+    }
+
+    private static void measure(AuctionIndex index, String criterion, Query query) {
+        // Warm up
+        long sink = 0;
+        for (int i = 0; i < SEARCHES; i++) {
+            sink += index.search(query.next()).size();
+        }
+
+        AuctionQuery[] queries = new AuctionQuery[SEARCHES];
+        for (int i = 0; i < SEARCHES; i++) {
+            queries[i] = query.next();
+        }
+        long start = System.nanoTime();
+        for (AuctionQuery next : queries) {
+            sink += index.search(next).size();
+        }
+        long elapsed = (System.nanoTime() - start) / SEARCHES;
+        System.out.println("Search by " + criterion + " : " + elapsed / 1000.0 + " us (" + sink / (2 * SEARCHES)
+                + " results)");
+    }
+
+    private static int skewed() {
+        // Half of the draws fall on the first 1 % of the words
+        return RANDOM.nextBoolean() ? RANDOM.nextInt(WORDS / 100) : RANDOM.nextInt(WORDS);
+    }
+
+    private static String word(int i) {
+        return "word" + i;
+    }
+}
@@ -0,0 +1,112 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionQuery;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The index finds the running auctions by the words of their name and description, by seller and by price,
+ * and stays up to date when their price changes and when they are completed
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionIndexTest {
+    private AuctionIndex index;
+    private AuctionBean lamp;
+    private AuctionBean redLamp;
+    private AuctionBean chair;
+
+    @Before
+    public void setUp() {
+        index = new AuctionIndex();
+        lamp = auction(10, "Desk lamp", "A lamp for the desk", "alice");
+        redLamp = auction(30, "Red LAMP", "A red lamp, with its bulb", "bob");
+        chair = auction(20, "Chair", "A wooden chair", "alice");
+        index.add(lamp);
+        index.add(redLamp);
+        index.add(chair);
+    }
+
+    private static AuctionBean auction(int price, String name, String description, String seller) {
+        AuctionBean auction = new AuctionBean(price, name, description, seller);
+        auction.setUuid(UUID.randomUUID());
+        return auction;
+    }
+
+    private List<UUID> search(String text, String seller, Integer minPrice, Integer maxPrice, int limit) {
+        return index.search(new AuctionQuery(text, seller, minPrice, maxPrice, limit));
+    }
+
+    private static void assertFound(List<UUID> found, AuctionBean... expected) {
+        assertEquals(expected.length, found.size());
+        HashSet<UUID> uuids = new HashSet<UUID>();
+        for (AuctionBean auction : expected) {
+            uuids.add(auction.getUuid());
+        }
+        assertEquals(uuids, new HashSet<UUID>(found));
+    }
+
+    @Test
+    public void wordsAreFoundWhateverTheirCase() {
+        assertFound(search("lamp", null, null, null, 0), lamp, redLamp);
+        assertFound(search("LAMP!", null, null, null, 0), lamp, redLamp);
+        assertFound(search("wooden", null, null, null, 0), chair);
+        assertFound(search("piano", null, null, null, 0));
+    }
+
+    @Test
+    public void everyWordOfTheQueryMustMatch() {
+        assertFound(search("red lamp", null, null, null, 0), redLamp);
+        assertFound(search("red chair", null, null, null, 0));
+    }
+
+    @Test
+    public void sellerIsCombinedWithTheWords() {
+        assertFound(search(null, "alice", null, null, 0), lamp, chair);
+        assertFound(search("lamp", "alice", null, null, 0), lamp);
+        assertFound(search(null, "carol", null, null, 0));
+    }
+
+    @Test
+    public void priceRangeIsInclusiveAndSorted() {
+        assertEquals(Arrays.asList(lamp.getUuid(), chair.getUuid()), search(null, null, 10, 20, 0));
+        assertEquals(Arrays.asList(chair.getUuid(), redLamp.getUuid()), search(null, null, 15, null, 0));
+        assertFound(search("lamp", null, null, 25, 0), lamp);
+        assertFound(search(null, null, 30, 10, 0));
+    }
+
+    @Test
+    public void limitCutsTheResults() {
+        assertEquals(Arrays.asList(lamp.getUuid(), chair.getUuid()), search(null, null, null, null, 2));
+        assertEquals(1, search("lamp", null, null, null, 1).size());
+        assertEquals(1, search(null, "alice", null, null, 1).size());
+    }
+
+    @Test
+    public void changedPriceMovesTheAuction() {
+        index.priceChanged(lamp.getUuid(), 50);
+        assertEquals(Arrays.asList(chair.getUuid(), redLamp.getUuid(), lamp.getUuid()),
+                search(null, null, null, null, 0));
+        assertFound(search("lamp", null, 40, null, 0), lamp);
+        assertFound(search(null, null, null, 15, 0));
+    }
+
+    @Test
+    public void completedAuctionIsNotFound() {
+        index.remove(redLamp);
+        assertFound(search("lamp", null, null, null, 0), lamp);
+        assertFound(search("red", null, null, null, 0));
+        assertFound(search(null, "bob", null, null, 0));
+        assertTrue(search(null, null, 30, 30, 0).isEmpty());
+    }
+}
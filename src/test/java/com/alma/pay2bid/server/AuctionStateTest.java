@@ -0,0 +1,168 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The highest bid of an auction and its tie set, kept up to date as the bids come and go, and its audience
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionStateTest {
+    private AuctionState state;
+    private FakeClient alice;
+    private FakeClient bob;
+    private FakeClient carol;
+
+    @Before
+    public void setUp() {
+        state = new AuctionState(new AuctionBean(10, "item", "An item", "seller"));
+        alice = new FakeClient("alice");
+        bob = new FakeClient("bob");
+        carol = new FakeClient("carol");
+    }
+
+    @Test
+    public void noBid() {
+        assertEquals(Integer.MIN_VALUE, state.getHighestBid());
+        assertTrue(state.getHighestBidders().isEmpty());
+    }
+
+    @Test
+    public void higherBidReplacesTheHighestBidders() {
+        state.addBid(alice, "alice", 20);
+        state.addBid(bob, "bob", 30);
+        assertEquals(30, state.getHighestBid());
+        assertEquals(Arrays.asList(bob), state.getHighestBidders());
+        assertEquals(2, state.getBidThisRound());
+        assertEquals(Arrays.asList("alice", "bob"), state.getNameClientsBid());
+    }
+
+    @Test
+    public void lowerBidDoesNotChangeTheHighestBidders() {
+        state.addBid(alice, "alice", 30);
+        state.addBid(bob, "bob", 20);
+        assertEquals(30, state.getHighestBid());
+        assertEquals(Arrays.asList(alice), state.getHighestBidders());
+    }
+
+    @Test
+    public void equalBidsAreTied() {
+        state.addBid(alice, "alice", 30);
+        state.addBid(bob, "bob", 30);
+        state.addBid(carol, "carol", 20);
+        assertEquals(30, state.getHighestBid());
+        assertEquals(new HashSet<FakeClient>(Arrays.asList(alice, bob)),
+                new HashSet<Object>(state.getHighestBidders()));
+    }
+
+    @Test
+    public void sameBidTwiceIsTiedOnce() {
+        state.addBid(alice, "alice", 30);
+        state.addBid(alice, "alice", 30);
+        assertEquals(Arrays.asList(alice), state.getHighestBidders());
+    }
+
+    @Test
+    public void removingALowerBidderKeepsTheHighestBid() {
+        state.addBid(alice, "alice", 30);
+        state.addBid(bob, "bob", 20);
+        state.removeBid(bob);
+        assertEquals(30, state.getHighestBid());
+        assertEquals(Arrays.asList(alice), state.getHighestBidders());
+    }
+
+    @Test
+    public void removingATiedBidderKeepsTheOthers() {
+        state.addBid(alice, "alice", 30);
+        state.addBid(bob, "bob", 30);
+        state.removeBid(alice);
+        assertEquals(30, state.getHighestBid());
+        assertEquals(Arrays.asList(bob), state.getHighestBidders());
+    }
+
+    @Test
+    public void removingTheHighestBidderFindsTheNextBids() {
+        state.addBid(alice, "alice", 20);
+        state.addBid(bob, "bob", 20);
+        state.addBid(carol, "carol", 30);
+        state.removeBid(carol);
+        assertEquals(20, state.getHighestBid());
+        assertEquals(new HashSet<FakeClient>(Arrays.asList(alice, bob)),
+                new HashSet<Object>(state.getHighestBidders()));
+    }
+
+    @Test
+    public void removingTheLastBidderLeavesNoBid() {
+        state.addBid(alice, "alice", 20);
+        state.removeBid(alice);
+        assertEquals(Integer.MIN_VALUE, state.getHighestBid());
+        assertTrue(state.getHighestBidders().isEmpty());
+    }
+
+    @Test
+    public void removingAClientWithoutBidChangesNothing() {
+        state.addBid(alice, "alice", 20);
+        state.removeBid(bob);
+        assertEquals(20, state.getHighestBid());
+        assertEquals(Arrays.asList(alice), state.getHighestBidders());
+    }
+
+    @Test
+    public void clearBidsForgetsEverything() {
+        state.addBid(alice, "alice", 20);
+        state.addBid(bob, "bob", 20);
+        state.clearBids();
+        assertEquals(Integer.MIN_VALUE, state.getHighestBid());
+        assertTrue(state.getHighestBidders().isEmpty());
+
+        // The bids of the next round start from scratch
+        state.addBid(carol, "carol", 15);
+        assertEquals(15, state.getHighestBid());
+        assertEquals(Arrays.asList(carol), state.getHighestBidders());
+    }
+
+    @Test
+    public void pendingClientsJoinAtTheNextRound() {
+        state.getAudience().add(alice);
+        state.addPending(bob);
+        state.addPending(alice);
+        assertEquals(new HashSet<FakeClient>(Arrays.asList(alice)), state.getAudience());
+
+        assertEquals(Arrays.asList(bob), state.admitPending());
+        assertEquals(new HashSet<FakeClient>(Arrays.asList(alice, bob)), state.getAudience());
+        assertTrue(state.admitPending().isEmpty());
+    }
+
+    @Test
+    public void leavingRemovesAPendingClient() {
+        state.addPending(bob);
+        assertFalse(state.leave(bob));
+        assertTrue(state.admitPending().isEmpty());
+
+        assertTrue(state.join(alice));
+        assertFalse(state.join(alice));
+        assertTrue(state.leave(alice));
+        assertTrue(state.getAudience().isEmpty());
+    }
+
+    @Test
+    public void eachClientAnswersOncePerRound() {
+        state.nextRound(null);
+        assertTrue(state.answer(alice));
+        assertFalse(state.answer(alice));
+        assertTrue(state.hasAnswered(alice));
+
+        assertEquals(2, state.nextRound(null));
+        assertFalse(state.hasAnswered(alice));
+    }
+}
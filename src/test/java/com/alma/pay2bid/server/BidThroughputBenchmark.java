@@ -0,0 +1,107 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.Topic;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the accepted bids with a fixed number of bidding threads, spread over more and more auctions :
+ * it grows with the number of auctions as long as there are free cores. Each bid is followed by the answer of its
+ * bidder, so the rounds keep closing and every bid counted is accepted.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class BidThroughputBenchmark {
+    private static final int THREADS = 8;
+    private static final long DURATION = 2000;
+
+    @Test
+    public void bidThroughputByNumberOfAuctions() throws Exception {
+        System.out.println("Bid throughput with " + THREADS + " threads and "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+        // The first run warms up the server
+        run(THREADS);
+        for (int nbAuctions = 1; nbAuctions <= THREADS; nbAuctions *= 2) {
+            System.out.println(String.format("%2d auctions : %,12d bids/s", nbAuctions, run(nbAuctions)));
+        }
+    }
+
+    private long run(int nbAuctions) throws Exception {
+        final Server server = new Server();
+        FakeClient seller = new FakeClient("seller");
+        server.register(seller);
+        final List<UUID> auctions = new ArrayList<UUID>();
+        for (int i = 0; i < nbAuctions; i++) {
+            auctions.add(UUID.randomUUID());
+        }
+        // Each bidder only follows the auction of his thread, so its rounds only wait for the threads bidding on it
+        final List<FakeClient> bidders = new ArrayList<FakeClient>();
+        for (int i = 0; i < THREADS; i++) {
+            FakeClient bidder = new FakeClient("bidder" + i);
+            server.register(bidder);
+            server.subscribe(bidder, Topic.auction(auctions.get(i % nbAuctions)));
+            bidders.add(bidder);
+        }
+        for (int i = 0; i < nbAuctions; i++) {
+            AuctionBean auction = new AuctionBean(1, "item" + i, "An item", "seller");
+            auction.setUuid(auctions.get(i));
+            server.placeAuction(auction);
+        }
+
+        // Each thread bids once per round, then answers : the last answer closes the round.
+        // A bid is only placed once a new round has begun, at a price above every former bid, so it is accepted.
+        final AtomicInteger price = new AtomicInteger(1);
+        final AtomicLong count = new AtomicLong();
+        final long end = System.currentTimeMillis() + DURATION;
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            final FakeClient bidder = bidders.get(i);
+            final UUID auctionId = auctions.get(i % nbAuctions);
+            final AuctionState state = server.stateOf(auctionId);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long bids = 0;
+                    int answered = 0;
+                    try {
+                        while (System.currentTimeMillis() < end) {
+                            int round;
+                            synchronized (state) {
+                                round = state.getRound();
+                            }
+                            if (round == answered) {
+                                // The other bidders of the auction have not answered yet
+                                Thread.yield();
+                                continue;
+                            }
+                            server.raiseBid(auctionId, bidder, price.incrementAndGet());
+                            server.timeElapsed(auctionId, bidder);
+                            answered = round;
+                            bids++;
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    count.addAndGet(bids);
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        for (UUID auctionId : auctions) {
+            if (server.stateOf(auctionId).isCompleted()) {
+                throw new IllegalStateException("A round has closed without any bid");
+            }
+        }
+        return count.get() * 1000 / DURATION;
+    }
+}
@@ -0,0 +1,103 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.client.IClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The calls which never return hold a bounded number of threads : once they are all held, a callback is reported
+ * as a missed deadline instead of starting a new thread
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class BroadcasterTest {
+    private static final long DEADLINE = 100;
+
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final BlockingQueue<IClient> failed = new LinkedBlockingQueue<IClient>();
+    private final List<IClient> called = new CopyOnWriteArrayList<IClient>();
+    private Broadcaster broadcaster;
+
+    @Before
+    public void setUp() {
+        // A single sender : the calls of two hung clients hold every thread of the callers
+        broadcaster = new Broadcaster(1, 8, 5000, DEADLINE, new Broadcaster.FailureListener() {
+            @Override
+            public void clientFailed(IClient client) {
+                failed.add(client);
+            }
+
+            @Override
+            public void clientSaturated(IClient client) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        released.countDown();
+    }
+
+    /**
+     * Call a client who never answers, even when the call is cancelled, until the end of the test
+     */
+    private void callHung(IClient client) throws InterruptedException {
+        broadcaster.open(client);
+        broadcaster.send(Collections.singletonList(client), new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) {
+                boolean done = false;
+                while (!done) {
+                    try {
+                        done = released.await(1, TimeUnit.MINUTES);
+                    } catch (InterruptedException ignored) {
+                        // The cancellation of the call is ignored
+                    }
+                }
+            }
+        });
+        assertEquals(client, failed.poll(10 * DEADLINE, TimeUnit.MILLISECONDS));
+    }
+
+    private void call(IClient client) {
+        broadcaster.open(client);
+        broadcaster.send(Collections.singletonList(client), new Broadcaster.Callback() {
+            @Override
+            public void call(IClient client) {
+                called.add(client);
+            }
+        });
+    }
+
+    @Test
+    public void callWithoutAFreeThreadIsAMissedDeadline() throws Exception {
+        callHung(new FakeClient("hung1"));
+        callHung(new FakeClient("hung2"));
+
+        FakeClient alice = new FakeClient("alice");
+        call(alice);
+        assertEquals(alice, failed.poll(10 * DEADLINE, TimeUnit.MILLISECONDS));
+        assertTrue(called.isEmpty());
+
+        // The threads held by the hung calls are given back once the calls return
+        released.countDown();
+        for (int i = 0; i < 100 && called.isEmpty(); i++) {
+            call(new FakeClient("bob" + i));
+            Thread.sleep(10);
+        }
+        assertEquals(1, called.size());
+    }
+}
@@ -0,0 +1,101 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.bean.ClientBean;
+import com.alma.pay2bid.client.ClientState;
+import com.alma.pay2bid.client.IClient;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A client living in the same VM as the server, which records the auctions he is notified of
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+class FakeClient implements IClient {
+    private static final long serialVersionUID = 1L;
+
+    private final ClientBean identity;
+    final List<UUID> newAuctions = new CopyOnWriteArrayList<UUID>();
+    final List<UUID> soldAuctions = new CopyOnWriteArrayList<UUID>();
+
+    FakeClient(String name) {
+        this.identity = new ClientBean(UUID.randomUUID(), name, "pwd", name);
+    }
+
+    @Override
+    public void newAuction(UUID auctionId, AuctionSummary auction, long sequence) {
+        newAuctions.add(auctionId);
+    }
+
+    @Override
+    public void submit(AuctionBean auction) {
+    }
+
+    @Override
+    public void bidSold(UUID auctionId, String buyer, long sequence) {
+        soldAuctions.add(auctionId);
+    }
+
+    @Override
+    public void newPrice(UUID auctionId, int price, String winner, long sequence) {
+    }
+
+    @Override
+    public void updatePrice(UUID auctionId, int price, String winner, long sequence) {
+    }
+
+    @Override
+    public void auctionLeft(UUID auctionId) {
+    }
+
+    @Override
+    public String getName() {
+        return identity.getLogin();
+    }
+
+    @Override
+    public void addWonAuction(AuctionBean auction) {
+    }
+
+    @Override
+    public String getIdentifier() {
+        return identity.getIdentifier();
+    }
+
+    @Override
+    public ClientBean getIdentity() {
+        return identity;
+    }
+
+    @Override
+    public void setName(String name) {
+    }
+
+    @Override
+    public ClientState getState(UUID auctionId) {
+        return null;
+    }
+
+    @Override
+    public void setState(UUID auctionId, ClientState newState) {
+    }
+
+    @Override
+    public boolean getIsSeller(UUID auctionId) {
+        return false;
+    }
+
+    @Override
+    public void setIsSeller(UUID auctionId, boolean v) {
+    }
+
+    @Override
+    public String toString() {
+        return identity.getIdentifier();
+    }
+}
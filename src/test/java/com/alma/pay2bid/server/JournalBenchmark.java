@@ -0,0 +1,93 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.server.journal.AuctionArchive;
+import com.alma.pay2bid.server.journal.Journal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the accepted bids, with and without the journal : every bid and every round closed is written
+ * in the journal, which must not slow the bids down.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class JournalBenchmark {
+    private static final int AUCTIONS = 4;
+    private static final int BIDDERS = 10;
+    private static final long DURATION = 3000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void bidThroughputWithAndWithoutJournal() throws Exception {
+        // The first run warms up the server
+        run(new Server());
+        System.out.println(String.format("Without journal : %,10d bids/s", run(new Server())));
+
+        File directory = folder.newFolder();
+        Journal journal = new Journal(directory);
+        AuctionArchive archive = new AuctionArchive(directory);
+        try {
+            System.out.println(String.format("With journal    : %,10d bids/s",
+                    run(new Server(journal, null, archive))));
+        } finally {
+            journal.close();
+            archive.close();
+        }
+    }
+
+    private long run(final Server server) throws Exception {
+        server.register(new FakeClient("seller"));
+        final List<FakeClient> bidders = new ArrayList<FakeClient>();
+        for (int i = 0; i < BIDDERS; i++) {
+            FakeClient bidder = new FakeClient("bidder" + i);
+            server.register(bidder);
+            bidders.add(bidder);
+        }
+
+        // Each thread runs the rounds of an auction : every bidder bids, then every bidder closes the round
+        final AtomicLong count = new AtomicLong();
+        final long end = System.currentTimeMillis() + DURATION;
+        final CountDownLatch done = new CountDownLatch(AUCTIONS);
+        for (int i = 0; i < AUCTIONS; i++) {
+            AuctionBean auction = new AuctionBean(1, "item" + i, "An item", "seller");
+            server.placeAuction(auction);
+            final UUID auctionId = auction.getUuid();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long bids = 0;
+                    int price = 1;
+                    try {
+                        while (System.currentTimeMillis() < end) {
+                            for (FakeClient bidder : bidders) {
+                                server.raiseBid(auctionId, bidder, ++price);
+                            }
+                            for (FakeClient bidder : bidders) {
+                                server.timeElapsed(auctionId, bidder);
+                            }
+                            bids += BIDDERS;
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    count.addAndGet(bids);
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        return count.get() * 1000 / DURATION;
+    }
+}
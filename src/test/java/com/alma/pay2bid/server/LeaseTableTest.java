@@ -0,0 +1,114 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.client.IClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The leases expire when they are not renewed, and the clients expiring together are reported in a single batch
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class LeaseTableTest {
+    private static final long DURATION = 200;
+
+    private TimingWheel wheel;
+    private LeaseTable leases;
+    private final BlockingQueue<List<IClient>> expirations = new LinkedBlockingQueue<List<IClient>>();
+
+    @Before
+    public void setUp() {
+        wheel = new TimingWheel("test-timer", 10, 64, new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+        });
+        leases = new LeaseTable(wheel, DURATION, new LeaseTable.ExpiryListener() {
+            @Override
+            public void leasesExpired(List<IClient> clients) {
+                expirations.add(new ArrayList<IClient>(clients));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void leaseExpiresWhenItIsNotRenewed() throws Exception {
+        FakeClient alice = new FakeClient("alice");
+        long start = System.currentTimeMillis();
+        leases.grant(alice);
+
+        List<IClient> expired = expirations.poll(2 * DURATION, TimeUnit.MILLISECONDS);
+        assertNotNull(expired);
+        assertEquals(Arrays.<IClient>asList(alice), expired);
+        assertTrue(System.currentTimeMillis() - start >= DURATION - 10);
+        assertFalse(leases.renew(alice));
+    }
+
+    @Test
+    public void renewedLeaseDoesNotExpire() throws Exception {
+        FakeClient alice = new FakeClient("alice");
+        leases.grant(alice);
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(DURATION / 2);
+            assertTrue(leases.renew(alice));
+        }
+        assertTrue(expirations.isEmpty());
+
+        // Once the renewals stop, the lease expires
+        assertNotNull(expirations.poll(3 * DURATION, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void revokedLeaseNeverExpires() throws Exception {
+        FakeClient alice = new FakeClient("alice");
+        leases.grant(alice);
+        leases.revoke(alice);
+        assertFalse(leases.renew(alice));
+        assertNull(expirations.poll(2 * DURATION, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void leasesExpiringTogetherAreReportedTogether() throws Exception {
+        List<IClient> clients = new ArrayList<IClient>();
+        for (int i = 0; i < 50; i++) {
+            FakeClient client = new FakeClient("client" + i);
+            clients.add(client);
+            leases.grant(client);
+        }
+
+        List<IClient> expired = new ArrayList<IClient>();
+        int batches = 0;
+        while (expired.size() < clients.size()) {
+            List<IClient> batch = expirations.poll(2 * DURATION, TimeUnit.MILLISECONDS);
+            assertNotNull(batch);
+            expired.addAll(batch);
+            batches++;
+        }
+        assertEquals(new HashSet<IClient>(clients), new HashSet<IClient>(expired));
+        assertEquals(clients.size(), expired.size());
+        assertTrue(batches < clients.size());
+    }
+}
@@ -0,0 +1,95 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of the registration of new clients while the auctions keep running : the bidders bid and close their
+ * rounds as fast as they can, and each newcomer leaves right after registering so that the rounds never wait for him.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class RegistrationBenchmark {
+    private static final int AUCTIONS = 50;
+    private static final int BIDDERS = 20;
+    private static final int NEWCOMERS = 2000;
+
+    @Test
+    public void registrationLatencyUnderAuctionTraffic() throws Exception {
+        final Server server = new Server();
+        server.register(new FakeClient("seller"));
+        final List<FakeClient> bidders = new ArrayList<FakeClient>();
+        for (int i = 0; i < BIDDERS; i++) {
+            FakeClient bidder = new FakeClient("bidder" + i);
+            server.register(bidder);
+            bidders.add(bidder);
+        }
+        final List<UUID> auctions = new ArrayList<UUID>();
+        for (int i = 0; i < AUCTIONS; i++) {
+            AuctionBean auction = new AuctionBean(1, "item" + i, "An item", "seller");
+            server.placeAuction(auction);
+            auctions.add(auction.getUuid());
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger price = new AtomicInteger(1);
+        final AtomicLong calls = new AtomicLong();
+        List<Thread> traffic = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int first = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (running.get()) {
+                            for (int i = first; i < AUCTIONS; i += 4) {
+                                for (FakeClient bidder : bidders) {
+                                    server.raiseBid(auctions.get(i), bidder, price.incrementAndGet());
+                                    server.timeElapsed(auctions.get(i), bidder);
+                                    calls.addAndGet(2);
+                                }
+                            }
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            thread.start();
+            traffic.add(thread);
+        }
+
+        Thread.sleep(1000);
+        long[] latencies = new long[NEWCOMERS];
+        long start = System.currentTimeMillis();
+        long callsBefore = calls.get();
+        for (int i = 0; i < NEWCOMERS; i++) {
+            FakeClient newcomer = new FakeClient("newcomer" + i);
+            long t0 = System.nanoTime();
+            server.register(newcomer);
+            latencies[i] = System.nanoTime() - t0;
+            server.clientDisconnection(newcomer);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        long trafficRate = (calls.get() - callsBefore) * 1000 / Math.max(1, elapsed);
+        running.set(false);
+        for (Thread thread : traffic) {
+            thread.join();
+        }
+
+        Arrays.sort(latencies);
+        System.out.println("Registration of " + NEWCOMERS + " clients with " + AUCTIONS + " running auctions, under "
+                + trafficRate + " bids and answers/s : p50 " + latencies[NEWCOMERS / 2] / 1000
+                + " us, p99 " + latencies[NEWCOMERS * 99 / 100] / 1000
+                + " us, max " + latencies[NEWCOMERS - 1] / 1000 + " us");
+    }
+}
@@ -0,0 +1,94 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.server.journal.JournalEvent;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A standby which cannot follow the primary is dropped and fenced, and the primary never buffers its events forever
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class ReplicatorTest {
+    private static final int CAPACITY = 16;
+    private static final long HEARTBEAT_INTERVAL = 10;
+
+    /**
+     * A standby which records the sizes of the batches it receives
+     */
+    private static class FakeStandby implements IStandby {
+        private final boolean reachable;
+        private final boolean following;
+        final CopyOnWriteArrayList<Integer> batches = new CopyOnWriteArrayList<Integer>();
+        final AtomicInteger detached = new AtomicInteger();
+
+        FakeStandby(boolean reachable, boolean following) {
+            this.reachable = reachable;
+            this.following = following;
+        }
+
+        @Override
+        public boolean replicate(byte[] events) throws RemoteException {
+            try {
+                batches.add(JournalEvent.decode(events).size());
+            } catch (IOException e) {
+                throw new RemoteException("Unable to decode the events", e);
+            }
+            if (!reachable) {
+                throw new RemoteException("Unreachable standby");
+            }
+            return following;
+        }
+
+        @Override
+        public boolean detach() {
+            detached.incrementAndGet();
+            return true;
+        }
+    }
+
+    private static void awaitDetached(FakeStandby standby) throws InterruptedException {
+        for (int i = 0; i < 200 && standby.detached.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void unreachableStandbyIsDroppedWhenTheQueueIsFull() throws Exception {
+        FakeStandby standby = new FakeStandby(false, true);
+        Replicator replicator = new Replicator(standby, CAPACITY, HEARTBEAT_INTERVAL);
+        replicator.start();
+        UUID auctionId = UUID.randomUUID();
+        for (int i = 0; i < 10 * CAPACITY; i++) {
+            replicator.append(JournalEvent.bidAccepted(auctionId, "alice", i));
+        }
+
+        awaitDetached(standby);
+        assertEquals(1, standby.detached.get());
+        for (int size : standby.batches) {
+            assertTrue(size <= 1024);
+        }
+    }
+
+    @Test
+    public void standbyRefusingTheBatchesIsFencedAtOnce() throws Exception {
+        FakeStandby standby = new FakeStandby(true, false);
+        Replicator replicator = new Replicator(standby, CAPACITY, HEARTBEAT_INTERVAL);
+        replicator.start();
+
+        awaitDetached(standby);
+        assertEquals(1, standby.detached.get());
+        Thread.sleep(5 * HEARTBEAT_INTERVAL);
+        // The replicator has stopped sending : the refused heartbeat was the last batch
+        assertEquals(1, standby.batches.size());
+    }
+}
@@ -0,0 +1,156 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+/**
+ * The bids on independent auctions never wait for each other, and the readers never share the beans the bids modify
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class ServerConcurrencyTest {
+    private Server server;
+    private FakeClient alice;
+    private FakeClient bob;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new Server();
+        FakeClient seller = new FakeClient("seller");
+        alice = new FakeClient("alice");
+        bob = new FakeClient("bob");
+        server.register(seller);
+        server.register(alice);
+        server.register(bob);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private UUID placeAuction(String name) throws Exception {
+        AuctionBean auction = new AuctionBean(10, name, "An item", "seller");
+        server.placeAuction(auction);
+        return auction.getUuid();
+    }
+
+    private Future<?> bid(final UUID auctionId, final FakeClient client, final int bid) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                server.raiseBid(auctionId, client, bid);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void bidOnAnotherAuctionDoesNotWaitForABusyAuction() throws Exception {
+        UUID busy = placeAuction("busy");
+        UUID free = placeAuction("free");
+        final AuctionState busyState = server.stateOf(busy);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // A long operation holds the lock of the first auction
+        Future<?> holder = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                synchronized (busyState) {
+                    locked.countDown();
+                    release.await();
+                }
+                return null;
+            }
+        });
+        locked.await();
+
+        Future<?> blocked = bid(busy, alice, 20);
+        bid(free, bob, 30).get(1, TimeUnit.SECONDS);
+        try {
+            blocked.get(200, TimeUnit.MILLISECONDS);
+            fail("The bid on the busy auction should wait for its lock");
+        } catch (TimeoutException expected) {
+            assertFalse(blocked.isDone());
+        }
+
+        release.countDown();
+        holder.get(1, TimeUnit.SECONDS);
+        blocked.get(1, TimeUnit.SECONDS);
+
+        AuctionState freeState = server.stateOf(free);
+        synchronized (freeState) {
+            assertEquals(30, freeState.getHighestBid());
+        }
+        synchronized (busyState) {
+            assertEquals(20, busyState.getHighestBid());
+        }
+    }
+
+    @Test
+    public void concurrentBidsOnDifferentAuctionsAreAllAccepted() throws Exception {
+        int nbAuctions = 16;
+        UUID[] auctions = new UUID[nbAuctions];
+        for (int i = 0; i < nbAuctions; i++) {
+            auctions[i] = placeAuction("item" + i);
+        }
+
+        Future<?>[] bids = new Future<?>[2 * nbAuctions];
+        for (int i = 0; i < nbAuctions; i++) {
+            bids[2 * i] = bid(auctions[i], alice, 100 + i);
+            bids[2 * i + 1] = bid(auctions[i], bob, 200 + i);
+        }
+        for (Future<?> bid : bids) {
+            bid.get(5, TimeUnit.SECONDS);
+        }
+
+        for (int i = 0; i < nbAuctions; i++) {
+            AuctionState state = server.stateOf(auctions[i]);
+            synchronized (state) {
+                assertEquals(200 + i, state.getHighestBid());
+                assertEquals(1, state.getHighestBidders().size());
+                assertEquals(bob, state.getHighestBidders().get(0));
+            }
+        }
+    }
+
+    @Test
+    public void readersGetACopyOfTheAuction() throws Exception {
+        UUID auctionId = placeAuction("item");
+        AuctionBean live = server.stateOf(auctionId).getAuction();
+
+        // The bean of a running auction is modified by the bids : the readers never get it
+        AuctionBean read = server.getAuction(auctionId);
+        AuctionBean found = server.search(new AuctionQuery("item", null, null, null, 10)).get(0);
+        AuctionBean listed = server.listAuctions(0, 10).getAuctions().get(0);
+        for (AuctionBean copy : new AuctionBean[] {read, found, listed}) {
+            assertNotSame(live, copy);
+            assertEquals(auctionId, copy.getUuid());
+            assertEquals(10, copy.getPrice());
+        }
+
+        read.setPrice(1000);
+        assertEquals(10, live.getPrice());
+    }
+}
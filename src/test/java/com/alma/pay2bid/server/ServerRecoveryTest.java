@@ -0,0 +1,147 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionQuery;
+import com.alma.pay2bid.server.journal.AuctionArchive;
+import com.alma.pay2bid.server.journal.Journal;
+import com.alma.pay2bid.server.journal.JournalEvent;
+import com.alma.pay2bid.server.journal.Snapshot;
+import com.alma.pay2bid.server.journal.SnapshotStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * A server restarted on the journal of another one finds its running auctions and its archive again, starting from
+ * its latest snapshot if it has one
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class ServerRecoveryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void awaitRound(Server server, UUID auctionId, int price) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            AuctionState state = server.stateOf(auctionId);
+            if (state == null) {
+                return;
+            }
+            synchronized (state) {
+                if (state.getAuction().getPrice() == price) {
+                    return;
+                }
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void runningAndSoldAuctionsAreRecoveredFromTheJournal() throws Exception {
+        File directory = folder.newFolder();
+        Journal journal = new Journal(directory);
+        AuctionArchive archive = new AuctionArchive(directory);
+        Server server = new Server(journal, null, archive);
+
+        FakeClient seller = new FakeClient("seller");
+        FakeClient alice = new FakeClient("alice");
+        FakeClient bob = new FakeClient("bob");
+        server.register(seller);
+        server.register(alice);
+        server.register(bob);
+
+        AuctionBean running = new AuctionBean(10, "running", "Still running", "seller");
+        server.placeAuction(running);
+        AuctionBean sold = new AuctionBean(5, "sold", "Already sold", "seller");
+        server.placeAuction(sold);
+
+        // A round with a winner on the first auction
+        server.raiseBid(running.getUuid(), alice, 20);
+        server.raiseBid(running.getUuid(), bob, 30);
+        server.timeElapsed(running.getUuid(), alice);
+        server.timeElapsed(running.getUuid(), bob);
+        awaitRound(server, running.getUuid(), 30);
+
+        // A blank round sells the second one
+        server.timeElapsed(sold.getUuid(), alice);
+        server.timeElapsed(sold.getUuid(), bob);
+        assertNull(server.stateOf(sold.getUuid()));
+
+        journal.close();
+        archive.close();
+
+        Journal recoveredJournal = new Journal(directory);
+        AuctionArchive recoveredArchive = new AuctionArchive(directory);
+        try {
+            Server recovered = new Server(recoveredJournal, null, recoveredArchive);
+
+            AuctionState state = recovered.stateOf(running.getUuid());
+            assertNotNull(state);
+            synchronized (state) {
+                assertEquals(30, state.getAuction().getPrice());
+                assertEquals("bob", state.getWinnerIdentifier());
+                assertEquals("Still running", state.getAuction().getDescription());
+            }
+
+            assertNull(recovered.stateOf(sold.getUuid()));
+            AuctionBean archived = recovered.getAuction(sold.getUuid());
+            assertNotNull(archived);
+            assertEquals("sold", archived.getName());
+            assertEquals(5, archived.getPrice());
+            assertEquals(1, recovered.search(new AuctionQuery("running", null, null, null, 10)).size());
+        } finally {
+            recoveredJournal.close();
+            recoveredArchive.close();
+        }
+    }
+
+    @Test
+    public void stateIsRecoveredFromTheSnapshotAndTheTailOfTheJournal() throws Exception {
+        File directory = folder.newFolder();
+        Journal journal = new Journal(directory);
+        SnapshotStore snapshots = new SnapshotStore(directory);
+
+        AuctionBean forgotten = new AuctionBean(10, "forgotten", "Placed before the snapshot", "seller");
+        forgotten.setUuid(UUID.randomUUID());
+        journal.append(JournalEvent.auctionPlaced(forgotten));
+
+        // The snapshot holds an auction, and replaces the events written before it
+        AuctionBean inSnapshot = new AuctionBean(30, "snapshot", "In the snapshot", "seller");
+        inSnapshot.setUuid(UUID.randomUUID());
+        Snapshot snapshot = new Snapshot(journal.roll());
+        snapshot.add(inSnapshot, "bob");
+        snapshots.save(snapshot);
+
+        AuctionBean inTail = new AuctionBean(5, "tail", "Placed after the snapshot", "seller");
+        inTail.setUuid(UUID.randomUUID());
+        journal.append(JournalEvent.roundClosed(inSnapshot.getUuid(), 40, "carol"));
+        journal.append(JournalEvent.auctionPlaced(inTail));
+        journal.close();
+
+        Journal recoveredJournal = new Journal(directory);
+        AuctionArchive archive = new AuctionArchive(directory);
+        try {
+            Server recovered = new Server(recoveredJournal, new SnapshotStore(directory), archive);
+
+            AuctionState state = recovered.stateOf(inSnapshot.getUuid());
+            assertNotNull(state);
+            synchronized (state) {
+                assertEquals(40, state.getAuction().getPrice());
+                assertEquals("carol", state.getWinnerIdentifier());
+            }
+            assertNotNull(recovered.stateOf(inTail.getUuid()));
+            assertNull(recovered.stateOf(forgotten.getUuid()));
+        } finally {
+            recoveredJournal.close();
+            archive.close();
+        }
+    }
+}
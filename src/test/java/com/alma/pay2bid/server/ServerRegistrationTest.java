@@ -0,0 +1,103 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A client registers while the auctions are running, and takes part in their current round
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class ServerRegistrationTest {
+    private Server server;
+    private FakeClient seller;
+    private FakeClient alice;
+    private UUID auctionId;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new Server();
+        seller = new FakeClient("seller");
+        alice = new FakeClient("alice");
+        server.register(seller);
+        server.register(alice);
+        AuctionBean auction = new AuctionBean(10, "item", "An item", "seller");
+        server.placeAuction(auction);
+        auctionId = auction.getUuid();
+    }
+
+    private static void awaitSold(FakeClient client, UUID auctionId) throws InterruptedException {
+        for (int i = 0; i < 100 && !client.soldAuctions.contains(auctionId); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void registrationDoesNotWaitForTheRunningAuctions() throws Exception {
+        final FakeClient bob = new FakeClient("bob");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AuctionSnapshot snapshot = executor.submit(new Callable<AuctionSnapshot>() {
+                @Override
+                public AuctionSnapshot call() throws Exception {
+                    return server.register(bob);
+                }
+            }).get(1, TimeUnit.SECONDS);
+
+            // The newcomer learns the running auction from his snapshot, and is not notified of it
+            assertEquals(1, snapshot.getEntries().size());
+            assertEquals(auctionId, snapshot.getEntries().get(0).getUuid());
+            assertTrue(snapshot.getEntries().get(0).getRemainingTime() > 0);
+            assertTrue(bob.newAuctions.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void roundWaitsForTheNewcomer() throws Exception {
+        FakeClient bob = new FakeClient("bob");
+        server.register(bob);
+
+        server.timeElapsed(auctionId, alice);
+        awaitSold(alice, auctionId);
+        assertTrue(alice.soldAuctions.isEmpty());
+
+        // The round is blank : the auction is sold as soon as the newcomer has answered too
+        server.timeElapsed(auctionId, bob);
+        awaitSold(alice, auctionId);
+        assertEquals(1, alice.soldAuctions.size());
+        awaitSold(bob, auctionId);
+        assertEquals(1, bob.soldAuctions.size());
+    }
+
+    @Test
+    public void auctionWithAKnownUuidIsRefused() throws Exception {
+        AuctionState running = server.stateOf(auctionId);
+        AuctionBean duplicate = new AuctionBean(999, "other", "Another item", "alice");
+        duplicate.setUuid(auctionId);
+        try {
+            server.placeAuction(duplicate);
+            fail("An auction with the UUID of a running auction should be refused");
+        } catch (RemoteException expected) {
+            assertTrue(expected.getMessage().contains(auctionId.toString()));
+        }
+        assertSame(running, server.stateOf(auctionId));
+        assertEquals(10, running.getAuction().getPrice());
+    }
+}
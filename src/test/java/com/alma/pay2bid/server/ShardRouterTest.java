@@ -0,0 +1,151 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.bean.AuctionSnapshot;
+import com.alma.pay2bid.client.IClient;
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The router registers a client on all its shards at the same time, and never leaves him on a part of them only
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class ShardRouterTest {
+
+    /**
+     * A shard which waits for the other shards to be called, and may refuse the clients
+     */
+    private static class Shard extends Server {
+        private final boolean refusing;
+        private volatile CountDownLatch called; // Counted down by each shard called, or null
+        final List<IClient> registered = new CopyOnWriteArrayList<IClient>();
+        final List<IClient> disconnected = new CopyOnWriteArrayList<IClient>();
+
+        Shard(boolean refusing) throws RemoteException {
+            super();
+            this.refusing = refusing;
+        }
+
+        private void await() throws RemoteException {
+            if (called == null) {
+                return;
+            }
+            called.countDown();
+            try {
+                if (!called.await(5, TimeUnit.SECONDS)) {
+                    throw new RemoteException("The shards have not been called at the same time");
+                }
+            } catch (InterruptedException e) {
+                throw new RemoteException("Interrupted", e);
+            }
+            if (refusing) {
+                throw new RemoteException("Refused by the shard");
+            }
+        }
+
+        @Override
+        public AuctionSnapshot register(IClient client) throws RemoteException {
+            await();
+            registered.add(client);
+            return super.register(client);
+        }
+
+        @Override
+        public void renewLease(IClient client) throws RemoteException {
+            await();
+            super.renewLease(client);
+        }
+
+        @Override
+        public void disconnect(IClient client) throws RemoteException, InterruptedException {
+            disconnected.add(client);
+            super.disconnect(client);
+        }
+    }
+
+    /**
+     * @return A router in front of the shards, which wait for each other when they are called
+     */
+    private static ShardRouter routerOf(List<Shard> shards) throws RemoteException {
+        CountDownLatch called = new CountDownLatch(shards.size());
+        Map<String, IServer> named = new LinkedHashMap<String, IServer>();
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).called = called;
+            named.put("shard" + i, shards.get(i));
+        }
+        return new ShardRouter(named);
+    }
+
+    @Test
+    public void registrationGathersTheShards() throws Exception {
+        List<Shard> shards = new ArrayList<Shard>();
+        for (int i = 0; i < 3; i++) {
+            Shard shard = new Shard(false);
+            shard.register(new FakeClient("seller"));
+            shard.register(new FakeClient("bob"));
+            shard.placeAuction(new AuctionBean(10, "item" + i, "An item", "seller"));
+            shards.add(shard);
+        }
+        ShardRouter router = routerOf(shards);
+
+        // Each shard waits for the others : a sequential registration would time out
+        FakeClient alice = new FakeClient("alice");
+        AuctionSnapshot snapshot = router.register(alice);
+        assertEquals(3, snapshot.getEntries().size());
+        for (Shard shard : shards) {
+            assertTrue(shard.registered.contains(alice));
+        }
+    }
+
+    @Test
+    public void refusedRegistrationIsRolledBack() throws Exception {
+        Shard first = new Shard(false);
+        Shard refusing = new Shard(true);
+        Shard last = new Shard(false);
+        ShardRouter router = routerOf(Arrays.asList(first, refusing, last));
+
+        FakeClient alice = new FakeClient("alice");
+        try {
+            router.register(alice);
+            fail("The registration should fail when a shard refuses it");
+        } catch (RemoteException expected) {
+            assertTrue(expected.getMessage().contains("register"));
+        }
+        assertEquals(Collections.<IClient>singletonList(alice), first.disconnected);
+        assertEquals(Collections.<IClient>singletonList(alice), last.disconnected);
+        assertTrue(refusing.disconnected.isEmpty());
+    }
+
+    @Test
+    public void refusedLeaseDisconnectsFromTheOtherShards() throws Exception {
+        Shard accepting = new Shard(false);
+        Shard refusing = new Shard(true);
+        ShardRouter router = routerOf(Arrays.asList(accepting, refusing));
+
+        FakeClient alice = new FakeClient("alice");
+        try {
+            router.renewLease(alice);
+            fail("The renewal should fail when a shard refuses it");
+        } catch (RemoteException expected) {
+            assertTrue(expected.getMessage().contains("lease"));
+        }
+        assertEquals(Collections.<IClient>singletonList(alice), accepting.disconnected);
+        assertTrue(refusing.disconnected.isEmpty());
+    }
+}
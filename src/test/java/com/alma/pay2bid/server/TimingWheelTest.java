@@ -0,0 +1,112 @@
+package com.alma.pay2bid.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The timeouts of the timing wheel expire once, in the order of their deadlines, unless they are cancelled
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class TimingWheelTest {
+    private static final long TICK = 10;
+
+    private TimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        // The expired tasks are run by the thread of the wheel
+        wheel = new TimingWheel("test-timer", TICK, 8, new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    private Runnable record(final List<String> expired, final String name, final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                expired.add(name);
+                latch.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void timeoutExpiresAfterItsDelay() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 100);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 100 - TICK);
+    }
+
+    @Test
+    public void timeoutsExpireInTheOrderOfTheirDeadlines() throws Exception {
+        List<String> expired = new CopyOnWriteArrayList<String>();
+        CountDownLatch latch = new CountDownLatch(3);
+        // More than a turn of the wheel : the last one waits for a second round of the wheel
+        wheel.schedule(record(expired, "third", latch), 200);
+        wheel.schedule(record(expired, "first", latch), 20);
+        wheel.schedule(record(expired, "second", latch), 50);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals("first", expired.get(0));
+        assertEquals("second", expired.get(1));
+        assertEquals("third", expired.get(2));
+    }
+
+    @Test
+    public void timeoutInThePastExpiresAtOnce() throws Exception {
+        List<String> expired = new CopyOnWriteArrayList<String>();
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(record(expired, "late", latch), -1000);
+        assertTrue(latch.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void cancelledTimeoutNeverExpires() throws Exception {
+        List<String> expired = new CopyOnWriteArrayList<String>();
+        CountDownLatch latch = new CountDownLatch(1);
+        TimingWheel.Timeout cancelled = wheel.schedule(record(expired, "cancelled", new CountDownLatch(1)), 30);
+        cancelled.cancel();
+        assertTrue(cancelled.isCancelled());
+        wheel.schedule(record(expired, "kept", latch), 60);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Thread.sleep(3 * TICK);
+        assertEquals(1, expired.size());
+        assertEquals("kept", expired.get(0));
+    }
+
+    @Test
+    public void stoppedWheelNeverExpires() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(record(new CopyOnWriteArrayList<String>(), "stopped", latch), 30);
+        wheel.stop();
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,103 @@
+package com.alma.pay2bid.server;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.client.IClient;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Cost of a round of 10 000 bidders : the highest bid kept up to date by the AuctionState, against the former
+ * defineWinner which sorted every bid when closing the round
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class WinnerBenchmark {
+    private static final int BIDDERS = 10000;
+    private static final int ROUNDS = 200;
+    private static final Random RANDOM = new Random(42);
+
+    private final List<IClient> clients = new ArrayList<IClient>();
+    private final int[] bids = new int[BIDDERS];
+
+    public WinnerBenchmark() {
+        for (int i = 0; i < BIDDERS; i++) {
+            clients.add(new FakeClient("bidder" + i));
+            // Few distinct values, so there are ties
+            bids[i] = RANDOM.nextInt(BIDDERS / 10);
+        }
+    }
+
+    @Test
+    public void roundCloseWith10kBidders() {
+        // Warm up both ways
+        long sink = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += sortedRound().hashCode() + incrementalRound().hashCode();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += sortedRound().hashCode();
+        }
+        long sorted = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += incrementalRound().hashCode();
+        }
+        long incremental = (System.nanoTime() - start) / ROUNDS;
+
+        System.out.println("Round of " + BIDDERS + " bids, closed with a sort : " + sorted / 1000 + " us");
+        System.out.println("Round of " + BIDDERS + " bids, highest bid kept up to date : " + incremental / 1000
+                + " us (" + sink % 2 + ")");
+    }
+
+    /**
+     * The bids of a round, then its winner chosen by the AuctionState
+     */
+    private IClient incrementalRound() {
+        AuctionState state = new AuctionState(new AuctionBean(0, "item", "An item", "seller"));
+        for (int i = 0; i < BIDDERS; i++) {
+            state.addBid(clients.get(i), "bidder", bids[i]);
+        }
+        List<IClient> highest = state.getHighestBidders();
+        return highest.get(RANDOM.nextInt(highest.size()));
+    }
+
+    /**
+     * The bids of a round, then its winner chosen as the former defineWinner did
+     */
+    private IClient sortedRound() {
+        final HashMap<IClient, Integer> bidByClient = new HashMap<IClient, Integer>();
+        for (int i = 0; i < BIDDERS; i++) {
+            bidByClient.put(clients.get(i), bids[i]);
+        }
+
+        final HashMap<IClient, Integer> copy = new HashMap<IClient, Integer>(bidByClient);
+        TreeMap<IClient, Integer> sortedMap = new TreeMap<IClient, Integer>(new Comparator<IClient>() {
+            @Override
+            public int compare(IClient c1, IClient c2) {
+                return copy.get(c1) >= copy.get(c2) ? -1 : 1;
+            }
+        });
+        sortedMap.putAll(bidByClient);
+
+        List<IClient> highest = new ArrayList<IClient>();
+        int maxBid = sortedMap.firstEntry().getValue();
+        for (Map.Entry<IClient, Integer> pair : sortedMap.entrySet()) {
+            if (pair.getValue() != maxBid) {
+                break;
+            }
+            highest.add(pair.getKey());
+        }
+        return highest.get(new Random().nextInt(highest.size()));
+    }
+}
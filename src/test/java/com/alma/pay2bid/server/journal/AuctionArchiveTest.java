@@ -0,0 +1,59 @@
+package com.alma.pay2bid.server.journal;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * An archived auction is read back with all its fields, with or without a category
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class AuctionArchiveTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static AuctionBean auction(String category) {
+        AuctionBean auction = new AuctionBean(42, "book", "A book about auctions", "seller");
+        auction.setUuid(UUID.randomUUID());
+        auction.setCategory(category);
+        return auction;
+    }
+
+    @Test
+    public void archivedAuctionKeepsItsFields() throws Exception {
+        File directory = folder.newFolder();
+        AuctionArchive archive = new AuctionArchive(directory);
+        AuctionBean withCategory = auction("books");
+        AuctionBean withoutCategory = auction(null);
+        archive.archive(withCategory, "alice");
+        archive.archive(withoutCategory, null);
+        archive.close();
+
+        AuctionArchive reopened = new AuctionArchive(directory);
+        try {
+            assertEquals(2, reopened.size());
+            AuctionBean read = reopened.get(withCategory.getUuid()).toBean();
+            assertEquals(withCategory.getUuid(), read.getUuid());
+            assertEquals(42, read.getPrice());
+            assertEquals("book", read.getName());
+            assertEquals("A book about auctions", read.getDescription());
+            assertEquals("seller", read.getSeller());
+            assertEquals("books", read.getCategory());
+            assertEquals("alice", reopened.get(withCategory.getUuid()).getWinnerIdentifier());
+
+            assertNull(reopened.get(withoutCategory.getUuid()).toBean().getCategory());
+            assertNull(reopened.get(withoutCategory.getUuid()).getWinnerIdentifier());
+        } finally {
+            reopened.close();
+        }
+    }
+}
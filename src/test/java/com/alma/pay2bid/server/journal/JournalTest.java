@@ -0,0 +1,331 @@
+package com.alma.pay2bid.server.journal;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The events appended to the journal are replayed in order after reopening it, and a torn record is never replayed
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<JournalEvent> replay(Journal journal, long from) throws IOException {
+        final List<JournalEvent> events = new ArrayList<JournalEvent>();
+        journal.replay(from, new Journal.Replayer() {
+            @Override
+            public void replay(JournalEvent event) {
+                events.add(event);
+            }
+        });
+        return events;
+    }
+
+    private static List<String> describe(List<JournalEvent> events) {
+        List<String> descriptions = new ArrayList<String>();
+        for (JournalEvent event : events) {
+            descriptions.add(event.toString());
+        }
+        return descriptions;
+    }
+
+    private static List<JournalEvent> bids(UUID auctionId, int from, int to) {
+        List<JournalEvent> events = new ArrayList<JournalEvent>();
+        for (int bid = from; bid < to; bid++) {
+            events.add(JournalEvent.bidAccepted(auctionId, "bidder" + bid, bid));
+        }
+        return events;
+    }
+
+    @Test
+    public void eventsAreReplayedAfterReopening() throws Exception {
+        File directory = folder.newFolder();
+        AuctionBean auction = new AuctionBean(10, "item", "An item", "seller");
+        auction.setUuid(UUID.randomUUID());
+        auction.setCategory("books");
+        List<JournalEvent> events = Arrays.asList(
+                JournalEvent.auctionPlaced(auction),
+                JournalEvent.bidAccepted(auction.getUuid(), "alice", 20),
+                JournalEvent.roundClosed(auction.getUuid(), 20, "alice"),
+                JournalEvent.auctionSold(auction.getUuid(), 20, "alice"),
+                JournalEvent.clientLeft("bob"));
+
+        Journal journal = new Journal(directory);
+        for (JournalEvent event : events) {
+            journal.append(event);
+        }
+        journal.close();
+
+        journal = new Journal(directory);
+        try {
+            List<JournalEvent> replayed = replay(journal, 0);
+            assertEquals(describe(events), describe(replayed));
+            AuctionBean placed = replayed.get(0).toAuction();
+            assertEquals(auction.getUuid(), placed.getUuid());
+            assertEquals("item", placed.getName());
+            assertEquals("An item", placed.getDescription());
+            assertEquals("seller", placed.getSeller());
+            assertEquals("books", placed.getCategory());
+            assertNull(replayed.get(4).getAuctionId());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void stringsLongerThan64KBAreJournaled() throws Exception {
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 100000) {
+            description.append("A long description \u00e9\u20ac. ");
+        }
+        AuctionBean auction = new AuctionBean(10, "item", description.toString(), "seller");
+        auction.setUuid(UUID.randomUUID());
+
+        File directory = folder.newFolder();
+        Journal journal = new Journal(directory);
+        journal.append(JournalEvent.auctionPlaced(auction));
+        journal.close();
+
+        journal = new Journal(directory);
+        try {
+            List<JournalEvent> replayed = replay(journal, 0);
+            assertEquals(1, replayed.size());
+            assertEquals(description.toString(), replayed.get(0).toAuction().getDescription());
+            assertEquals(description.toString(), JournalEvent.decode(JournalEvent.encode(replayed)).get(0)
+                    .toAuction().getDescription());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void newEventsFollowTheReplayedOnes() throws Exception {
+        File directory = folder.newFolder();
+        UUID auctionId = UUID.randomUUID();
+        Journal journal = new Journal(directory);
+        for (JournalEvent event : bids(auctionId, 0, 10)) {
+            journal.append(event);
+        }
+        journal.close();
+
+        journal = new Journal(directory);
+        for (JournalEvent event : bids(auctionId, 10, 20)) {
+            journal.append(event);
+        }
+        journal.close();
+
+        journal = new Journal(directory);
+        try {
+            assertEquals(describe(bids(auctionId, 0, 20)), describe(replay(journal, 0)));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void eventsSpanSeveralSegments() throws Exception {
+        File directory = folder.newFolder();
+        UUID auctionId = UUID.randomUUID();
+        Journal journal = new Journal(directory, 256);
+        for (JournalEvent event : bids(auctionId, 0, 100)) {
+            journal.append(event);
+        }
+        journal.close();
+
+        assertTrue(directory.list().length > 1);
+        journal = new Journal(directory, 256);
+        try {
+            assertEquals(describe(bids(auctionId, 0, 100)), describe(replay(journal, 0)));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void concurrentAppendsAreAllReplayedInOrder() throws Exception {
+        File directory = folder.newFolder();
+        final Journal journal = new Journal(directory, 1024);
+        final int nbThreads = 4;
+        final int nbBids = 500;
+        final UUID[] auctions = new UUID[nbThreads];
+        Thread[] threads = new Thread[nbThreads];
+        for (int i = 0; i < nbThreads; i++) {
+            auctions[i] = UUID.randomUUID();
+            final UUID auctionId = auctions[i];
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (JournalEvent event : bids(auctionId, 0, nbBids)) {
+                        journal.append(event);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+
+        Journal reopened = new Journal(directory, 1024);
+        try {
+            List<JournalEvent> replayed = replay(reopened, 0);
+            assertEquals(nbThreads * nbBids, replayed.size());
+            // The events of each thread keep their order, whatever the segments they fell in
+            for (UUID auctionId : auctions) {
+                List<JournalEvent> ofAuction = new ArrayList<JournalEvent>();
+                for (JournalEvent event : replayed) {
+                    if (auctionId.equals(event.getAuctionId())) {
+                        ofAuction.add(event);
+                    }
+                }
+                assertEquals(describe(bids(auctionId, 0, nbBids)), describe(ofAuction));
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void replayStartsFromAPosition() throws Exception {
+        UUID auctionId = UUID.randomUUID();
+        Journal journal = new Journal(folder.newFolder(), 256);
+        try {
+            for (JournalEvent event : bids(auctionId, 0, 30)) {
+                journal.append(event);
+            }
+            long position = journal.getPosition();
+            for (JournalEvent event : bids(auctionId, 30, 40)) {
+                journal.append(event);
+            }
+            assertEquals(describe(bids(auctionId, 30, 40)), describe(replay(journal, position)));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void compactedSegmentsAreDeleted() throws Exception {
+        File directory = folder.newFolder();
+        UUID auctionId = UUID.randomUUID();
+        Journal journal = new Journal(directory, 256);
+        try {
+            for (JournalEvent event : bids(auctionId, 0, 30)) {
+                journal.append(event);
+            }
+            long position = journal.roll();
+            for (JournalEvent event : bids(auctionId, 30, 35)) {
+                journal.append(event);
+            }
+            journal.deleteBefore(position);
+
+            assertEquals(1, directory.list().length);
+            assertEquals(describe(bids(auctionId, 30, 35)), describe(replay(journal, 0)));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void tornRecordIsNotReplayed() throws Exception {
+        File directory = folder.newFolder();
+        UUID auctionId = UUID.randomUUID();
+        Journal journal = new Journal(directory);
+        for (JournalEvent event : bids(auctionId, 0, 5)) {
+            journal.append(event);
+        }
+        long position = journal.getPosition();
+        journal.close();
+
+        // A crash in the middle of an append : the record is written, but not its length
+        RandomAccessFile segment = new RandomAccessFile(new File(directory, directory.list()[0]), "rw");
+        try {
+            segment.seek((int) position + 4);
+            segment.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        } finally {
+            segment.close();
+        }
+
+        journal = new Journal(directory);
+        try {
+            assertEquals(describe(bids(auctionId, 0, 5)), describe(replay(journal, 0)));
+            // The next events overwrite the torn record
+            for (JournalEvent event : bids(auctionId, 5, 10)) {
+                journal.append(event);
+            }
+            assertEquals(describe(bids(auctionId, 0, 10)), describe(replay(journal, 0)));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void recordsAfterATornOneAreNotReplayed() throws Exception {
+        File directory = folder.newFolder();
+        UUID auctionId = UUID.randomUUID();
+        Journal journal = new Journal(directory);
+        for (JournalEvent event : bids(auctionId, 0, 2)) {
+            journal.append(event);
+        }
+        long torn = journal.getPosition();
+        for (JournalEvent event : bids(auctionId, 2, 5)) {
+            journal.append(event);
+        }
+        journal.close();
+
+        // A crash while the third record was written, after the next ones were complete
+        RandomAccessFile segment = new RandomAccessFile(new File(directory, directory.list()[0]), "rw");
+        try {
+            segment.seek((int) torn);
+            segment.writeInt(0);
+        } finally {
+            segment.close();
+        }
+
+        // A record of the same size is appended over the torn one : the next old records must not follow it
+        journal = new Journal(directory);
+        journal.append(JournalEvent.bidAccepted(auctionId, "bidder7", 7));
+        journal.close();
+
+        journal = new Journal(directory);
+        try {
+            List<JournalEvent> expected = bids(auctionId, 0, 2);
+            expected.add(JournalEvent.bidAccepted(auctionId, "bidder7", 7));
+            assertEquals(describe(expected), describe(replay(journal, 0)));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void batchesAreDecodedAsEncoded() throws Exception {
+        AuctionBean auction = new AuctionBean(10, "item", "An item", "seller");
+        auction.setUuid(UUID.randomUUID());
+        List<JournalEvent> events = new ArrayList<JournalEvent>();
+        events.add(JournalEvent.auctionPlaced(auction));
+        events.addAll(bids(auction.getUuid(), 0, 10));
+        events.add(JournalEvent.roundClosed(auction.getUuid(), 9, null));
+
+        List<JournalEvent> decoded = JournalEvent.decode(JournalEvent.encode(events));
+        assertEquals(describe(events), describe(decoded));
+        assertNull(decoded.get(0).toAuction().getCategory());
+        assertTrue(JournalEvent.decode(JournalEvent.encode(new ArrayList<JournalEvent>())).isEmpty());
+    }
+}
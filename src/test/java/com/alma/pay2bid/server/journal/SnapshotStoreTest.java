@@ -0,0 +1,97 @@
+package com.alma.pay2bid.server.journal;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * A snapshot is read back as it was written, and only the latest one is kept
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class SnapshotStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static AuctionBean auction(String name, int price, String category) {
+        AuctionBean auction = new AuctionBean(price, name, "The " + name, "seller");
+        auction.setUuid(UUID.randomUUID());
+        auction.setCategory(category);
+        return auction;
+    }
+
+    @Test
+    public void noSnapshot() throws Exception {
+        assertNull(new SnapshotStore(folder.newFolder()).loadLatest());
+    }
+
+    @Test
+    public void snapshotIsReadAsWritten() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.newFolder());
+        Snapshot snapshot = new Snapshot(42L << 32);
+        AuctionBean withWinner = auction("book", 30, "books");
+        AuctionBean withoutWinner = auction("lamp", 10, null);
+        snapshot.add(withWinner, "alice");
+        snapshot.add(withoutWinner, null);
+        store.save(snapshot);
+
+        Snapshot loaded = store.loadLatest();
+        assertEquals(42L << 32, loaded.getPosition());
+        assertEquals(2, loaded.getEntries().size());
+
+        Snapshot.Entry first = loaded.getEntries().get(0);
+        assertEquals(withWinner.getUuid(), first.getAuction().getUuid());
+        assertEquals(30, first.getAuction().getPrice());
+        assertEquals("book", first.getAuction().getName());
+        assertEquals("The book", first.getAuction().getDescription());
+        assertEquals("seller", first.getAuction().getSeller());
+        assertEquals("books", first.getAuction().getCategory());
+        assertEquals("alice", first.getWinnerIdentifier());
+
+        Snapshot.Entry second = loaded.getEntries().get(1);
+        assertEquals(withoutWinner.getUuid(), second.getAuction().getUuid());
+        assertNull(second.getAuction().getCategory());
+        assertNull(second.getWinnerIdentifier());
+    }
+
+    @Test
+    public void stringsLongerThan64KBAreSaved() throws Exception {
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 100000) {
+            description.append("A long description \u00e9\u20ac. ");
+        }
+        AuctionBean auction = auction("book", 30, "books");
+        auction.setDescription(description.toString());
+        SnapshotStore store = new SnapshotStore(folder.newFolder());
+        Snapshot snapshot = new Snapshot(1L << 32);
+        snapshot.add(auction, null);
+        store.save(snapshot);
+
+        assertEquals(description.toString(), store.loadLatest().getEntries().get(0).getAuction().getDescription());
+    }
+
+    @Test
+    public void onlyTheLatestSnapshotIsKept() throws Exception {
+        File directory = folder.newFolder();
+        SnapshotStore store = new SnapshotStore(directory);
+        Snapshot older = new Snapshot(1L << 32);
+        older.add(auction("old", 10, null), null);
+        store.save(older);
+        Snapshot newer = new Snapshot(2L << 32);
+        newer.add(auction("new", 20, null), null);
+        store.save(newer);
+
+        assertEquals(1, directory.list().length);
+        Snapshot loaded = new SnapshotStore(directory).loadLatest();
+        assertEquals(2L << 32, loaded.getPosition());
+        assertEquals("new", loaded.getEntries().get(0).getAuction().getName());
+    }
+}
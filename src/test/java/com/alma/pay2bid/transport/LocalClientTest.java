@@ -0,0 +1,114 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.bean.AuctionSummary;
+import com.alma.pay2bid.client.IClient;
+import com.alma.pay2bid.server.IServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The callbacks waiting for a slow client of the in-VM transport are bounded, and a saturated client is disconnected
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class LocalClientTest {
+    private static final int CAPACITY = 8;
+
+    private final CountDownLatch unblocked = new CountDownLatch(1);
+    private final List<String> calls = new CopyOnWriteArrayList<String>();
+    private final List<Object> disconnected = new CopyOnWriteArrayList<Object>();
+    private ExecutorService executor;
+    private IClient client;
+    private IServer server;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        // The client blocks in his callbacks until the test lets him go
+        client = (IClient) Proxy.newProxyInstance(IClient.class.getClassLoader(), new Class<?>[]{IClient.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("toString")) {
+                            return "blocked client";
+                        }
+                        unblocked.await();
+                        calls.add(method.getName());
+                        return null;
+                    }
+                });
+        server = (IServer) Proxy.newProxyInstance(IServer.class.getClassLoader(), new Class<?>[]{IServer.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("disconnect")) {
+                            disconnected.add(args[0]);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        unblocked.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void pricesAreDroppedWhenTheQueueIsFull() throws Exception {
+        LocalClient local = new LocalClient(client, server, executor, CAPACITY, 60000);
+        UUID auctionId = UUID.randomUUID();
+        for (int i = 0; i < 10 * CAPACITY; i++) {
+            local.newPrice(auctionId, i, "alice", i);
+        }
+        // One callback may already be running
+        assertTrue(local.queued() <= CAPACITY);
+
+        // The other callbacks are still queued
+        local.bidSold(auctionId, "alice", 100);
+        assertTrue(local.queued() <= CAPACITY + 1);
+        unblocked.countDown();
+        for (int i = 0; i < 100 && !calls.contains("bidSold"); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals("bidSold", calls.get(calls.size() - 1));
+        assertTrue(disconnected.isEmpty());
+    }
+
+    @Test
+    public void saturatedClientIsDisconnected() throws Exception {
+        LocalClient local = new LocalClient(client, server, executor, CAPACITY, 50);
+        UUID auctionId = UUID.randomUUID();
+        // One callback may already be running : the queue is full either way
+        for (int i = 0; i <= CAPACITY + 1; i++) {
+            local.newAuction(auctionId, new AuctionSummary(), i);
+        }
+        Thread.sleep(100);
+        local.newAuction(auctionId, new AuctionSummary(), CAPACITY + 2);
+        assertEquals(0, local.queued());
+
+        // The report is run on the executor, once the blocked callback has returned
+        unblocked.countDown();
+        for (int i = 0; i < 100 && disconnected.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, disconnected.size());
+        assertTrue(disconnected.get(0) == local);
+    }
+}
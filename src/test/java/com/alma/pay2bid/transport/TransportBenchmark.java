@@ -0,0 +1,134 @@
+package com.alma.pay2bid.transport;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.client.Client;
+import com.alma.pay2bid.server.IServer;
+import com.alma.pay2bid.server.Server;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, throughput and connection capacity of the RMI and NIO transports, on the loopback interface.
+ * The clients run in the same VM : only the threads serving them on the server side are counted. RMI shares its
+ * connections between the clients of a VM, so it needs far fewer threads here than with remote clients.
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class TransportBenchmark {
+    private static final int CALLS = 20000;
+    private static final int THREADS = 8;
+    private static final long DURATION = 3000;
+    private static final int CONNECTIONS = 200;
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void rmiAgainstNio() throws Exception {
+        run("RMI", new RmiTransport("localhost", freePort()), "RMI TCP Connection");
+        run("NIO", new NioTransport("localhost", freePort()), "nio-selector", "nio-worker");
+    }
+
+    private void run(String name, Transport transport, String... serverThreads) throws Exception {
+        Server server = new Server();
+        transport.serve(server);
+
+        try {
+            // Connection capacity : registered clients, and the threads serving them.
+            // It is measured first, so that the clients do not take part in an auction.
+            int threadsBefore = countThreads(serverThreads);
+            List<IServer> connections = new ArrayList<IServer>();
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                IServer clientConnection = transport.connect();
+                new Client(clientConnection, "client" + i).register();
+                connections.add(clientConnection);
+            }
+            long registration = System.currentTimeMillis() - start;
+            int threadsAfter = countThreads(serverThreads);
+            for (IServer clientConnection : connections) {
+                close(clientConnection);
+            }
+
+            AuctionBean auction = new AuctionBean(10, "item", "An item", "seller");
+            server.placeAuction(auction);
+            final UUID auctionId = auction.getUuid();
+
+            // Latency of a request, one at a time
+            final IServer connection = transport.connect();
+            long[] latencies = new long[CALLS];
+            for (int i = 0; i < CALLS; i++) {
+                long t0 = System.nanoTime();
+                connection.getAuction(auctionId);
+                latencies[i] = System.nanoTime() - t0;
+            }
+            Arrays.sort(latencies);
+
+            // Throughput of several threads sharing the connection
+            final AtomicLong calls = new AtomicLong();
+            final long end = System.currentTimeMillis() + DURATION;
+            final CountDownLatch done = new CountDownLatch(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        long count = 0;
+                        try {
+                            while (System.currentTimeMillis() < end) {
+                                connection.getAuction(auctionId);
+                                count++;
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                        calls.addAndGet(count);
+                        done.countDown();
+                    }
+                }).start();
+            }
+            done.await();
+            close(connection);
+
+            System.out.println(String.format("%s : latency p50 %d us, p99 %d us ; %,d calls/s with %d threads ; "
+                            + "%d clients registered in %d ms, %d server threads",
+                    name, latencies[CALLS / 2] / 1000, latencies[CALLS * 99 / 100] / 1000,
+                    calls.get() * 1000 / DURATION, THREADS, CONNECTIONS, registration, threadsAfter - threadsBefore));
+        } finally {
+            transport.close();
+        }
+    }
+
+    private static void close(IServer connection) throws IOException {
+        if (connection instanceof Closeable) {
+            ((Closeable) connection).close();
+        }
+    }
+
+    private static int countThreads(String... prefixes) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            for (String prefix : prefixes) {
+                if (thread.getName().startsWith(prefix)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
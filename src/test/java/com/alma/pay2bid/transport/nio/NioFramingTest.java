@@ -0,0 +1,189 @@
+package com.alma.pay2bid.transport.nio;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The frames are cut out of the bytes of a connection whatever the way they arrive : split, several at once,
+ * or larger than the read buffer
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class NioFramingTest {
+    private ServerSocketChannel listener;
+    private SocketChannel sender;
+    private SocketChannel receiver;
+    private NioConnection connection;
+
+    @Before
+    public void setUp() throws IOException {
+        listener = ServerSocketChannel.open();
+        listener.socket().bind(new InetSocketAddress("localhost", 0));
+        sender = SocketChannel.open(new InetSocketAddress("localhost", listener.socket().getLocalPort()));
+        receiver = listener.accept();
+        // The reads block until some bytes are available : the tests only read what they have sent
+        connection = new NioConnection(null, receiver, null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sender.close();
+        receiver.close();
+        listener.close();
+    }
+
+    private static ByteBuffer frame(int requestId, byte op, int payloadSize) throws IOException {
+        FrameOutput frame = new FrameOutput(requestId, op);
+        for (int i = 0; i < payloadSize; i++) {
+            frame.writeByte(i);
+        }
+        return frame.toBuffer();
+    }
+
+    private void send(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            sender.write(bytes);
+        }
+    }
+
+    /**
+     * Read until a number of frames have been received
+     */
+    private List<Frame> receive(int nbFrames) throws IOException {
+        List<Frame> frames = new ArrayList<Frame>();
+        while (frames.size() < nbFrames) {
+            assertTrue(connection.read(frames));
+        }
+        return frames;
+    }
+
+    private static void assertPayload(Frame frame, int payloadSize) throws IOException {
+        for (int i = 0; i < payloadSize; i++) {
+            assertEquals((byte) i, frame.getPayload().readByte());
+        }
+        assertEquals(0, frame.getPayload().available());
+    }
+
+    @Test
+    public void frameCarriesItsLengthAndHeader() throws IOException {
+        FrameOutput output = new FrameOutput(7, Protocol.RAISE_BID);
+        output.writeInt(42);
+        ByteBuffer buffer = output.toBuffer();
+        assertEquals(4 + 4 + 1 + 4, buffer.remaining());
+        assertEquals(buffer.remaining() - 4, buffer.getInt(0));
+
+        byte[] body = new byte[buffer.remaining() - 4];
+        buffer.position(4);
+        buffer.get(body);
+        Frame frame = new Frame(body);
+        assertEquals(7, frame.getRequestId());
+        assertEquals(Protocol.RAISE_BID, frame.getOp());
+        assertEquals(42, frame.getPayload().readInt());
+    }
+
+    @Test
+    public void splitFrameIsReadOnceComplete() throws IOException {
+        ByteBuffer bytes = frame(1, Protocol.SEARCH, 100);
+        ByteBuffer head = bytes.duplicate();
+        head.limit(2);
+        ByteBuffer middle = bytes.duplicate();
+        middle.position(2).limit(50);
+        ByteBuffer tail = bytes.duplicate();
+        tail.position(50);
+
+        List<Frame> frames = new ArrayList<Frame>();
+        send(head);
+        assertTrue(connection.read(frames));
+        assertTrue(frames.isEmpty());
+        send(middle);
+        assertTrue(connection.read(frames));
+        assertTrue(frames.isEmpty());
+        send(tail);
+        while (frames.isEmpty()) {
+            assertTrue(connection.read(frames));
+        }
+
+        assertEquals(1, frames.size());
+        assertEquals(1, frames.get(0).getRequestId());
+        assertPayload(frames.get(0), 100);
+    }
+
+    @Test
+    public void pipelinedFramesAreReadInOrder() throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(10 * 64);
+        for (int i = 1; i <= 10; i++) {
+            bytes.put(frame(i, Protocol.GET_AUCTION, i));
+        }
+        bytes.flip();
+        send(bytes);
+
+        List<Frame> frames = receive(10);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, frames.get(i - 1).getRequestId());
+            assertEquals(Protocol.GET_AUCTION, frames.get(i - 1).getOp());
+            assertPayload(frames.get(i - 1), i);
+        }
+    }
+
+    @Test
+    public void frameLargerThanTheBufferIsRead() throws IOException {
+        int payloadSize = 300 * 1024;
+        send(frame(1, Protocol.PLACE_AUCTION, payloadSize));
+        send(frame(2, Protocol.RENEW_LEASE, 0));
+
+        List<Frame> frames = receive(2);
+        assertPayload(frames.get(0), payloadSize);
+        assertEquals(Protocol.RENEW_LEASE, frames.get(1).getOp());
+    }
+
+    @Test
+    public void stringsLongerThan64KBAreCarried() throws IOException {
+        StringBuilder message = new StringBuilder();
+        while (message.length() < 100000) {
+            message.append("A long message \u00e9\u20ac. ");
+        }
+        FrameOutput output = new FrameOutput(3, Protocol.ERROR);
+        Protocol.writeString(output, message.toString());
+        Protocol.writeString(output, null);
+        send(output.toBuffer());
+
+        Frame frame = receive(1).get(0);
+        assertEquals(message.toString(), Protocol.readString(frame.getPayload()));
+        assertNull(Protocol.readString(frame.getPayload()));
+    }
+
+    @Test
+    public void invalidLengthIsRejected() throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(8);
+        bytes.putInt(Protocol.MAX_FRAME_SIZE + 1).putInt(0).flip();
+        send(bytes);
+        try {
+            receive(1);
+            fail("A frame longer than the maximum should be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Invalid frame length"));
+        }
+    }
+
+    @Test
+    public void closedConnectionIsDetected() throws IOException {
+        sender.close();
+        assertFalse(connection.read(new ArrayList<Frame>()));
+    }
+}
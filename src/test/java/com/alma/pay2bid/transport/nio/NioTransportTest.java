@@ -0,0 +1,148 @@
+package com.alma.pay2bid.transport.nio;
+
+import com.alma.pay2bid.bean.AuctionBean;
+import com.alma.pay2bid.client.Client;
+import com.alma.pay2bid.client.observer.IBidSoldObserver;
+import com.alma.pay2bid.client.observer.INewAuctionObserver;
+import com.alma.pay2bid.server.IServer;
+import com.alma.pay2bid.server.Server;
+import com.alma.pay2bid.transport.NioTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The requests sent on a connection without waiting get their own responses, and the events of the server are
+ * pushed on the same connection
+ * @author Alexis Giraudet
+ * @author Arnaud Grall
+ * @author Thomas Minier
+ */
+public class NioTransportTest {
+    private Server server;
+    private NioTransport transport;
+
+    static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new Server();
+        transport = new NioTransport("localhost", freePort());
+        transport.serve(server);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        transport.close();
+    }
+
+    @Test
+    public void pipelinedRequestsGetTheirOwnResponses() throws Exception {
+        final List<AuctionBean> auctions = new ArrayList<AuctionBean>();
+        for (int i = 0; i < 50; i++) {
+            AuctionBean auction = new AuctionBean(i + 1, "item" + i, "An item", "seller");
+            server.placeAuction(auction);
+            auctions.add(auction);
+        }
+
+        // Every thread shares the connection of the proxy
+        final IServer proxy = transport.connect();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<AuctionBean>> responses = new ArrayList<Future<AuctionBean>>();
+            for (int round = 0; round < 10; round++) {
+                for (final AuctionBean auction : auctions) {
+                    responses.add(executor.submit(new Callable<AuctionBean>() {
+                        @Override
+                        public AuctionBean call() throws Exception {
+                            return proxy.getAuction(auction.getUuid());
+                        }
+                    }));
+                }
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                AuctionBean expected = auctions.get(i % auctions.size());
+                AuctionBean response = responses.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(expected.getUuid(), response.getUuid());
+                assertEquals(expected.getName(), response.getName());
+                assertEquals(expected.getPrice(), response.getPrice());
+            }
+        } finally {
+            executor.shutdownNow();
+            ((NioServerProxy) proxy).close();
+        }
+    }
+
+    @Test
+    public void eventsArePushedToTheClient() throws Exception {
+        NioServerProxy proxy = (NioServerProxy) transport.connect();
+        try {
+            Client alice = new Client(proxy, "alice");
+            final BlockingQueue<AuctionBean> received = new LinkedBlockingQueue<AuctionBean>();
+            alice.addNewAuctionObserver(new INewAuctionObserver() {
+                @Override
+                public void updateNewAuction(AuctionBean auction) {
+                    received.add(auction);
+                }
+            });
+            alice.register();
+
+            Client seller = new Client(server, "seller");
+            seller.register();
+            AuctionBean auction = new AuctionBean(10, "item", "An item", seller.getIdentifier());
+            seller.submit(auction);
+            // The auction is sold once alice has left, when the test ends
+            seller.addBidSoldObserver(auction.getUuid(), new IBidSoldObserver() {
+                @Override
+                public void updateBidSold(String winner) {
+                }
+
+                @Override
+                public void updateBidSold() {
+                }
+            });
+
+            AuctionBean pushed = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(pushed);
+            assertEquals("item", pushed.getName());
+            assertEquals(seller.getIdentifier(), pushed.getSeller());
+            assertNotNull(server.getAuction(pushed.getUuid()));
+        } finally {
+            proxy.close();
+        }
+    }
+
+    @Test
+    public void unknownAuctionIsNull() throws Exception {
+        NioServerProxy proxy = (NioServerProxy) transport.connect();
+        try {
+            assertNull(proxy.getAuction(UUID.randomUUID()));
+        } finally {
+            proxy.close();
+        }
+    }
+}